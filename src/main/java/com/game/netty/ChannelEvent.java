@@ -43,5 +43,10 @@ public enum ChannelEvent {
     /**
      * channel has been idle for while
      */
-    CHANNEL_IDLE
+    CHANNEL_IDLE,
+
+    /**
+     * an accepted channel resumed an existing session, its own new session is dropped
+     */
+    CHANNEL_RESUMED
 }
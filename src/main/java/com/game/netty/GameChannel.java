@@ -15,12 +15,14 @@
  */
 package com.game.netty;
 
+import com.game.netty.util.AttributeSlots;
 import com.game.netty.util.ChannelUtil;
 import com.game.netty.config.AbstractChannelConfig;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.util.AttributeKey;
 
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -36,6 +38,8 @@ public abstract class GameChannel {
 
     private final AbstractChannelConfig config;
 
+    private final AttributeSlots slots = new AttributeSlots();
+
     public GameChannel(AbstractChannelConfig config) {
         this.config = config;
     }
@@ -90,15 +94,34 @@ public abstract class GameChannel {
         }
     }
 
-    private void flushTask() {
+    /**
+     * @return bytes written but not yet sent to socket, 0 if closed
+     */
+    public long pendingWriteBytes() {
+        Channel channel = this.channel;
+        if (channel == null) {
+            return 0;
+        }
         ChannelOutboundBuffer outboundBuffer = channel.unsafe().outboundBuffer();
 
         //channel可能已经关闭
         if (outboundBuffer == null) {
-            return;
+            return 0;
         }
-        long bytes = outboundBuffer.totalPendingWriteBytes();
-        if (bytes <= 0) return;
+        return outboundBuffer.totalPendingWriteBytes();
+    }
+
+    /**
+     * used by auto flush, a subclass which buffers writes in pipeline should override it
+     *
+     * @return whether there are writes to flush
+     */
+    protected boolean hasPendingWrites() {
+        return pendingWriteBytes() > 0;
+    }
+
+    private void flushTask() {
+        if (!hasPendingWrites()) return;
 
         channel.flush();
     }
@@ -110,4 +133,19 @@ public abstract class GameChannel {
     public <T> T getAttribute(String key) {
         return ChannelUtil.getAttribute(channel, key);
     }
+
+    public <T> void setAttribute(AttributeKey<T> key, T value) {
+        ChannelUtil.setAttribute(channel, key, value);
+    }
+
+    public <T> T getAttribute(AttributeKey<T> key) {
+        return ChannelUtil.getAttribute(channel, key);
+    }
+
+    /**
+     * @return user state of this channel indexed by SlotKey, faster than attributes
+     */
+    public final AttributeSlots slots() {
+        return slots;
+    }
 }
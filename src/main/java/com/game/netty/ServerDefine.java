@@ -23,12 +23,22 @@ public final class ServerDefine {
     private String ip;
     private int port;
 
+    /**
+     * routing weight, see ProxyRouter; weight is not part of the server identity
+     */
+    private int weight = 1;
+
     public ServerDefine(int serverId, String ip, int port) {
         this.serverId = serverId;
         this.ip = ip;
         this.port = port;
     }
 
+    public ServerDefine(int serverId, String ip, int port, int weight) {
+        this(serverId, ip, port);
+        this.weight = weight;
+    }
+
     public int getServerId() {
         return serverId;
     }
@@ -53,6 +63,14 @@ public final class ServerDefine {
         this.port = port;
     }
 
+    public int getWeight() {
+        return weight;
+    }
+
+    public void setWeight(int weight) {
+        this.weight = weight;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj instanceof ServerDefine) {
@@ -17,7 +17,14 @@
 package com.game.netty.client;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.util.IllegalReferenceCountException;
+import io.netty.util.Recycler;
 import io.netty.util.ReferenceCounted;
+import io.netty.util.ResourceLeakDetector;
+import io.netty.util.ResourceLeakDetectorFactory;
+import io.netty.util.ResourceLeakTracker;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * A message between client and proxy server.
@@ -29,11 +36,30 @@ import io.netty.util.ReferenceCounted;
  * vice versa，the Logic Server only need decoded body object.
  * <p>
  * During decoding, the decoder may decode body content to object or not, depends on you implementation
+ * <p>
+ * A ClientMessage created by {@link #newInstance(long, ByteBuf, Object)} is pooled: it keeps its own reference count,
+ * and is recycled when the count drops to 0; any access after that throws IllegalReferenceCountException.
+ * A message created by constructor keeps the old behavior, its reference count is just the count of buf.
  *
  * @param <B> ClientMessage Body type
  */
 public class ClientMessage<B> implements ReferenceCounted {
 
+    private static final Recycler<ClientMessage<?>> RECYCLER = new Recycler<ClientMessage<?>>() {
+        @Override
+        protected ClientMessage<?> newObject(Handle<ClientMessage<?>> handle) {
+            return new ClientMessage<>(handle);
+        }
+    };
+
+    @SuppressWarnings("rawtypes")
+    private static final ResourceLeakDetector<ClientMessage> leakDetector =
+            ResourceLeakDetectorFactory.instance().newResourceLeakDetector(ClientMessage.class);
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<ClientMessage> REF_CNT_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(ClientMessage.class, "pooledRefCnt");
+
     /**
      * client message head, max 8 bytes. For simplify, only 0,1,2,4,8 bytes are valid option
      */
@@ -44,24 +70,35 @@ public class ClientMessage<B> implements ReferenceCounted {
      * if encrypt and compress involved, this buf is decrypted and uncompressed bytes
      * Attention, ClientMessage has the ownership of buf
      */
-    private final ByteBuf buf;
+    private ByteBuf buf;
 
     /**
      * decoded body object
      */
-    private final B body;
+    private B body;
 
+    /**
+     * recycler handle, null if the message is not pooled
+     */
+    private final Recycler.Handle<ClientMessage<?>> recyclerHandle;
+
+    /**
+     * reference count of a pooled message, 0 means it has been recycled
+     */
+    private volatile int pooledRefCnt;
+
+    @SuppressWarnings("rawtypes")
+    private ResourceLeakTracker<ClientMessage> leak;
 
     public ClientMessage(long head, B body) {
-        this.head = head;
-        this.body = body;
-        this.buf = null;
+        this(head, null, body);
     }
 
     public ClientMessage(long head, ByteBuf buf, B body) {
         this.head = head;
         this.body = body;
         this.buf = buf;
+        this.recyclerHandle = null;
     }
 
     public ClientMessage(B body) {
@@ -72,33 +109,69 @@ public class ClientMessage<B> implements ReferenceCounted {
         this(0, buf, body);
     }
 
+    private ClientMessage(Recycler.Handle<ClientMessage<?>> recyclerHandle) {
+        this.recyclerHandle = recyclerHandle;
+    }
+
+    /**
+     * get a pooled message, the caller owns one reference, the message is recycled by the last release()
+     *
+     * @param head message head
+     * @param buf  message buf, ownership transfer happened here, may be null
+     * @param body message body, may be null
+     * @param <B>  body type
+     * @return pooled message
+     */
+    @SuppressWarnings("unchecked")
+    public static <B> ClientMessage<B> newInstance(long head, ByteBuf buf, B body) {
+        ClientMessage<B> message = (ClientMessage<B>) RECYCLER.get();
+        message.head = head;
+        message.buf = buf;
+        message.body = body;
+        message.pooledRefCnt = 1;
+        message.leak = leakDetector.track(message);
+        return message;
+    }
+
+    public static <B> ClientMessage<B> newInstance(long head, B body) {
+        return newInstance(head, null, body);
+    }
+
+    public boolean isPooled() {
+        return recyclerHandle != null;
+    }
 
     public long getHead() {
+        ensureAccessible();
         return head;
     }
 
     public void setHead(long head) {
+        ensureAccessible();
         this.head = head;
     }
 
+    @SuppressWarnings("unchecked")
     public <T> T getBody() {
+        ensureAccessible();
         return (T) body;
     }
 
     public ByteBuf content() {
+        ensureAccessible();
         return buf;
     }
 
     @Override
     public ClientMessage<B> retain() {
-        if (buf != null) {
-            buf.retain();
-        }
-        return this;
+        return retain(1);
     }
 
     @Override
     public ClientMessage<B> retain(int increment) {
+        if (recyclerHandle != null) {
+            retainPooled(increment);
+        }
         if (buf != null) {
             buf.retain(increment);
         }
@@ -107,14 +180,14 @@ public class ClientMessage<B> implements ReferenceCounted {
 
     @Override
     public ClientMessage<B> touch() {
-        if (buf != null) {
-            buf.touch();
-        }
-        return this;
+        return touch(null);
     }
 
     @Override
     public ClientMessage<B> touch(Object hint) {
+        if (leak != null) {
+            leak.record(hint);
+        }
         if (buf != null) {
             buf.touch(hint);
         }
@@ -123,16 +196,73 @@ public class ClientMessage<B> implements ReferenceCounted {
 
     @Override
     public int refCnt() {
+        if (recyclerHandle != null) {
+            return pooledRefCnt;
+        }
         return buf == null ? 0 : buf.refCnt();
     }
 
     @Override
     public boolean release() {
-        return buf != null && buf.release();
+        return release(1);
     }
 
     @Override
     public boolean release(int decrement) {
-        return buf != null && buf.release(decrement);
+        if (recyclerHandle == null) {
+            return buf != null && buf.release(decrement);
+        }
+        boolean deallocate = releasePooled(decrement);
+        if (buf != null) {
+            buf.release(decrement);
+        }
+        if (deallocate) {
+            recycle();
+        }
+        return deallocate;
+    }
+
+    private void retainPooled(int increment) {
+        for (; ; ) {
+            int refCnt = pooledRefCnt;
+            if (refCnt <= 0 || refCnt + increment < refCnt) {
+                throw new IllegalReferenceCountException(refCnt, increment);
+            }
+            if (REF_CNT_UPDATER.compareAndSet(this, refCnt, refCnt + increment)) {
+                return;
+            }
+        }
+    }
+
+    private boolean releasePooled(int decrement) {
+        for (; ; ) {
+            int refCnt = pooledRefCnt;
+            if (refCnt < decrement || decrement <= 0) {
+                throw new IllegalReferenceCountException(refCnt, -decrement);
+            }
+            if (REF_CNT_UPDATER.compareAndSet(this, refCnt, refCnt - decrement)) {
+                return refCnt == decrement;
+            }
+        }
+    }
+
+    private void recycle() {
+        head = 0;
+        buf = null;
+        body = null;
+        if (leak != null) {
+            leak.close(this);
+            leak = null;
+        }
+        recyclerHandle.recycle(this);
+    }
+
+    /**
+     * catch use after recycle, the check only applies to pooled message
+     */
+    private void ensureAccessible() {
+        if (recyclerHandle != null && pooledRefCnt == 0) {
+            throw new IllegalReferenceCountException(0);
+        }
     }
 }
@@ -22,6 +22,10 @@ import com.game.netty.client.websocket.ClientWebSocketAcceptor;
 import com.game.netty.config.ClientChannelConfig;
 import com.game.netty.netty.GameNettyEnv;
 import com.game.netty.util.ChannelUtil;
+import com.game.netty.client.acceptor.group.ClientGroupManager;
+import com.game.netty.client.acceptor.session.ResumableSession;
+import com.game.netty.client.acceptor.session.ResumableSessionManager;
+import com.game.netty.client.acceptor.session.SessionIndexes;
 import com.game.netty.client.acceptor.session.SessionInterface;
 import com.game.netty.client.acceptor.session.SessionManagerInterface;
 import com.game.netty.config.codec.ClientCodecConfig;
@@ -30,10 +34,13 @@ import io.netty.channel.*;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.handler.timeout.TimeoutException;
+import io.netty.util.AttributeKey;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Predicate;
 
 /**
@@ -54,10 +61,12 @@ public abstract class AbstractClientAcceptor {
     protected EventLoopGroup workerEventLoopGroup;
 
     protected SessionManagerInterface<?> sessionManager;
+
+    private final ClientGroupManager groupManager = new ClientGroupManager(this::encodeForMulticast);
     protected ClientChannelConfig config;
     protected ClientCodecConfig codecConfig;
 
-    private static final String WRAPPER_CHANNEL_KEY = "com.game.net.wrapper";
+    private static final AttributeKey<ClientAcceptedChannel> WRAPPER_CHANNEL_KEY = AttributeKey.valueOf("com.game.net.wrapper");
 
     /**
      * @param port     listen port
@@ -92,10 +101,26 @@ public abstract class AbstractClientAcceptor {
      */
     public abstract Channel start() throws InterruptedException;
 
+    /**
+     * the worker group can be shared with a ProxyConnector, so upstream connections live on the same event loops
+     *
+     * @return worker event loop group
+     */
+    public EventLoopGroup getWorkerEventLoopGroup() {
+        return workerEventLoopGroup;
+    }
+
     public SessionManagerInterface getSessionManager() {
         return sessionManager;
     }
 
+    /**
+     * @return rooms of accepted channels, a channel leaves its rooms when inactive
+     */
+    public ClientGroupManager getGroupManager() {
+        return groupManager;
+    }
+
     /**
      * broadcast to all accepted channel
      *
@@ -113,7 +138,101 @@ public abstract class AbstractClientAcceptor {
         }
     }
 
-    private void onChannelAccepted(Channel channel) {
+    /**
+     * write one message to many channels, the message is encoded once and the encoded bytes are shared if
+     * the acceptor supports it, see {@link #encodeForMulticast(ClientMessage)}
+     *
+     * @param message  message to write, Attention: ownership transfer happened here
+     * @param channels target channels
+     */
+    public void multicast(ClientMessage<?> message, Iterable<? extends ClientAcceptedChannel> channels) {
+        ByteBuf encoded = encodeForMulticast(message);
+        if (encoded != null) {
+            try {
+                for (ClientAcceptedChannel channel : channels) {
+                    if (channel.getChannel() != null) {
+                        channel.writeAndFlush(encoded.retainedDuplicate());
+                    }
+                }
+            } finally {
+                encoded.release();
+            }
+            return;
+        }
+        try {
+            for (ClientAcceptedChannel channel : channels) {
+                if (channel.getChannel() != null) {
+                    channel.getChannel().writeAndFlush(message.retain());
+                }
+            }
+        } finally {
+            message.release();
+        }
+    }
+
+    /**
+     * write one message to sessions, unknown session is skipped
+     *
+     * @param message    message to write, Attention: ownership transfer happened here
+     * @param sessionIds target sessions
+     */
+    public void multicastToSessions(ClientMessage<?> message, Iterable<String> sessionIds) {
+        if (sessionManager == null) {
+            message.release();
+            throw new IllegalStateException("session manager not set");
+        }
+        List<ClientAcceptedChannel> channels = new ArrayList<>();
+        for (String sessionId : sessionIds) {
+            SessionInterface session = sessionManager.getSession(sessionId);
+            if (session != null && session.channel() != null) {
+                channels.add(session.channel());
+            }
+        }
+        multicast(message, channels);
+    }
+
+    /**
+     * write one message to members of a group, O(members) rather than O(all channels)
+     *
+     * @param message message to write, Attention: ownership transfer happened here
+     * @param index   group index, like indexes().groupIndex("guild") of the session manager
+     * @param groupId target group
+     */
+    public void multicastToGroup(ClientMessage<?> message, SessionIndexes.GroupIndex<?> index, long groupId) {
+        ByteBuf encoded = encodeForMulticast(message);
+        try {
+            index.forEachMember(groupId, session -> {
+                ClientAcceptedChannel channel = session.channel();
+                if (channel == null || channel.getChannel() == null) {
+                    return;
+                }
+                if (encoded != null) {
+                    channel.writeAndFlush(encoded.retainedDuplicate());
+                } else {
+                    channel.getChannel().writeAndFlush(message.retain());
+                }
+            });
+        } finally {
+            if (encoded != null) {
+                encoded.release();
+            } else {
+                message.release();
+            }
+        }
+    }
+
+    /**
+     * encode a message once for multicast, the default implementation does not support it,
+     * so the message is written to every channel and encoded by each channel pipeline
+     *
+     * @param message message to encode, released if encoded
+     * @return encoded bytes, or null if not supported
+     */
+    protected ByteBuf encodeForMulticast(ClientMessage<?> message) {
+        return null;
+    }
+
+    private ClientAcceptedChannel onChannelAccepted(Channel channel) {
         if (logger.isInfoEnabled()) {
             logger.info("on channel accepted {}", channel.remoteAddress());
         }
@@ -124,6 +243,10 @@ public abstract class AbstractClientAcceptor {
             SessionInterface session = sessionManager.createSessionForNewChannel(clientAcceptedChannel);
             clientAcceptedChannel.setSession(session);
             sessionManager.saveSession(session);
+            SessionResumeHandler resumeHandler = channel.pipeline().get(SessionResumeHandler.class);
+            if (resumeHandler != null && session instanceof ResumableSession) {
+                resumeHandler.setSession((ResumableSession) session);
+            }
         }
 
         channelGroup.add(channel);
@@ -134,12 +257,44 @@ public abstract class AbstractClientAcceptor {
                 logger.error("delegate handle message error", e);
             }
         }
+        return clientAcceptedChannel;
+    }
+
+    /**
+     * attach the channel to a resumable session, its own new session is removed
+     *
+     * @return resumed session with the missed frames, null if failed
+     */
+    ResumableSessionManager.Resumed resumeSession(Channel channel, String token, long peerReceived) {
+        ClientAcceptedChannel clientAcceptedChannel = ChannelUtil.getAttribute(channel, WRAPPER_CHANNEL_KEY);
+        if (!(sessionManager instanceof ResumableSessionManager) || clientAcceptedChannel == null) {
+            return null;
+        }
+        ResumableSessionManager.Resumed resumed = ((ResumableSessionManager) sessionManager).resume(token, clientAcceptedChannel, peerReceived);
+        if (resumed == null) {
+            return null;
+        }
+        ResumableSession session = resumed.getSession();
+        SessionInterface newSession = clientAcceptedChannel.getSession();
+        clientAcceptedChannel.setSession(session);
+        if (newSession != null && newSession != session) {
+            sessionManager.removeSession(newSession.sessionId());
+        }
+        try {
+            delegate.onChannelStatusEvent(clientAcceptedChannel, ChannelEvent.CHANNEL_RESUMED);
+        } catch (Exception e) {
+            if (logger.isErrorEnabled()) {
+                logger.error("delegate handle message error", e);
+            }
+        }
+        return resumed;
     }
 
     private void removeClientChannel(ClientAcceptedChannel channel) {
         if (sessionManager != null) {
-            sessionManager.removeSession(channel.getSession().sessionId());
+            sessionManager.channelClosed(channel);
         }
+        groupManager.leaveAll(channel);
         channelGroup.remove(channel.getChannel());
     }
 
@@ -151,19 +306,21 @@ public abstract class AbstractClientAcceptor {
 
     /**
      * 客户端连接的最后一个channel handler，负责转发解码后的消息，及相关网络事件
+     * <p>
+     * one instance per channel, it keeps the wrapper channel, so reading a message needs no attribute lookup
      */
-    @ChannelHandler.Sharable
     public final class ClientChannelHandler extends SimpleChannelInboundHandler<ClientMessage<?>> {
 
+        private ClientAcceptedChannel clientAcceptedChannel;
+
         @Override
         public void channelRegistered(ChannelHandlerContext ctx) {
-            onChannelAccepted(ctx.channel());
+            clientAcceptedChannel = onChannelAccepted(ctx.channel());
         }
 
         //we don't need to release msg here, as ClientMessage extends ReferenceCounted
         @Override
         protected void channelRead0(ChannelHandlerContext ctx, ClientMessage msg) {
-            ClientAcceptedChannel clientAcceptedChannel = ChannelUtil.getAttribute(ctx.channel(), WRAPPER_CHANNEL_KEY);
             delegate.onChannelMessage(clientAcceptedChannel, msg);
         }
 
@@ -172,7 +329,6 @@ public abstract class AbstractClientAcceptor {
             if (logger.isInfoEnabled()) {
                 logger.info("gate channel Inactive {}", ctx.channel().remoteAddress());
             }
-            ClientAcceptedChannel clientAcceptedChannel = ChannelUtil.getAttribute(ctx.channel(), WRAPPER_CHANNEL_KEY);
             removeClientChannel(clientAcceptedChannel);
             ctx.close();
             delegate.onChannelStatusEvent(clientAcceptedChannel, ChannelEvent.CHANNEL_INACTIVE);
@@ -189,7 +345,6 @@ public abstract class AbstractClientAcceptor {
                     logger.error("channel:{} exceptionCaught:{}", ctx.channel().remoteAddress(), cause);
                 }
             }
-            ClientAcceptedChannel clientAcceptedChannel = ChannelUtil.getAttribute(ctx.channel(), WRAPPER_CHANNEL_KEY);
             ctx.close();
             delegate.onChannelExceptionCaught(clientAcceptedChannel, cause);
         }
@@ -20,7 +20,11 @@ import com.game.netty.netty.GameNettyEnv;
 import com.game.netty.netty.GameNettyUtil;
 import com.game.netty.client.codec.ClientMessageDecoder;
 import com.game.netty.client.codec.ClientMessageEncoder;
+import com.game.netty.client.ClientMessage;
+import com.game.netty.client.acceptor.session.ResumableSessionManager;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
@@ -61,6 +65,18 @@ public class ClientSocketAcceptor extends AbstractClientAcceptor {
         return sharedEncoder;
     }
 
+    /**
+     * encode by the shared encoder, the bytes are the same for every channel
+     */
+    @Override
+    protected ByteBuf encodeForMulticast(ClientMessage<?> message) {
+        ClientMessageEncoder<?> encoder = sharedEncoder;
+        if (encoder == null) {
+            return null;
+        }
+        return encoder.encode(ByteBufAllocator.DEFAULT, message);
+    }
+
     @Override
     public Channel start() throws InterruptedException {
 
@@ -79,10 +95,15 @@ public class ClientSocketAcceptor extends AbstractClientAcceptor {
                         if (GameNettyUtil.getLogLevel() != null) {
                             pipeline.addLast(new LoggingHandler(GameNettyUtil.getLogLevel()));
                         }
-                        pipeline.addLast(sharedEncoder);
                         ClientMessageDecoder<?> clientMessageDecoder = new ClientMessageDecoder<>(codecConfig.getSupplier().get(), codecConfig.getClientMessageHeadSize(), codecConfig.isDecoderKeepMessageBuf());
+                        clientMessageDecoder.setPooledMessage(codecConfig.isPooledMessage());
                         codecConfig.getBodyDecodeTransformers().forEach(clientMessageDecoder::addTransformer);
                         pipeline.addLast(clientMessageDecoder);
+                        if (sessionManager instanceof ResumableSessionManager) {
+                            //after decoder in inbound direction, after encoder in outbound direction
+                            pipeline.addLast(new SessionResumeHandler(ClientSocketAcceptor.this));
+                        }
+                        pipeline.addLast(sharedEncoder);
                         pipeline.addLast(new ClientChannelHandler());
                     }
                 });
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.client.acceptor;
+
+import com.game.netty.client.ClientMessage;
+import com.game.netty.client.acceptor.session.ResumableSession;
+import com.game.netty.client.acceptor.session.ResumableSessionManager;
+import com.game.netty.client.codec.ClientResumeFrame;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.List;
+
+/**
+ * Session resume on an accepted client channel, placed after ClientMessageDecoder and before ClientMessageEncoder
+ * (in outbound direction), so it sees decoded inbound messages and encoded outbound frames.
+ * <p>
+ * It sends the resume token when connected, counts received messages, keeps sent frames in the resend ring of session,
+ * and handles RESUME from client: on success, answers RESUMED and resends the missed frames, otherwise answers REJECTED.
+ * Control frames are written by this handler, they are neither counted nor kept.
+ */
+public class SessionResumeHandler extends ChannelDuplexHandler {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(SessionResumeHandler.class);
+
+    private final AbstractClientAcceptor acceptor;
+
+    private ResumableSession session;
+
+    public SessionResumeHandler(AbstractClientAcceptor acceptor) {
+        this.acceptor = acceptor;
+    }
+
+    void setSession(ResumableSession session) {
+        this.session = session;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        if (session != null) {
+            ctx.writeAndFlush(ClientResumeFrame.token(session.getResumeToken()).encode(ctx.alloc()));
+        }
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof ClientMessage) {
+            if (session != null) {
+                session.onMessageReceived();
+            }
+            super.channelRead(ctx, msg);
+        } else if (msg instanceof ClientResumeFrame) {
+            ClientResumeFrame frame = (ClientResumeFrame) msg;
+            if (frame.getType() == ClientResumeFrame.RESUME) {
+                resume(ctx, frame);
+            }
+        } else {
+            super.channelRead(ctx, msg);
+        }
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof ByteBuf && session != null) {
+            session.getResendRing().add((ByteBuf) msg);
+        }
+        super.write(ctx, msg, promise);
+    }
+
+    private void resume(ChannelHandlerContext ctx, ClientResumeFrame frame) {
+        ResumableSessionManager.Resumed result = acceptor.resumeSession(ctx.channel(), frame.getToken(), frame.getReceivedCount());
+        if (result == null) {
+            if (logger.isInfoEnabled()) {
+                logger.info("resume rejected {}", ctx.channel().remoteAddress());
+            }
+            ctx.writeAndFlush(ClientResumeFrame.rejected().encode(ctx.alloc()));
+            return;
+        }
+        ResumableSession resumed = result.getSession();
+        List<ByteBuf> missed = result.getMissed();
+        session = resumed;
+        ctx.write(ClientResumeFrame.resumed(resumed.getReceivedCount()).encode(ctx.alloc()));
+        for (ByteBuf buf : missed) {
+            ctx.write(buf);
+        }
+        ctx.flush();
+        if (logger.isInfoEnabled()) {
+            logger.info("session {} resumed by {}, resend {}", resumed.sessionId(), ctx.channel().remoteAddress(), missed.size());
+        }
+    }
+}
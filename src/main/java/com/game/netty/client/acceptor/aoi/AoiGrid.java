@@ -0,0 +1,276 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.client.acceptor.aoi;
+
+import com.game.netty.client.ClientMessage;
+import com.game.netty.client.acceptor.AbstractClientAcceptor;
+import com.game.netty.client.acceptor.ClientAcceptedChannel;
+import com.game.netty.client.acceptor.session.SessionInterface;
+import io.netty.util.collection.LongObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Area of interest index of a map, entities are put in square cells, an entity sees the entities in the
+ * (2 * viewCells + 1)^2 cells around its own cell.
+ * <p>
+ * A move inside a cell is a field update; a move across cells only visits the cells entering and leaving view,
+ * and fires {@link AoiListener} events both ways, so enter and leave are symmetric.
+ * Neighbour queries and {@link #broadcast} are O(neighbours) rather than O(all entities).
+ * <p>
+ * The grid is not thread safe, a map is usually updated by one game loop or one eventLoop.
+ *
+ * @param <S> entity type, usually a session
+ */
+public class AoiGrid<S extends SessionInterface> {
+
+    private final float cellSize;
+    private final int viewCells;
+    private final AoiListener<S> listener;
+
+    private final LongObjectHashMap<List<Entity<S>>> cells = new LongObjectHashMap<>();
+    private final Map<S, Entity<S>> entities = new IdentityHashMap<>();
+
+    /**
+     * reused by broadcast
+     */
+    private final List<ClientAcceptedChannel> targets = new ArrayList<>();
+
+    /**
+     * @param cellSize  cell edge length, usually the view distance
+     * @param viewCells how many cells an entity sees in each direction, 1 for 3x3 cells
+     * @param listener  enter and leave events, may be null
+     */
+    public AoiGrid(float cellSize, int viewCells, AoiListener<S> listener) {
+        if (cellSize <= 0 || viewCells < 0) {
+            throw new IllegalArgumentException("cellSize: " + cellSize + ", viewCells: " + viewCells);
+        }
+        this.cellSize = cellSize;
+        this.viewCells = viewCells;
+        this.listener = listener;
+    }
+
+    /**
+     * put an entity on the map, enter events are fired with entities around
+     *
+     * @return false if already on the map
+     */
+    public boolean enter(S s, float x, float y) {
+        if (entities.containsKey(s)) {
+            return false;
+        }
+        Entity<S> entity = new Entity<>(s, cellX(x), cellY(y));
+        entities.put(s, entity);
+        forEachInView(entity.cellX, entity.cellY, other -> fireEnter(entity, other));
+        addToCell(entity);
+        return true;
+    }
+
+    /**
+     * move an entity, enter and leave events are fired for entities coming into and going out of view
+     *
+     * @return false if not on the map
+     */
+    public boolean move(S s, float x, float y) {
+        Entity<S> entity = entities.get(s);
+        if (entity == null) {
+            return false;
+        }
+        int newX = cellX(x);
+        int newY = cellY(y);
+        int oldX = entity.cellX;
+        int oldY = entity.cellY;
+        if (newX == oldX && newY == oldY) {
+            return true;
+        }
+        removeFromCell(entity);
+        //cells in old view but not in new view
+        forEachInView(oldX, oldY, other -> {
+            if (!inView(newX, newY, other.cellX, other.cellY)) {
+                fireLeave(entity, other);
+            }
+        });
+        //cells in new view but not in old view
+        forEachInView(newX, newY, other -> {
+            if (!inView(oldX, oldY, other.cellX, other.cellY)) {
+                fireEnter(entity, other);
+            }
+        });
+        entity.cellX = newX;
+        entity.cellY = newY;
+        addToCell(entity);
+        return true;
+    }
+
+    /**
+     * remove an entity from the map, leave events are fired with entities around
+     *
+     * @return false if not on the map
+     */
+    public boolean leave(S s) {
+        Entity<S> entity = entities.remove(s);
+        if (entity == null) {
+            return false;
+        }
+        removeFromCell(entity);
+        forEachInView(entity.cellX, entity.cellY, other -> fireLeave(entity, other));
+        return true;
+    }
+
+    public boolean contains(S s) {
+        return entities.containsKey(s);
+    }
+
+    public int size() {
+        return entities.size();
+    }
+
+    /**
+     * visit entities in view of an entity, itself excluded
+     *
+     * @param s        center entity
+     * @param consumer neighbour consumer, must not update the grid
+     */
+    public void forEachNeighbour(S s, Consumer<? super S> consumer) {
+        Entity<S> entity = entities.get(s);
+        if (entity == null) {
+            return;
+        }
+        forEachInView(entity.cellX, entity.cellY, other -> {
+            if (other != entity) {
+                consumer.accept(other.session);
+            }
+        });
+    }
+
+    /**
+     * write a message to entities in view of an entity, the message is encoded once if the acceptor supports it
+     *
+     * @param acceptor    acceptor of the sessions
+     * @param s           center entity
+     * @param message     message, Attention: ownership transfer happened here
+     * @param includeSelf whether the center entity gets the message too
+     */
+    public void broadcast(AbstractClientAcceptor acceptor, S s, ClientMessage<?> message, boolean includeSelf) {
+        Entity<S> entity = entities.get(s);
+        if (entity == null) {
+            message.release();
+            return;
+        }
+        try {
+            forEachInView(entity.cellX, entity.cellY, other -> {
+                if ((includeSelf || other != entity) && other.session.channel() != null) {
+                    targets.add(other.session.channel());
+                }
+            });
+            acceptor.multicast(message, targets);
+        } finally {
+            targets.clear();
+        }
+    }
+
+    private void fireEnter(Entity<S> entity, Entity<S> other) {
+        if (listener != null && other != entity) {
+            listener.onEnter(entity.session, other.session);
+            listener.onEnter(other.session, entity.session);
+        }
+    }
+
+    private void fireLeave(Entity<S> entity, Entity<S> other) {
+        if (listener != null && other != entity) {
+            listener.onLeave(entity.session, other.session);
+            listener.onLeave(other.session, entity.session);
+        }
+    }
+
+    private boolean inView(int centerX, int centerY, int cellX, int cellY) {
+        return Math.abs(cellX - centerX) <= viewCells && Math.abs(cellY - centerY) <= viewCells;
+    }
+
+    private void forEachInView(int centerX, int centerY, Consumer<Entity<S>> consumer) {
+        for (int cx = centerX - viewCells; cx <= centerX + viewCells; cx++) {
+            for (int cy = centerY - viewCells; cy <= centerY + viewCells; cy++) {
+                List<Entity<S>> cell = cell(cx, cy, false);
+                if (cell != null) {
+                    for (int i = 0, n = cell.size(); i < n; i++) {
+                        consumer.accept(cell.get(i));
+                    }
+                }
+            }
+        }
+    }
+
+    private void addToCell(Entity<S> entity) {
+        List<Entity<S>> cell = cell(entity.cellX, entity.cellY, true);
+        //keeps the index of each entity for swap remove
+        entity.index = cell.size();
+        cell.add(entity);
+    }
+
+    private void removeFromCell(Entity<S> entity) {
+        long key = cellKey(entity.cellX, entity.cellY);
+        List<Entity<S>> cell = cells.get(key);
+        //swap remove, order in a cell doesn't matter
+        int last = cell.size() - 1;
+        Entity<S> moved = cell.get(last);
+        cell.set(entity.index, moved);
+        moved.index = entity.index;
+        cell.remove(last);
+        if (cell.isEmpty()) {
+            cells.remove(key);
+        }
+    }
+
+    private List<Entity<S>> cell(int cellX, int cellY, boolean create) {
+        long key = cellKey(cellX, cellY);
+        List<Entity<S>> cell = cells.get(key);
+        if (cell == null && create) {
+            cell = new ArrayList<>();
+            cells.put(key, cell);
+        }
+        return cell;
+    }
+
+    private int cellX(float x) {
+        return (int) Math.floor(x / cellSize);
+    }
+
+    private int cellY(float y) {
+        return (int) Math.floor(y / cellSize);
+    }
+
+    private static long cellKey(int cellX, int cellY) {
+        return (long) cellX << 32 | (cellY & 0xFFFFFFFFL);
+    }
+
+    private static final class Entity<S> {
+        private final S session;
+        private int cellX;
+        private int cellY;
+        private int index;
+
+        Entity(S session, int cellX, int cellY) {
+            this.session = session;
+            this.cellX = cellX;
+            this.cellY = cellY;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.client.acceptor.aoi;
+
+/**
+ * area of interest events, called synchronously by {@link AoiGrid} on the thread updating it
+ *
+ * @param <S> entity type, usually a session
+ */
+public interface AoiListener<S> {
+
+    /**
+     * @param watcher the entity which sees another one now
+     * @param entered the entity coming into view of watcher
+     */
+    void onEnter(S watcher, S entered);
+
+    /**
+     * @param watcher the entity which doesn't see another one now
+     * @param left    the entity going out of view of watcher
+     */
+    void onLeave(S watcher, S left);
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.client.acceptor.group;
+
+import com.game.netty.client.ClientMessage;
+import com.game.netty.client.acceptor.ClientAcceptedChannel;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A room of client channels, like a chat channel, a battle room or a world zone.
+ * <p>
+ * Members are partitioned by their eventLoop, a partition is only touched on its own eventLoop, so join and leave
+ * take no lock, they run later if called on another thread. A send encodes the message once, and submits one task
+ * to each eventLoop having members, which writes and flushes its members there.
+ *
+ * @see ClientGroupManager
+ */
+public final class ClientGroup {
+
+    private final Object key;
+
+    private final ClientGroupManager manager;
+
+    private final Map<EventLoop, Set<ClientAcceptedChannel>> partitions = new ConcurrentHashMap<>();
+
+    private final AtomicInteger memberCount = new AtomicInteger();
+
+    private volatile boolean disbanded;
+
+    ClientGroup(Object key, ClientGroupManager manager) {
+        this.key = key;
+        this.manager = manager;
+    }
+
+    public Object getKey() {
+        return key;
+    }
+
+    /**
+     * @return members, a snapshot which may be stale when joins and leaves are pending
+     */
+    public int memberCount() {
+        return memberCount.get();
+    }
+
+    public boolean isDisbanded() {
+        return disbanded;
+    }
+
+    /**
+     * add a channel, it leaves automatically when inactive
+     *
+     * @param channel member
+     */
+    public void join(ClientAcceptedChannel channel) {
+        inLoop(channel, () -> {
+            Channel ch = channel.getChannel();
+            if (disbanded || !ch.isActive()) {
+                return;
+            }
+            if (partitions.computeIfAbsent(ch.eventLoop(), loop -> new LinkedHashSet<>()).add(channel)) {
+                memberCount.incrementAndGet();
+                ClientGroupManager.groupsOf(ch).add(this);
+            }
+        });
+    }
+
+    public void leave(ClientAcceptedChannel channel) {
+        inLoop(channel, () -> {
+            if (removeMember(channel)) {
+                ClientGroupManager.groupsOf(channel.getChannel()).remove(this);
+            }
+        });
+    }
+
+    /**
+     * only called on the eventLoop of channel
+     */
+    boolean removeMember(ClientAcceptedChannel channel) {
+        Set<ClientAcceptedChannel> members = partitions.get(channel.getChannel().eventLoop());
+        if (members != null && members.remove(channel)) {
+            memberCount.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private static void inLoop(ClientAcceptedChannel channel, Runnable task) {
+        EventLoop loop = channel.getChannel().eventLoop();
+        if (loop.inEventLoop()) {
+            task.run();
+        } else {
+            loop.execute(task);
+        }
+    }
+
+    /**
+     * write to all members
+     *
+     * @param message message, Attention: ownership transfer happened here
+     */
+    public void writeAndFlush(ClientMessage<?> message) {
+        writeAndFlush(message, null);
+    }
+
+    /**
+     * write to all members except one, usually the sender
+     *
+     * @param message message, Attention: ownership transfer happened here
+     * @param except  member to skip, may be null
+     */
+    public void writeAndFlush(ClientMessage<?> message, ClientAcceptedChannel except) {
+        writeAndFlushExcept(message, except == null ? Collections.emptySet() : Collections.singleton(except));
+    }
+
+    /**
+     * write to all members except some, e.g. the ones already written directly
+     *
+     * @param message message, Attention: ownership transfer happened here
+     * @param except  members to skip, read on member eventLoops, must not be modified after the call
+     */
+    public void writeAndFlushExcept(ClientMessage<?> message, Set<ClientAcceptedChannel> except) {
+        ByteBuf encoded = manager.encode(message);
+        try {
+            for (Map.Entry<EventLoop, Set<ClientAcceptedChannel>> partition : partitions.entrySet()) {
+                Set<ClientAcceptedChannel> members = partition.getValue();
+                Object shared = encoded != null ? encoded.retain() : message.retain();
+                partition.getKey().execute(() -> writeMembers(members, shared, except));
+            }
+        } finally {
+            if (encoded != null) {
+                encoded.release();
+            } else {
+                message.release();
+            }
+        }
+    }
+
+    /**
+     * runs on the eventLoop of the partition
+     */
+    private static void writeMembers(Set<ClientAcceptedChannel> members, Object shared, Set<ClientAcceptedChannel> except) {
+        try {
+            for (ClientAcceptedChannel member : members) {
+                if (except.contains(member)) {
+                    continue;
+                }
+                if (shared instanceof ByteBuf) {
+                    member.getChannel().write(((ByteBuf) shared).retainedDuplicate());
+                } else {
+                    member.getChannel().write(((ClientMessage<?>) shared).retain());
+                }
+            }
+            for (ClientAcceptedChannel member : members) {
+                if (!except.contains(member)) {
+                    member.getChannel().flush();
+                }
+            }
+        } finally {
+            if (shared instanceof ByteBuf) {
+                ((ByteBuf) shared).release();
+            } else {
+                ((ClientMessage<?>) shared).release();
+            }
+        }
+    }
+
+    /**
+     * all members leave, the group accepts no more joins
+     */
+    void disband() {
+        disbanded = true;
+        for (Map.Entry<EventLoop, Set<ClientAcceptedChannel>> partition : partitions.entrySet()) {
+            partition.getKey().execute(() -> {
+                Set<ClientAcceptedChannel> members = partition.getValue();
+                for (ClientAcceptedChannel member : members) {
+                    ClientGroupManager.groupsOf(member.getChannel()).remove(this);
+                }
+                memberCount.addAndGet(-members.size());
+                members.clear();
+            });
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ClientGroup{" +
+                "key=" + key +
+                ", members=" + memberCount.get() +
+                '}';
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.client.acceptor.group;
+
+import com.game.netty.client.ClientMessage;
+import com.game.netty.client.acceptor.ClientAcceptedChannel;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Groups of client channels of an acceptor, keyed by name or number.
+ * <p>
+ * A channel leaves all its groups when it is inactive; a group lives until removed, even if it is empty.
+ */
+public final class ClientGroupManager {
+
+    /**
+     * groups a channel joined, only accessed on channel eventLoop
+     */
+    private static final AttributeKey<Set<ClientGroup>> GROUPS_KEY = AttributeKey.valueOf("com.game.net.groups");
+
+    private final Map<Object, ClientGroup> groups = new ConcurrentHashMap<>();
+
+    private final Function<ClientMessage<?>, ByteBuf> encoder;
+
+    /**
+     * @param encoder encode a message once for all members, returns null if not supported
+     */
+    public ClientGroupManager(Function<ClientMessage<?>, ByteBuf> encoder) {
+        this.encoder = encoder;
+    }
+
+    /**
+     * @param key group name or number
+     * @return the group, created if absent
+     */
+    public ClientGroup group(Object key) {
+        return groups.computeIfAbsent(key, k -> new ClientGroup(k, this));
+    }
+
+    /**
+     * @param key group name or number
+     * @return the group, null if absent
+     */
+    public ClientGroup get(Object key) {
+        return groups.get(key);
+    }
+
+    /**
+     * remove a group, all members leave it
+     *
+     * @param key group name or number
+     * @return the removed group, null if absent
+     */
+    public ClientGroup remove(Object key) {
+        ClientGroup group = groups.remove(key);
+        if (group != null) {
+            group.disband();
+        }
+        return group;
+    }
+
+    public Collection<ClientGroup> allGroups() {
+        return groups.values();
+    }
+
+    public void join(Object key, ClientAcceptedChannel channel) {
+        group(key).join(channel);
+    }
+
+    public void leave(Object key, ClientAcceptedChannel channel) {
+        ClientGroup group = groups.get(key);
+        if (group != null) {
+            group.leave(channel);
+        }
+    }
+
+    /**
+     * called by acceptor on channel eventLoop when the channel is inactive
+     *
+     * @param channel inactive channel
+     */
+    public void leaveAll(ClientAcceptedChannel channel) {
+        Set<ClientGroup> joined = channel.getChannel().attr(GROUPS_KEY).getAndSet(null);
+        if (joined == null) {
+            return;
+        }
+        for (ClientGroup group : joined) {
+            group.removeMember(channel);
+        }
+    }
+
+    ByteBuf encode(ClientMessage<?> message) {
+        return encoder.apply(message);
+    }
+
+    static Set<ClientGroup> groupsOf(Channel channel) {
+        Set<ClientGroup> joined = channel.attr(GROUPS_KEY).get();
+        if (joined == null) {
+            joined = new HashSet<>();
+            channel.attr(GROUPS_KEY).set(joined);
+        }
+        return joined;
+    }
+}
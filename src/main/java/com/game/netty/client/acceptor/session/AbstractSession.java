@@ -17,6 +17,7 @@
 package com.game.netty.client.acceptor.session;
 
 import com.game.netty.client.acceptor.ClientAcceptedChannel;
+import com.game.netty.util.AttributeSlots;
 
 /**
  * Base Session to help implementation
@@ -26,6 +27,8 @@ public abstract class AbstractSession implements SessionInterface {
     private final String sessionId;
     private final ClientAcceptedChannel channel;
 
+    private final AttributeSlots slots = new AttributeSlots();
+
     public AbstractSession(String sessionId, ClientAcceptedChannel channel) {
         this.sessionId = sessionId;
         this.channel = channel;
@@ -36,6 +39,11 @@ public abstract class AbstractSession implements SessionInterface {
         return sessionId;
     }
 
+    @Override
+    public AttributeSlots slots() {
+        return slots;
+    }
+
     @Override
     public ClientAcceptedChannel channel() {
         return channel;
@@ -27,8 +27,17 @@ public abstract class AbstractSessionManager<S extends SessionInterface> impleme
 
     private final Map<String, S> sessionMap = new ConcurrentHashMap<>();
 
+    private final SessionIndexes<S> indexes = new SessionIndexes<>(this);
+
     protected abstract void onSessionRemoved(S s);
 
+    /**
+     * @return secondary indexes by user id and groups, kept consistent with save and remove
+     */
+    public SessionIndexes<S> indexes() {
+        return indexes;
+    }
+
     public Collection<S> allSessions() {
         return sessionMap.values();
     }
@@ -39,7 +48,10 @@ public abstract class AbstractSessionManager<S extends SessionInterface> impleme
 
     @Override
     public void saveSession(SessionInterface s) {
-        sessionMap.put(s.sessionId(), (S) s);
+        S old = sessionMap.put(s.sessionId(), (S) s);
+        if (old != null && old != s) {
+            indexes.removeSession(old);
+        }
     }
 
     @Override
@@ -51,6 +63,7 @@ public abstract class AbstractSessionManager<S extends SessionInterface> impleme
     public S removeSession(String sessionId) {
         S s = sessionMap.remove(sessionId);
         if (s != null) {
+            indexes.removeSession(s);
             onSessionRemoved(s);
         }
         return s;
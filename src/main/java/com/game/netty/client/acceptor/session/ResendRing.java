@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.client.acceptor.session;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encoded frames sent to a client recently, bounded by count and bytes, used to resend the frames a resumed client missed.
+ * <p>
+ * Frames are numbered by the order they are sent in the session, starting from 0.
+ */
+public final class ResendRing {
+
+    private final int maxFrames;
+    private final int maxBytes;
+
+    private final ArrayDeque<ByteBuf> frames = new ArrayDeque<>();
+
+    /**
+     * sequence of the first frame in ring
+     */
+    private long firstSequence;
+    private long bytes;
+
+    /**
+     * @param maxFrames max frames kept
+     * @param maxBytes  max bytes kept
+     */
+    public ResendRing(int maxFrames, int maxBytes) {
+        this.maxFrames = maxFrames;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param frame a frame being sent, the ring keeps a retained duplicate
+     */
+    public synchronized void add(ByteBuf frame) {
+        frames.add(frame.retainedDuplicate());
+        bytes += frame.readableBytes();
+        while (frames.size() > maxFrames || (bytes > maxBytes && frames.size() > 1)) {
+            ByteBuf oldest = frames.poll();
+            bytes -= oldest.readableBytes();
+            firstSequence++;
+            oldest.release();
+        }
+    }
+
+    /**
+     * @return sequence of the next frame, also the count of frames sent
+     */
+    public synchronized long nextSequence() {
+        return firstSequence + frames.size();
+    }
+
+    /**
+     * @param sequence first sequence needed
+     * @return whether all frames from the sequence are kept
+     */
+    public synchronized boolean canResendFrom(long sequence) {
+        return sequence >= firstSequence && sequence <= nextSequence();
+    }
+
+    /**
+     * @param sequence first sequence needed
+     * @return retained duplicates of frames from the sequence, null if some of them are evicted or sequence is invalid
+     */
+    public synchronized List<ByteBuf> framesFrom(long sequence) {
+        if (!canResendFrom(sequence)) {
+            return null;
+        }
+        List<ByteBuf> result = new ArrayList<>((int) (nextSequence() - sequence));
+        long current = firstSequence;
+        for (ByteBuf frame : frames) {
+            if (current++ >= sequence) {
+                result.add(frame.retainedDuplicate());
+            }
+        }
+        return result;
+    }
+
+    public synchronized void clear() {
+        for (ByteBuf frame : frames) {
+            frame.release();
+        }
+        firstSequence += frames.size();
+        frames.clear();
+        bytes = 0;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.client.acceptor.session;
+
+import com.game.netty.client.acceptor.ClientAcceptedChannel;
+import com.game.netty.util.AttributeSlots;
+
+/**
+ * A session which survives a reconnect of its client: a new channel presenting the resume token re-attaches to the session
+ * within a grace period, and receives the messages it missed from the resend ring.
+ * <p>
+ * {@link #channel()} changes on resume, so always get the channel from session to write.
+ *
+ * @see ResumableSessionManager
+ */
+public class ResumableSession implements SessionInterface {
+
+    private final String sessionId;
+    private final String resumeToken;
+    private final ResendRing resendRing;
+
+    private final AttributeSlots slots = new AttributeSlots();
+
+    private volatile ClientAcceptedChannel channel;
+
+    /**
+     * ClientMessages received from client in this session
+     */
+    private volatile long receivedCount;
+
+    /**
+     * nanoTime when the channel closed, 0 if attached
+     */
+    private volatile long detachedNanos;
+
+    public ResumableSession(String sessionId, String resumeToken, ClientAcceptedChannel channel, ResendRing resendRing) {
+        this.sessionId = sessionId;
+        this.resumeToken = resumeToken;
+        this.channel = channel;
+        this.resendRing = resendRing;
+    }
+
+    @Override
+    public String sessionId() {
+        return sessionId;
+    }
+
+    @Override
+    public AttributeSlots slots() {
+        return slots;
+    }
+
+    @Override
+    public ClientAcceptedChannel channel() {
+        return channel;
+    }
+
+    public String getResumeToken() {
+        return resumeToken;
+    }
+
+    public ResendRing getResendRing() {
+        return resendRing;
+    }
+
+    public long getReceivedCount() {
+        return receivedCount;
+    }
+
+    /**
+     * a ClientMessage is received, called on channel eventLoop
+     */
+    public void onMessageReceived() {
+        receivedCount++;
+    }
+
+    public boolean isDetached() {
+        return detachedNanos != 0;
+    }
+
+    public long getDetachedNanos() {
+        return detachedNanos;
+    }
+
+    void detach() {
+        detachedNanos = Math.max(System.nanoTime(), 1);
+    }
+
+    void attach(ClientAcceptedChannel channel) {
+        this.channel = channel;
+        this.detachedNanos = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+                "sessionId='" + sessionId + '\'' +
+                ", receivedCount=" + receivedCount +
+                ", detached=" + isDetached() +
+                '}';
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.client.acceptor.session;
+
+import com.game.netty.client.acceptor.ClientAcceptedChannel;
+import io.netty.buffer.ByteBuf;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session manager of {@link ResumableSession}: a session is kept for a grace period after its channel closed,
+ * and is removed if no channel resumes it in time.
+ * <p>
+ * Resume is supported by ClientSocketAcceptor, the protocol is described in {@link com.game.netty.client.codec.ClientResumeFrame}.
+ */
+public class ResumableSessionManager extends AbstractSessionManager<ResumableSession> {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final long gracePeriodMillis;
+    private final int resendMaxFrames;
+    private final int resendMaxBytes;
+
+    private final Map<String, ResumableSession> tokens = new ConcurrentHashMap<>();
+
+    /**
+     * @param gracePeriodMillis how long a session waits for resume after its channel closed
+     * @param resendMaxFrames   max frames kept for resend of a session
+     * @param resendMaxBytes    max bytes kept for resend of a session
+     */
+    public ResumableSessionManager(long gracePeriodMillis, int resendMaxFrames, int resendMaxBytes) {
+        this.gracePeriodMillis = gracePeriodMillis;
+        this.resendMaxFrames = resendMaxFrames;
+        this.resendMaxBytes = resendMaxBytes;
+    }
+
+    @Override
+    public ResumableSession createSessionForNewChannel(ClientAcceptedChannel channel) {
+        return new ResumableSession(newSessionId(), newResumeToken(), channel, new ResendRing(resendMaxFrames, resendMaxBytes));
+    }
+
+    protected String newSessionId() {
+        return UUID.randomUUID().toString();
+    }
+
+    protected String newResumeToken() {
+        byte[] bytes = new byte[16];
+        RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    @Override
+    public void saveSession(SessionInterface s) {
+        super.saveSession(s);
+        tokens.put(((ResumableSession) s).getResumeToken(), (ResumableSession) s);
+    }
+
+    @Override
+    public ResumableSession removeSession(String sessionId) {
+        ResumableSession session = super.removeSession(sessionId);
+        if (session != null) {
+            tokens.remove(session.getResumeToken());
+            session.getResendRing().clear();
+        }
+        return session;
+    }
+
+    @Override
+    protected void onSessionRemoved(ResumableSession s) {
+    }
+
+    /**
+     * keep the session for grace period instead of removing it
+     */
+    @Override
+    public void channelClosed(ClientAcceptedChannel channel) {
+        ResumableSession session = (ResumableSession) channel.getSession();
+        if (session == null) {
+            return;
+        }
+        long detachedNanos;
+        synchronized (session) {
+            //checked with the detach under the lock of resume, a resume in between would be left detached
+            if (session.channel() != channel) {
+                //resumed by another channel
+                return;
+            }
+            session.detach();
+            detachedNanos = session.getDetachedNanos();
+        }
+        channel.getChannel().eventLoop().schedule(() -> {
+            synchronized (session) {
+                if (session.channel() == channel && session.getDetachedNanos() == detachedNanos) {
+                    removeSession(session.sessionId());
+                }
+            }
+        }, gracePeriodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * attach a new channel to the session of token, the old channel is closed if still open
+     *
+     * @param token         resume token
+     * @param channel       new channel
+     * @param peerReceived  messages the client received in the session
+     * @return resumed session with the missed frames, null if token unknown, expired, or the missed messages are no longer kept
+     */
+    public Resumed resume(String token, ClientAcceptedChannel channel, long peerReceived) {
+        ResumableSession session = tokens.get(token);
+        if (session == null) {
+            return null;
+        }
+        synchronized (session) {
+            if (getSession(session.sessionId()) != session) {
+                return null;
+            }
+            //snapshot before attach, the session is left untouched if the frames are gone
+            List<ByteBuf> missed = session.getResendRing().framesFrom(peerReceived);
+            if (missed == null) {
+                return null;
+            }
+            ClientAcceptedChannel old = session.channel();
+            session.attach(channel);
+            if (old != null && old != channel) {
+                old.close();
+            }
+            return new Resumed(session, missed);
+        }
+    }
+
+    /**
+     * result of a successful resume
+     */
+    public static final class Resumed {
+
+        private final ResumableSession session;
+        private final List<ByteBuf> missed;
+
+        Resumed(ResumableSession session, List<ByteBuf> missed) {
+            this.session = session;
+            this.missed = missed;
+        }
+
+        public ResumableSession getSession() {
+            return session;
+        }
+
+        /**
+         * @return retained frames the client missed, taken atomically with the attach, the receiver must write or release them
+         */
+        public List<ByteBuf> getMissed() {
+            return missed;
+        }
+    }
+}
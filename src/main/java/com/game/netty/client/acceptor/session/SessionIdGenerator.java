@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.client.acceptor.session;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Generate unique 64-bit session ids without randomness, layout from the high bit:
+ * [0(1 bit)]+[NodeId(10 bits)]+[Sequence(47 bits)]+[Shard(6 bits)].
+ * <p>
+ * Every shard has its own sequence, so generators on different eventLoops don't contend.
+ * A sequence starts from (seconds since 2020-01-01) * 2^17 at startup, so ids don't repeat after restart
+ * as long as a shard generates less than 131072 ids per second on average, it lasts about 34 years.
+ */
+public final class SessionIdGenerator {
+
+    public static final int NODE_BITS = 10;
+    public static final int SHARD_BITS = 6;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    public static final int MAX_SHARDS = 1 << SHARD_BITS;
+
+    private static final int SEQUENCE_BITS = 63 - NODE_BITS - SHARD_BITS;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int SEQUENCE_PER_SECOND_BITS = 17;
+
+    /**
+     * 2020-01-01T00:00:00Z
+     */
+    private static final long EPOCH_MILLIS = 1577836800000L;
+
+    /**
+     * sequences are 16 longs apart, so two shards are never on the same cache line
+     */
+    private static final int PADDING = 16;
+
+    private final long nodeBits;
+    private final AtomicLongArray sequences = new AtomicLongArray(MAX_SHARDS * PADDING);
+
+    /**
+     * @param nodeId id of this server in [0, 1023], must be unique among servers sharing session ids
+     */
+    public SessionIdGenerator(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("nodeId must in [0, " + MAX_NODE_ID + "]: " + nodeId);
+        }
+        this.nodeBits = (long) nodeId << (SEQUENCE_BITS + SHARD_BITS);
+        long start = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_PER_SECOND_BITS;
+        for (int i = 0; i < MAX_SHARDS; i++) {
+            sequences.set(i * PADDING, start);
+        }
+    }
+
+    /**
+     * @param shard shard in [0, 64)
+     * @return a new id of the shard
+     */
+    public long next(int shard) {
+        long sequence = sequences.incrementAndGet(shard * PADDING) & SEQUENCE_MASK;
+        return nodeBits | sequence << SHARD_BITS | shard;
+    }
+
+    public static int nodeOf(long id) {
+        return (int) (id >>> (SEQUENCE_BITS + SHARD_BITS));
+    }
+
+    public static int shardOf(long id) {
+        return (int) id & (MAX_SHARDS - 1);
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.client.acceptor.session;
+
+import io.netty.util.collection.LongObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Secondary indexes of the sessions in a session manager: a unique index by user id, and named group indexes
+ * (guild, team...) with many sessions per group.
+ * <p>
+ * A key is bound after the session is saved, usually on login; a session removed from the manager is removed from all
+ * indexes, binding a session which is no longer saved does nothing.
+ * <p>
+ * Group members are kept in copy-on-write arrays, {@link GroupIndex#forEachMember} holds the lock only to get the array,
+ * so visiting is O(members) and allocation free, while joining and leaving copy the member array.
+ *
+ * @param <S> Session type
+ */
+public final class SessionIndexes<S extends SessionInterface> {
+
+    private final SessionManagerInterface<S> manager;
+
+    private final UserIndex<S> userIndex = new UserIndex<>(this);
+
+    private final Map<String, GroupIndex<S>> groupIndexes = new ConcurrentHashMap<>();
+
+    SessionIndexes(SessionManagerInterface<S> manager) {
+        this.manager = manager;
+    }
+
+    public UserIndex<S> userIndex() {
+        return userIndex;
+    }
+
+    /**
+     * @param name index name, like "guild"
+     * @return the group index of name, created if absent
+     */
+    public GroupIndex<S> groupIndex(String name) {
+        return groupIndexes.computeIfAbsent(name, n -> new GroupIndex<>(this));
+    }
+
+    private boolean isSaved(S session) {
+        return manager.getSession(session.sessionId()) == session;
+    }
+
+    /**
+     * called by the manager after the session is removed from it
+     */
+    void removeSession(S session) {
+        userIndex.remove(session);
+        for (GroupIndex<S> groupIndex : groupIndexes.values()) {
+            groupIndex.remove(session);
+        }
+    }
+
+    /**
+     * unique index from user id to session
+     */
+    public static final class UserIndex<S extends SessionInterface> {
+        private final SessionIndexes<S> indexes;
+        private final LongObjectHashMap<S> sessions = new LongObjectHashMap<>();
+        private final Map<S, Long> userIds = new IdentityHashMap<>();
+
+        private UserIndex(SessionIndexes<S> indexes) {
+            this.indexes = indexes;
+        }
+
+        /**
+         * bind a session to a user id, the previous user id of the session is unbound
+         *
+         * @param session session
+         * @param userId  user id
+         * @return the session bound to the user id before, which is unbound now, usually to be kicked; null if none
+         */
+        public synchronized S bind(S session, long userId) {
+            if (!indexes.isSaved(session)) {
+                return null;
+            }
+            Long oldUserId = userIds.put(session, userId);
+            if (oldUserId != null && oldUserId != userId) {
+                sessions.remove(oldUserId.longValue());
+            }
+            S old = sessions.put(userId, session);
+            if (old != null && old != session) {
+                userIds.remove(old);
+                return old;
+            }
+            return null;
+        }
+
+        public synchronized S get(long userId) {
+            return sessions.get(userId);
+        }
+
+        /**
+         * @param session session
+         * @return user id of the session, 0 if not bound
+         */
+        public synchronized long userIdOf(S session) {
+            Long userId = userIds.get(session);
+            return userId == null ? 0 : userId;
+        }
+
+        public synchronized void remove(S session) {
+            Long userId = userIds.remove(session);
+            if (userId != null) {
+                sessions.remove(userId.longValue());
+            }
+        }
+
+        public synchronized int size() {
+            return sessions.size();
+        }
+    }
+
+    /**
+     * index from group id to member sessions, a session can join many groups of the index
+     */
+    public static final class GroupIndex<S extends SessionInterface> {
+        private static final Object[] EMPTY = new Object[0];
+
+        private final SessionIndexes<S> indexes;
+
+        /**
+         * member arrays are never modified after put
+         */
+        private final LongObjectHashMap<Object[]> groups = new LongObjectHashMap<>();
+        private final Map<S, List<Long>> groupsOfSession = new IdentityHashMap<>();
+
+        private GroupIndex(SessionIndexes<S> indexes) {
+            this.indexes = indexes;
+        }
+
+        /**
+         * @return false if already a member, or the session is not saved
+         */
+        public synchronized boolean join(long groupId, S session) {
+            if (!indexes.isSaved(session)) {
+                return false;
+            }
+            Object[] members = membersOf(groupId);
+            for (Object member : members) {
+                if (member == session) {
+                    return false;
+                }
+            }
+            Object[] newMembers = Arrays.copyOf(members, members.length + 1);
+            newMembers[members.length] = session;
+            publish(groupId, newMembers);
+            groupsOfSession.computeIfAbsent(session, s -> new ArrayList<>(2)).add(groupId);
+            return true;
+        }
+
+        /**
+         * @return false if not a member
+         */
+        public synchronized boolean leave(long groupId, S session) {
+            if (!removeMember(groupId, session)) {
+                return false;
+            }
+            List<Long> groupIds = groupsOfSession.get(session);
+            groupIds.remove(Long.valueOf(groupId));
+            if (groupIds.isEmpty()) {
+                groupsOfSession.remove(session);
+            }
+            return true;
+        }
+
+        /**
+         * remove the session from all groups of this index
+         */
+        public synchronized void remove(S session) {
+            List<Long> groupIds = groupsOfSession.remove(session);
+            if (groupIds != null) {
+                for (Long groupId : groupIds) {
+                    removeMember(groupId, session);
+                }
+            }
+        }
+
+        private boolean removeMember(long groupId, S session) {
+            Object[] members = membersOf(groupId);
+            for (int i = 0; i < members.length; i++) {
+                if (members[i] == session) {
+                    Object[] newMembers = new Object[members.length - 1];
+                    System.arraycopy(members, 0, newMembers, 0, i);
+                    System.arraycopy(members, i + 1, newMembers, i, members.length - i - 1);
+                    publish(groupId, newMembers);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private Object[] membersOf(long groupId) {
+            Object[] members = groups.get(groupId);
+            return members == null ? EMPTY : members;
+        }
+
+        private void publish(long groupId, Object[] members) {
+            if (members.length == 0) {
+                groups.remove(groupId);
+            } else {
+                groups.put(groupId, members);
+            }
+        }
+
+        /**
+         * visit members of a group, a snapshot at the time of call
+         *
+         * @param groupId  group id
+         * @param consumer member consumer
+         */
+        @SuppressWarnings("unchecked")
+        public void forEachMember(long groupId, Consumer<? super S> consumer) {
+            Object[] members;
+            synchronized (this) {
+                members = groups.get(groupId);
+            }
+            if (members == null) {
+                return;
+            }
+            for (Object member : members) {
+                consumer.accept((S) member);
+            }
+        }
+
+        public synchronized int memberCount(long groupId) {
+            Object[] members = groups.get(groupId);
+            return members == null ? 0 : members.length;
+        }
+
+        public synchronized int groupCount() {
+            return groups.size();
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package com.game.netty.client.acceptor.session;
 
 import com.game.netty.client.acceptor.ClientAcceptedChannel;
+import com.game.netty.util.AttributeSlots;
 
 /**
  * session is a info bundle attached to ClientAcceptedChannel, user can implement this interface to append more information.
@@ -27,4 +28,10 @@ public interface SessionInterface {
     String sessionId();
 
     ClientAcceptedChannel channel();
+
+    /**
+     * @return user state of this session indexed by SlotKey, it outlives the channel of a resumed session;
+     * a session implemented by user must hold an AttributeSlots of its own
+     */
+    AttributeSlots slots();
 }
@@ -31,4 +31,13 @@ public interface SessionManagerInterface<S extends SessionInterface> {
     S getSession(String sessionId);
 
     S removeSession(String sessionId);
+
+    /**
+     * called by acceptor when the channel of a session is closed, the session is removed by default
+     *
+     * @param channel closed channel
+     */
+    default void channelClosed(ClientAcceptedChannel channel) {
+        removeSession(channel.getSession().sessionId());
+    }
 }
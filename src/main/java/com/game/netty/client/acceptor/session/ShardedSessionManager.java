@@ -0,0 +1,196 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.client.acceptor.session;
+
+import com.game.netty.client.acceptor.ClientAcceptedChannel;
+import io.netty.channel.EventLoop;
+import io.netty.util.collection.LongObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Session manager keyed by 64-bit ids, sessions are stored in primitive maps sharded by eventLoop.
+ * <p>
+ * A new session gets the shard of its channel eventLoop, the shard is encoded in the id by {@link SessionIdGenerator},
+ * so lookup by id goes to one shard directly; sessions are mostly added, removed and looked up by their own eventLoop,
+ * the lock of a shard is rarely contended.
+ * <p>
+ * The String API of {@link SessionManagerInterface} is kept, the string id is the decimal of the long id.
+ *
+ * @param <S> Session type
+ */
+public abstract class ShardedSessionManager<S extends NumericSession> implements SessionManagerInterface<S> {
+
+    private final SessionIdGenerator idGenerator;
+
+    private final Shard<S>[] shards;
+
+    private final Map<EventLoop, Integer> shardOfEventLoop = new ConcurrentHashMap<>();
+
+    private final SessionIndexes<S> indexes = new SessionIndexes<>(this);
+
+    /**
+     * @param nodeId     id of this server in [0, 1023]
+     * @param shardCount shard count in [1, 64], usually the worker eventLoop count
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ShardedSessionManager(int nodeId, int shardCount) {
+        if (shardCount <= 0 || shardCount > SessionIdGenerator.MAX_SHARDS) {
+            throw new IllegalArgumentException("shardCount must in [1, " + SessionIdGenerator.MAX_SHARDS + "]: " + shardCount);
+        }
+        this.idGenerator = new SessionIdGenerator(nodeId);
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard<>();
+        }
+    }
+
+    /**
+     * create session object with a generated id
+     *
+     * @param sessionId new session id
+     * @param channel   the new channel
+     * @return session
+     */
+    protected abstract S newSession(long sessionId, ClientAcceptedChannel channel);
+
+    protected void onSessionRemoved(S s) {
+    }
+
+    /**
+     * @return secondary indexes by user id and groups, kept consistent with save and remove
+     */
+    public SessionIndexes<S> indexes() {
+        return indexes;
+    }
+
+    @Override
+    public S createSessionForNewChannel(ClientAcceptedChannel channel) {
+        return newSession(idGenerator.next(shardIndex(channel.getChannel().eventLoop())), channel);
+    }
+
+    private int shardIndex(EventLoop eventLoop) {
+        Integer index = shardOfEventLoop.get(eventLoop);
+        if (index == null) {
+            synchronized (shardOfEventLoop) {
+                index = shardOfEventLoop.computeIfAbsent(eventLoop, e -> shardOfEventLoop.size() % shards.length);
+            }
+        }
+        return index;
+    }
+
+    private Shard<S> shardOf(long sessionId) {
+        int index = SessionIdGenerator.shardOf(sessionId);
+        return index < shards.length ? shards[index] : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void saveSession(SessionInterface s) {
+        S session = (S) s;
+        Shard<S> shard = shardOf(session.id());
+        if (shard == null) {
+            throw new IllegalArgumentException("session id not generated by this manager: " + session.id());
+        }
+        S old;
+        synchronized (shard) {
+            old = shard.sessions.put(session.id(), session);
+        }
+        if (old != null && old != session) {
+            indexes.removeSession(old);
+        }
+    }
+
+    public S getSession(long sessionId) {
+        Shard<S> shard = shardOf(sessionId);
+        if (shard == null) {
+            return null;
+        }
+        synchronized (shard) {
+            return shard.sessions.get(sessionId);
+        }
+    }
+
+    public S removeSession(long sessionId) {
+        Shard<S> shard = shardOf(sessionId);
+        if (shard == null) {
+            return null;
+        }
+        S s;
+        synchronized (shard) {
+            s = shard.sessions.remove(sessionId);
+        }
+        if (s != null) {
+            indexes.removeSession(s);
+            onSessionRemoved(s);
+        }
+        return s;
+    }
+
+    @Override
+    public S getSession(String sessionId) {
+        long id = parseId(sessionId);
+        return id < 0 ? null : getSession(id);
+    }
+
+    @Override
+    public S removeSession(String sessionId) {
+        long id = parseId(sessionId);
+        return id < 0 ? null : removeSession(id);
+    }
+
+    private static long parseId(String sessionId) {
+        try {
+            return sessionId == null ? -1 : Long.parseLong(sessionId);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public int sessionCount() {
+        int count = 0;
+        for (Shard<S> shard : shards) {
+            synchronized (shard) {
+                count += shard.sessions.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * visit all sessions, a shard is copied before visit, so the consumer may add or remove sessions
+     *
+     * @param consumer session consumer
+     */
+    public void forEachSession(Consumer<? super S> consumer) {
+        for (Shard<S> shard : shards) {
+            List<S> sessions;
+            synchronized (shard) {
+                sessions = new ArrayList<>(shard.sessions.values());
+            }
+            sessions.forEach(consumer);
+        }
+    }
+
+    private static final class Shard<S> {
+        private final LongObjectHashMap<S> sessions = new LongObjectHashMap<>();
+    }
+}
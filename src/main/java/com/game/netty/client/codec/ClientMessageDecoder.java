@@ -41,6 +41,8 @@ import java.util.List;
  * There may be one or more BodyTransformer, transforming bytes of body to implement encrypting, compressing etc.
  * <p>
  * MessageBodyCodec decode body bytes to body object after BodyTransformers have been applied.
+ * <p>
+ * A frame with negative length field is a control frame, decoded into {@link ClientResumeFrame}.
  */
 public class ClientMessageDecoder<B> extends ByteToMessageDecoder {
 
@@ -68,6 +70,11 @@ public class ClientMessageDecoder<B> extends ByteToMessageDecoder {
      */
     private final boolean keepMessageBuf;
 
+    /**
+     * whether decode into pooled ClientMessage
+     */
+    private boolean pooledMessage;
+
 
     public ClientMessageDecoder(MessageBodyCodec<B> bodyCodec, int messageHeadSize, boolean keepMessageBuf) {
         this.messageHeadSize = messageHeadSize;
@@ -79,6 +86,10 @@ public class ClientMessageDecoder<B> extends ByteToMessageDecoder {
         this.maxBodySize = maxBodySize;
     }
 
+    public void setPooledMessage(boolean pooledMessage) {
+        this.pooledMessage = pooledMessage;
+    }
+
     public void addTransformer(BodyTransformer transformer) {
         transformers.add(transformer);
     }
@@ -87,7 +98,14 @@ public class ClientMessageDecoder<B> extends ByteToMessageDecoder {
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
 
         while (in.readableBytes() > Integer.BYTES) {
-            int fullLength = in.getInt(in.readerIndex()) + Integer.BYTES;
+            int lengthField = in.getInt(in.readerIndex());
+            if (lengthField < 0) {
+                if (!decodeControlFrame(ctx, lengthField, in, out)) {
+                    return;
+                }
+                continue;
+            }
+            int fullLength = lengthField + Integer.BYTES;
             if (!checkMessageLimit(messageHeadSize, in, ctx)
                     || in.readableBytes() < fullLength) {
                 return;
@@ -122,7 +140,10 @@ public class ClientMessageDecoder<B> extends ByteToMessageDecoder {
             messageBuf.readerIndex(0);
 
             //create ClientMessage
-            ClientMessage<B> clientMsg = new ClientMessage<>(messageHead, keepMessageBuf ? messageBuf : null, bodyObject);
+            ByteBuf keptBuf = keepMessageBuf ? messageBuf : null;
+            ClientMessage<B> clientMsg = pooledMessage
+                    ? ClientMessage.newInstance(messageHead, keptBuf, bodyObject)
+                    : new ClientMessage<>(messageHead, keptBuf, bodyObject);
             out.add(clientMsg);
 
             if (!keepMessageBuf) {
@@ -131,6 +152,33 @@ public class ClientMessageDecoder<B> extends ByteToMessageDecoder {
         }
     }
 
+    /**
+     * @return false if the frame is not complete
+     */
+    private boolean decodeControlFrame(ChannelHandlerContext ctx, int frameType, ByteBuf in, List<Object> out) {
+        if (in.readableBytes() < Integer.BYTES * 2) {
+            return false;
+        }
+        int payloadLength = in.getInt(in.readerIndex() + Integer.BYTES);
+        if (payloadLength < 0 || payloadLength > maxBodySize) {
+            logger.warn("invalid control frame:{} length:{} from:{}", frameType, payloadLength, ctx.channel().remoteAddress());
+            in.skipBytes(in.readableBytes());
+            ctx.close();
+            return false;
+        }
+        if (in.readableBytes() < Integer.BYTES * 2 + payloadLength) {
+            return false;
+        }
+        in.skipBytes(Integer.BYTES * 2);
+        int end = in.readerIndex() + payloadLength;
+        ClientResumeFrame frame = ClientResumeFrame.decode(frameType, in, payloadLength);
+        in.readerIndex(end);
+        if (frame != null) {
+            out.add(frame);
+        }
+        return true;
+    }
+
     /**
      * return false means:
      * 1. there is a bug in this decoder
@@ -113,12 +113,12 @@ public class ClientMessageEncoder<B> extends ChannelOutboundHandlerAdapter {
     }
 
     private ByteBuf encodeFromBody(ByteBufAllocator ctxAllocator, ClientMessage<B> message, long messageHead) {
-        int bodySize = delegate.bodyEncodeSize(message.getBody());
+        int bodySize = delegate.bodyEncodeSize(messageHead, message.getBody());
         int bufSize = Integer.BYTES + messageHeadSize + bodySize;
         ByteBuf buf = GameByteBufAlloc.heapBuf(ctxAllocator, bufSize);
         buf.writeInt(bodySize + messageHeadSize);
         ClientMessageCodecUtil.writeHead(buf, messageHead, messageHeadSize);
-        delegate.encodeBody(message.getBody(), buf);
+        delegate.encodeBody(messageHead, message.getBody(), buf);
         return buf;
     }
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.client.codec;
+
+import com.game.netty.util.GameByteBufAlloc;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Control frame of session resume on the client link, it is never passed to MessageBodyCodec.
+ * <p>
+ * A control frame has a negative length field: [FrameType(Int, negative)]+[PayloadLength(Int)]+[Payload].
+ * <ul>
+ * <li>TOKEN, server to client after connected: [Token Utf8]</li>
+ * <li>RESUME, client to server as the first frame of a new connection: [ReceivedCount(Long)]+[Token Utf8]</li>
+ * <li>RESUMED, server to client, followed by the messages the client missed: [ReceivedCount(Long)]</li>
+ * <li>REJECTED, server to client, the client must login again: empty</li>
+ * </ul>
+ * ReceivedCount is the count of ClientMessages received in the session, it is the sequence number of
+ * the next expected message, so the peer resends from it.
+ */
+public final class ClientResumeFrame {
+
+    public static final int TOKEN = -1;
+    public static final int RESUME = -2;
+    public static final int RESUMED = -3;
+    public static final int REJECTED = -4;
+
+    private final int type;
+    private final String token;
+    private final long receivedCount;
+
+    private ClientResumeFrame(int type, String token, long receivedCount) {
+        this.type = type;
+        this.token = token;
+        this.receivedCount = receivedCount;
+    }
+
+    public static ClientResumeFrame token(String token) {
+        return new ClientResumeFrame(TOKEN, token, 0);
+    }
+
+    public static ClientResumeFrame resume(String token, long receivedCount) {
+        return new ClientResumeFrame(RESUME, token, receivedCount);
+    }
+
+    public static ClientResumeFrame resumed(long receivedCount) {
+        return new ClientResumeFrame(RESUMED, null, receivedCount);
+    }
+
+    public static ClientResumeFrame rejected() {
+        return new ClientResumeFrame(REJECTED, null, 0);
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public long getReceivedCount() {
+        return receivedCount;
+    }
+
+    public ByteBuf encode(ByteBufAllocator alloc) {
+        int tokenLength = token == null ? 0 : ByteBufUtil.utf8Bytes(token);
+        int payloadLength = (type == RESUME || type == RESUMED ? Long.BYTES : 0) + tokenLength;
+        ByteBuf buf = GameByteBufAlloc.heapBuf(alloc, Integer.BYTES * 2 + payloadLength);
+        buf.writeInt(type);
+        buf.writeInt(payloadLength);
+        if (type == RESUME || type == RESUMED) {
+            buf.writeLong(receivedCount);
+        }
+        if (token != null) {
+            ByteBufUtil.reserveAndWriteUtf8(buf, token, tokenLength);
+        }
+        return buf;
+    }
+
+    /**
+     * @param type    frame type
+     * @param payload payload, exactly length bytes are read
+     * @param length  payload length
+     * @return decoded frame, null if type unknown
+     */
+    public static ClientResumeFrame decode(int type, ByteBuf payload, int length) {
+        switch (type) {
+            case TOKEN:
+                return token(payload.readCharSequence(length, StandardCharsets.UTF_8).toString());
+            case RESUME:
+                long receivedCount = payload.readLong();
+                return resume(payload.readCharSequence(length - Long.BYTES, StandardCharsets.UTF_8).toString(), receivedCount);
+            case RESUMED:
+                payload.skipBytes(length - Long.BYTES);
+                return resumed(payload.readLong());
+            case REJECTED:
+                payload.skipBytes(length);
+                return rejected();
+            default:
+                payload.skipBytes(length);
+                return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ClientResumeFrame{" +
+                "type=" + type +
+                ", receivedCount=" + receivedCount +
+                '}';
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.client.codec;
+
+import com.game.netty.util.HeadIndexedTable;
+import io.netty.buffer.ByteBuf;
+
+import java.util.Arrays;
+
+/**
+ * A MessageBodyCodec choosing the real codec by message head, so different message types can use different formats,
+ * e.g. compact binary for movement and json for ui.
+ * <p>
+ * Lookup order: exact head, head range, fallback codec.
+ * Exact heads are kept in a primitive table, ranges in sorted arrays searched by binary search.
+ * <p>
+ * Register all codecs before the codec is used, then it's safe to share among channels if the registered codecs are.
+ */
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class CompositeBodyCodec implements MessageBodyCodec<Object> {
+
+    private final HeadIndexedTable<MessageBodyCodec> exactCodecs;
+
+    private long[] rangeStarts = new long[0];
+    private long[] rangeEnds = new long[0];
+    private MessageBodyCodec[] rangeCodecs = new MessageBodyCodec[0];
+
+    private final MessageBodyCodec fallback;
+
+    /**
+     * @param fallback codec for heads not registered, null to throw exception on such heads
+     */
+    public CompositeBodyCodec(MessageBodyCodec<?> fallback) {
+        this(fallback, 1024);
+    }
+
+    /**
+     * @param fallback  codec for heads not registered, null to throw exception on such heads
+     * @param denseSize heads less than denseSize are indexed by array
+     */
+    public CompositeBodyCodec(MessageBodyCodec<?> fallback, int denseSize) {
+        this.fallback = fallback;
+        this.exactCodecs = new HeadIndexedTable<>(denseSize);
+    }
+
+    /**
+     * @param head  message head
+     * @param codec codec for the head
+     * @return this
+     */
+    public CompositeBodyCodec register(long head, MessageBodyCodec<?> codec) {
+        if (exactCodecs.get(head) != null) {
+            throw new IllegalStateException("codec already registered for head " + head);
+        }
+        exactCodecs.put(head, codec);
+        return this;
+    }
+
+    /**
+     * @param fromHead first head of the range, inclusive
+     * @param toHead   last head of the range, inclusive
+     * @param codec    codec for the range
+     * @return this
+     */
+    public CompositeBodyCodec registerRange(long fromHead, long toHead, MessageBodyCodec<?> codec) {
+        if (fromHead > toHead) {
+            throw new IllegalArgumentException("fromHead > toHead");
+        }
+        int pos = Arrays.binarySearch(rangeStarts, fromHead);
+        if (pos >= 0) {
+            throw new IllegalStateException("range overlapped at head " + fromHead);
+        }
+        pos = -pos - 1;
+        if ((pos > 0 && rangeEnds[pos - 1] >= fromHead) || (pos < rangeStarts.length && rangeStarts[pos] <= toHead)) {
+            throw new IllegalStateException("range overlapped: [" + fromHead + "," + toHead + "]");
+        }
+        rangeStarts = insert(rangeStarts, pos, fromHead);
+        rangeEnds = insert(rangeEnds, pos, toHead);
+        MessageBodyCodec[] codecs = new MessageBodyCodec[rangeCodecs.length + 1];
+        System.arraycopy(rangeCodecs, 0, codecs, 0, pos);
+        codecs[pos] = codec;
+        System.arraycopy(rangeCodecs, pos, codecs, pos + 1, rangeCodecs.length - pos);
+        rangeCodecs = codecs;
+        return this;
+    }
+
+    /**
+     * @param messageHead message head
+     * @return the codec for the head
+     */
+    public MessageBodyCodec<?> codecOf(long messageHead) {
+        MessageBodyCodec codec = exactCodecs.get(messageHead);
+        if (codec != null) {
+            return codec;
+        }
+        if (rangeStarts.length > 0) {
+            int pos = Arrays.binarySearch(rangeStarts, messageHead);
+            if (pos < 0) {
+                pos = -pos - 2;
+            }
+            if (pos >= 0 && messageHead <= rangeEnds[pos]) {
+                return rangeCodecs[pos];
+            }
+        }
+        if (fallback == null) {
+            throw new IllegalArgumentException("no codec for message head " + messageHead);
+        }
+        return fallback;
+    }
+
+    @Override
+    public int bodyEncodeSize(long messageHead, Object body) {
+        return ((MessageBodyCodec) codecOf(messageHead)).bodyEncodeSize(messageHead, body);
+    }
+
+    @Override
+    public void encodeBody(long messageHead, Object body, ByteBuf out) {
+        ((MessageBodyCodec) codecOf(messageHead)).encodeBody(messageHead, body, out);
+    }
+
+    @Override
+    public Object decodeMessageBody(long messageHead, ByteBuf bodyBuf, int length) {
+        return codecOf(messageHead).decodeMessageBody(messageHead, bodyBuf, length);
+    }
+
+    /**
+     * head unknown, only fallback codec can be used
+     */
+    @Override
+    public int bodyEncodeSize(Object body) {
+        return requireFallback().bodyEncodeSize(body);
+    }
+
+    /**
+     * head unknown, only fallback codec can be used
+     */
+    @Override
+    public void encodeBody(Object body, ByteBuf out) {
+        requireFallback().encodeBody(body, out);
+    }
+
+    private MessageBodyCodec requireFallback() {
+        if (fallback == null) {
+            throw new UnsupportedOperationException("message head required to choose codec");
+        }
+        return fallback;
+    }
+
+    private static long[] insert(long[] array, int pos, long value) {
+        long[] result = new long[array.length + 1];
+        System.arraycopy(array, 0, result, 0, pos);
+        result[pos] = value;
+        System.arraycopy(array, pos, result, pos + 1, array.length - pos);
+        return result;
+    }
+}
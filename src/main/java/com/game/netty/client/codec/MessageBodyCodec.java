@@ -47,6 +47,30 @@ public interface MessageBodyCodec<B> {
     default void encodeBody(B body, ByteBuf out) {
     }
 
+    /**
+     * compute encoded message body byte size, with message head known.
+     * GameNetty encoders call this one, codec which depends on head (like CompositeBodyCodec) should override it.
+     *
+     * @param messageHead message head
+     * @param body        target message body object
+     * @return encoded byte size
+     */
+    default int bodyEncodeSize(long messageHead, B body) {
+        return bodyEncodeSize(body);
+    }
+
+    /**
+     * encode message body with message head known.
+     * GameNetty encoders call this one, codec which depends on head (like CompositeBodyCodec) should override it.
+     *
+     * @param messageHead message head
+     * @param body        target message body
+     * @param out         byteBuf to write message
+     */
+    default void encodeBody(long messageHead, B body, ByteBuf out) {
+        encodeBody(body, out);
+    }
+
     /**
      * decode byteBuf into body object：
      * 1. when called，bodyBuf.readIndex is at body position, param length is body byte size;
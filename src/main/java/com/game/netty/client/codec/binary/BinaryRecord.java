@@ -0,0 +1,215 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.client.codec.binary;
+
+/**
+ * A message body following a BinarySchema.
+ * <p>
+ * Primitive values are kept in a long array, so setting and getting them never box;
+ * a record can be cleared and reused.
+ */
+public final class BinaryRecord {
+
+    private final BinarySchema schema;
+
+    /**
+     * primitive values by field index, float and double are kept as raw bits
+     */
+    private final long[] values;
+
+    /**
+     * String or byte[] values by field index
+     */
+    private final Object[] refs;
+
+    /**
+     * bit set of fields which have been set
+     */
+    private long presence;
+
+    public BinaryRecord(BinarySchema schema) {
+        this.schema = schema;
+        this.values = new long[schema.fieldCount()];
+        this.refs = new Object[schema.fieldCount()];
+    }
+
+    public BinarySchema getSchema() {
+        return schema;
+    }
+
+    public boolean has(int tag) {
+        int index = schema.indexOf(tag);
+        return index >= 0 && (presence & (1L << index)) != 0;
+    }
+
+    public BinaryRecord clear() {
+        presence = 0;
+        for (int i = 0; i < refs.length; i++) {
+            refs[i] = null;
+        }
+        return this;
+    }
+
+    public BinaryRecord setInt(int tag, int value) {
+        return setRaw(tag, value, FieldType.INT32, FieldType.SINT32);
+    }
+
+    public BinaryRecord setLong(int tag, long value) {
+        return setRaw(tag, value, FieldType.INT64, FieldType.SINT64);
+    }
+
+    public BinaryRecord setBool(int tag, boolean value) {
+        return setRaw(tag, value ? 1 : 0, FieldType.BOOL, FieldType.BOOL);
+    }
+
+    public BinaryRecord setFloat(int tag, float value) {
+        return setRaw(tag, Float.floatToRawIntBits(value), FieldType.FLOAT, FieldType.FLOAT);
+    }
+
+    public BinaryRecord setDouble(int tag, double value) {
+        return setRaw(tag, Double.doubleToRawLongBits(value), FieldType.DOUBLE, FieldType.DOUBLE);
+    }
+
+    public BinaryRecord setString(int tag, String value) {
+        return setRef(tag, value, FieldType.STRING);
+    }
+
+    public BinaryRecord setBytes(int tag, byte[] value) {
+        return setRef(tag, value, FieldType.BYTES);
+    }
+
+    public int getInt(int tag) {
+        return (int) getRaw(tag, FieldType.INT32, FieldType.SINT32);
+    }
+
+    public long getLong(int tag) {
+        return getRaw(tag, FieldType.INT64, FieldType.SINT64);
+    }
+
+    public boolean getBool(int tag) {
+        return getRaw(tag, FieldType.BOOL, FieldType.BOOL) != 0;
+    }
+
+    public float getFloat(int tag) {
+        return Float.intBitsToFloat((int) getRaw(tag, FieldType.FLOAT, FieldType.FLOAT));
+    }
+
+    public double getDouble(int tag) {
+        return Double.longBitsToDouble(getRaw(tag, FieldType.DOUBLE, FieldType.DOUBLE));
+    }
+
+    public String getString(int tag) {
+        return (String) getRef(tag, FieldType.STRING);
+    }
+
+    public byte[] getBytes(int tag) {
+        return (byte[]) getRef(tag, FieldType.BYTES);
+    }
+
+    long presence() {
+        return presence;
+    }
+
+    long rawAt(int index) {
+        return values[index];
+    }
+
+    Object refAt(int index) {
+        return refs[index];
+    }
+
+    void setRawAt(int index, long value) {
+        values[index] = value;
+        presence |= 1L << index;
+    }
+
+    void setRefAt(int index, Object value) {
+        refs[index] = value;
+        presence |= 1L << index;
+    }
+
+    private BinaryRecord setRaw(int tag, long value, FieldType type1, FieldType type2) {
+        setRawAt(checkedIndex(tag, type1, type2), value);
+        return this;
+    }
+
+    private BinaryRecord setRef(int tag, Object value, FieldType type) {
+        int index = checkedIndex(tag, type, type);
+        if (value == null) {
+            refs[index] = null;
+            presence &= ~(1L << index);
+        } else {
+            setRefAt(index, value);
+        }
+        return this;
+    }
+
+    private long getRaw(int tag, FieldType type1, FieldType type2) {
+        int index = checkedIndex(tag, type1, type2);
+        return (presence & (1L << index)) != 0 ? values[index] : 0;
+    }
+
+    private Object getRef(int tag, FieldType type) {
+        return refs[checkedIndex(tag, type, type)];
+    }
+
+    private int checkedIndex(int tag, FieldType type1, FieldType type2) {
+        int index = schema.indexOf(tag);
+        if (index < 0) {
+            throw new IllegalArgumentException("unknown tag " + tag + " of " + schema);
+        }
+        FieldType type = schema.typeAt(index);
+        if (type != type1 && type != type2) {
+            throw new IllegalArgumentException("tag " + tag + " of " + schema + " is " + type);
+        }
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(schema.getName()).append('{');
+        for (int i = 0; i < schema.fieldCount(); i++) {
+            if ((presence & (1L << i)) == 0) {
+                continue;
+            }
+            if (sb.charAt(sb.length() - 1) != '{') {
+                sb.append(", ");
+            }
+            sb.append(schema.tagAt(i)).append('=');
+            switch (schema.typeAt(i)) {
+                case STRING:
+                    sb.append('\'').append(refs[i]).append('\'');
+                    break;
+                case BYTES:
+                    sb.append("bytes[").append(((byte[]) refs[i]).length).append(']');
+                    break;
+                case FLOAT:
+                    sb.append(Float.intBitsToFloat((int) values[i]));
+                    break;
+                case DOUBLE:
+                    sb.append(Double.longBitsToDouble(values[i]));
+                    break;
+                case BOOL:
+                    sb.append(values[i] != 0);
+                    break;
+                default:
+                    sb.append(values[i]);
+            }
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.client.codec.binary;
+
+import com.game.netty.util.VarIntUtil;
+
+import java.util.Arrays;
+
+/**
+ * Schema of a binary message: a list of tagged fields.
+ * <p>
+ * For forward compatibility, new fields should be optional, and tags should never be reused;
+ * the decoder skips unknown tags, so old peers can read messages from new peers.
+ * <p>
+ * A schema can have at most 64 fields, tags must be in [1, MAX_TAG].
+ */
+public final class BinarySchema {
+
+    public static final int MAX_TAG = 1023;
+
+    private static final int MAX_FIELDS = Long.SIZE;
+
+    private final String name;
+
+    private int[] tags = new int[0];
+    private FieldType[] types = new FieldType[0];
+    private boolean[] optionals = new boolean[0];
+
+    /**
+     * pre-encoded field key size, indexed by field index
+     */
+    private int[] keySizes = new int[0];
+
+    /**
+     * field index by tag, -1 means unknown tag
+     */
+    private int[] indexByTag = new int[0];
+
+    /**
+     * bit set of required fields
+     */
+    private long requiredMask;
+
+    public BinarySchema(String name) {
+        this.name = name;
+    }
+
+    /**
+     * add a required field
+     *
+     * @param tag  field tag
+     * @param type field type
+     * @return this
+     */
+    public BinarySchema addField(int tag, FieldType type) {
+        return addField(tag, type, false);
+    }
+
+    /**
+     * add a field
+     *
+     * @param tag      field tag
+     * @param type     field type
+     * @param optional an optional field is not written if not set
+     * @return this
+     */
+    public BinarySchema addField(int tag, FieldType type, boolean optional) {
+        if (tag < 1 || tag > MAX_TAG) {
+            throw new IllegalArgumentException("tag must be in [1," + MAX_TAG + "]: " + tag);
+        }
+        if (tags.length == MAX_FIELDS) {
+            throw new IllegalStateException("too many fields in schema " + name);
+        }
+        if (indexOf(tag) >= 0) {
+            throw new IllegalArgumentException("duplicate tag " + tag + " in schema " + name);
+        }
+        int index = tags.length;
+        tags = Arrays.copyOf(tags, index + 1);
+        types = Arrays.copyOf(types, index + 1);
+        optionals = Arrays.copyOf(optionals, index + 1);
+        keySizes = Arrays.copyOf(keySizes, index + 1);
+        tags[index] = tag;
+        types[index] = type;
+        optionals[index] = optional;
+        keySizes[index] = VarIntUtil.varInt32Size(key(tag, type));
+        if (!optional) {
+            requiredMask |= 1L << index;
+        }
+        if (tag >= indexByTag.length) {
+            int oldLength = indexByTag.length;
+            indexByTag = Arrays.copyOf(indexByTag, tag + 1);
+            Arrays.fill(indexByTag, oldLength, indexByTag.length, -1);
+        }
+        indexByTag[tag] = index;
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int fieldCount() {
+        return tags.length;
+    }
+
+    /**
+     * @param tag field tag
+     * @return field index, or -1 if the tag is unknown
+     */
+    public int indexOf(int tag) {
+        return tag > 0 && tag < indexByTag.length ? indexByTag[tag] : -1;
+    }
+
+    int tagAt(int index) {
+        return tags[index];
+    }
+
+    FieldType typeAt(int index) {
+        return types[index];
+    }
+
+    boolean isOptionalAt(int index) {
+        return optionals[index];
+    }
+
+    int keySizeAt(int index) {
+        return keySizes[index];
+    }
+
+    long requiredMask() {
+        return requiredMask;
+    }
+
+    static int key(int tag, FieldType type) {
+        return (tag << 3) | type.wireType;
+    }
+
+    @Override
+    public String toString() {
+        return "BinarySchema{" + name + "}";
+    }
+}
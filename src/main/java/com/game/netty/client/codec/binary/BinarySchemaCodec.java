@@ -0,0 +1,253 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.client.codec.binary;
+
+import com.game.netty.client.codec.MessageBodyCodec;
+import com.game.netty.util.HeadIndexedTable;
+import com.game.netty.util.VarIntUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.CorruptedFrameException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A compact binary MessageBodyCodec driven by BinarySchema.
+ * <p>
+ * Each field set is written as [key(varint, tag&lt;&lt;3|wireType)]+[value], the same wire format as protobuf:
+ * integers are varint(zigzag for SINT32/SINT64), float and double are little endian fixed size,
+ * String and byte[] are length delimited. Fields are read and written directly against ByteBuf,
+ * encode size is exact, unknown tags are skipped on decoding.
+ * <p>
+ * The codec is stateless, a single instance can be shared.
+ */
+public class BinarySchemaCodec implements MessageBodyCodec<BinaryRecord> {
+
+    private final HeadIndexedTable<BinarySchema> schemas = new HeadIndexedTable<>(1024);
+
+    /**
+     * schema for heads not registered, may be null
+     */
+    private final BinarySchema defaultSchema;
+
+    /**
+     * @param defaultSchema schema to decode heads not registered, may be null
+     */
+    public BinarySchemaCodec(BinarySchema defaultSchema) {
+        this.defaultSchema = defaultSchema;
+    }
+
+    /**
+     * register schema used to decode message of the head
+     *
+     * @param head   message head
+     * @param schema schema
+     * @return this
+     */
+    public BinarySchemaCodec register(long head, BinarySchema schema) {
+        schemas.put(head, schema);
+        return this;
+    }
+
+    public BinarySchema schemaOf(long messageHead) {
+        BinarySchema schema = schemas.get(messageHead);
+        if (schema == null) {
+            schema = defaultSchema;
+        }
+        if (schema == null) {
+            throw new CorruptedFrameException("no schema for message head " + messageHead);
+        }
+        return schema;
+    }
+
+    @Override
+    public int bodyEncodeSize(BinaryRecord body) {
+        BinarySchema schema = body.getSchema();
+        checkRequired(body, schema);
+        long presence = body.presence();
+        int size = 0;
+        for (int i = 0; i < schema.fieldCount(); i++) {
+            if ((presence & (1L << i)) == 0) {
+                continue;
+            }
+            size += schema.keySizeAt(i);
+            long raw = body.rawAt(i);
+            switch (schema.typeAt(i)) {
+                case INT32:
+                    size += (int) raw < 0 ? 10 : VarIntUtil.varInt32Size((int) raw);
+                    break;
+                case SINT32:
+                    size += VarIntUtil.varInt32Size(VarIntUtil.encodeZigZag32((int) raw));
+                    break;
+                case INT64:
+                    size += VarIntUtil.varInt64Size(raw);
+                    break;
+                case SINT64:
+                    size += VarIntUtil.varInt64Size(VarIntUtil.encodeZigZag64(raw));
+                    break;
+                case BOOL:
+                    size += 1;
+                    break;
+                case FLOAT:
+                    size += Integer.BYTES;
+                    break;
+                case DOUBLE:
+                    size += Long.BYTES;
+                    break;
+                case STRING: {
+                    int length = ByteBufUtil.utf8Bytes((String) body.refAt(i));
+                    size += VarIntUtil.varInt32Size(length) + length;
+                    break;
+                }
+                case BYTES: {
+                    int length = ((byte[]) body.refAt(i)).length;
+                    size += VarIntUtil.varInt32Size(length) + length;
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("unknown type " + schema.typeAt(i));
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void encodeBody(BinaryRecord body, ByteBuf out) {
+        BinarySchema schema = body.getSchema();
+        long presence = body.presence();
+        for (int i = 0; i < schema.fieldCount(); i++) {
+            if ((presence & (1L << i)) == 0) {
+                continue;
+            }
+            FieldType type = schema.typeAt(i);
+            VarIntUtil.writeVarInt32(out, BinarySchema.key(schema.tagAt(i), type));
+            long raw = body.rawAt(i);
+            switch (type) {
+                case INT32:
+                    //sign extended, same as protobuf
+                    VarIntUtil.writeVarInt64(out, (int) raw);
+                    break;
+                case SINT32:
+                    VarIntUtil.writeVarInt32(out, VarIntUtil.encodeZigZag32((int) raw));
+                    break;
+                case INT64:
+                    VarIntUtil.writeVarInt64(out, raw);
+                    break;
+                case SINT64:
+                    VarIntUtil.writeVarInt64(out, VarIntUtil.encodeZigZag64(raw));
+                    break;
+                case BOOL:
+                    out.writeByte((int) raw);
+                    break;
+                case FLOAT:
+                    out.writeIntLE((int) raw);
+                    break;
+                case DOUBLE:
+                    out.writeLongLE(raw);
+                    break;
+                case STRING: {
+                    String value = (String) body.refAt(i);
+                    int length = ByteBufUtil.utf8Bytes(value);
+                    VarIntUtil.writeVarInt32(out, length);
+                    ByteBufUtil.reserveAndWriteUtf8(out, value, length);
+                    break;
+                }
+                case BYTES: {
+                    byte[] value = (byte[]) body.refAt(i);
+                    VarIntUtil.writeVarInt32(out, value.length);
+                    out.writeBytes(value);
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("unknown type " + type);
+            }
+        }
+    }
+
+    @Override
+    public BinaryRecord decodeMessageBody(long messageHead, ByteBuf bodyBuf, int length) {
+        BinaryRecord record = new BinaryRecord(schemaOf(messageHead));
+        decodeInto(record, bodyBuf, length);
+        return record;
+    }
+
+    /**
+     * decode into an existing record, so the record can be reused
+     *
+     * @param record  target record, cleared before decoding
+     * @param bodyBuf byteBuf that contains the message body
+     * @param length  the body size
+     */
+    public void decodeInto(BinaryRecord record, ByteBuf bodyBuf, int length) {
+        BinarySchema schema = record.getSchema();
+        record.clear();
+        int end = bodyBuf.readerIndex() + length;
+        while (bodyBuf.readerIndex() < end) {
+            int key = VarIntUtil.readVarInt32(bodyBuf);
+            int tag = key >>> 3;
+            int wireType = key & 0x7;
+            int index = schema.indexOf(tag);
+            if (index < 0 || schema.typeAt(index).wireType != wireType) {
+                BinaryWireUtil.skipField(bodyBuf, wireType);
+                continue;
+            }
+            switch (schema.typeAt(index)) {
+                case INT32:
+                    record.setRawAt(index, (int) VarIntUtil.readVarInt64(bodyBuf));
+                    break;
+                case SINT32:
+                    record.setRawAt(index, VarIntUtil.decodeZigZag32(VarIntUtil.readVarInt32(bodyBuf)));
+                    break;
+                case INT64:
+                    record.setRawAt(index, VarIntUtil.readVarInt64(bodyBuf));
+                    break;
+                case SINT64:
+                    record.setRawAt(index, VarIntUtil.decodeZigZag64(VarIntUtil.readVarInt64(bodyBuf)));
+                    break;
+                case BOOL:
+                    record.setRawAt(index, VarIntUtil.readVarInt64(bodyBuf) != 0 ? 1 : 0);
+                    break;
+                case FLOAT:
+                    record.setRawAt(index, bodyBuf.readIntLE());
+                    break;
+                case DOUBLE:
+                    record.setRawAt(index, bodyBuf.readLongLE());
+                    break;
+                case STRING:
+                    record.setRefAt(index, bodyBuf.readCharSequence(BinaryWireUtil.readLength(bodyBuf), StandardCharsets.UTF_8).toString());
+                    break;
+                case BYTES:
+                    record.setRefAt(index, BinaryWireUtil.readBytes(bodyBuf));
+                    break;
+                default:
+                    throw new IllegalStateException("unknown type " + schema.typeAt(index));
+            }
+        }
+        if (bodyBuf.readerIndex() != end) {
+            throw new CorruptedFrameException("field exceeds body end of " + schema);
+        }
+        if ((record.presence() & schema.requiredMask()) != schema.requiredMask()) {
+            throw new CorruptedFrameException("required field missing in " + schema);
+        }
+    }
+
+    private static void checkRequired(BinaryRecord body, BinarySchema schema) {
+        if ((body.presence() & schema.requiredMask()) != schema.requiredMask()) {
+            throw new IllegalArgumentException("required field not set in " + schema);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.client.codec.binary;
+
+import com.game.netty.util.VarIntUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.CorruptedFrameException;
+
+/**
+ * tool for the binary wire format, shared by BinarySchemaCodec and generated codecs
+ */
+public final class BinaryWireUtil {
+
+    /**
+     * @param length value byte size of a length delimited field
+     * @return encoded size of the field value, including the length prefix
+     */
+    public static int lengthDelimitedSize(int length) {
+        return VarIntUtil.varInt32Size(length) + length;
+    }
+
+    /**
+     * read the varint length prefix of a length delimited field
+     *
+     * @param in input byte buf
+     * @return field length
+     */
+    public static int readLength(ByteBuf in) {
+        int length = VarIntUtil.readVarInt32(in);
+        if (length < 0 || length > in.readableBytes()) {
+            throw new CorruptedFrameException("invalid field length " + length);
+        }
+        return length;
+    }
+
+    /**
+     * read a length delimited byte[] field
+     *
+     * @param in input byte buf
+     * @return field value
+     */
+    public static byte[] readBytes(ByteBuf in) {
+        byte[] value = new byte[readLength(in)];
+        in.readBytes(value);
+        return value;
+    }
+
+    /**
+     * skip the value of an unknown field
+     *
+     * @param in       input byte buf, readIndex at the field value
+     * @param wireType wire type of the field
+     */
+    public static void skipField(ByteBuf in, int wireType) {
+        switch (wireType) {
+            case FieldType.WIRE_VARINT:
+                VarIntUtil.readVarInt64(in);
+                break;
+            case FieldType.WIRE_FIXED64:
+                in.skipBytes(Long.BYTES);
+                break;
+            case FieldType.WIRE_LENGTH_DELIMITED:
+                in.skipBytes(readLength(in));
+                break;
+            case FieldType.WIRE_FIXED32:
+                in.skipBytes(Integer.BYTES);
+                break;
+            default:
+                throw new CorruptedFrameException("unknown wire type " + wireType);
+        }
+    }
+
+    private BinaryWireUtil() {
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.client.codec.binary;
+
+/**
+ * field types supported by BinarySchema, the wire types are compatible with protobuf
+ */
+public enum FieldType {
+    /**
+     * varint, negative value costs 10 bytes, use SINT32 instead
+     */
+    INT32(FieldType.WIRE_VARINT),
+    /**
+     * zigzag varint
+     */
+    SINT32(FieldType.WIRE_VARINT),
+    INT64(FieldType.WIRE_VARINT),
+    SINT64(FieldType.WIRE_VARINT),
+    BOOL(FieldType.WIRE_VARINT),
+    FLOAT(FieldType.WIRE_FIXED32),
+    DOUBLE(FieldType.WIRE_FIXED64),
+    /**
+     * utf-8 text
+     */
+    STRING(FieldType.WIRE_LENGTH_DELIMITED),
+    BYTES(FieldType.WIRE_LENGTH_DELIMITED);
+
+    public static final int WIRE_VARINT = 0;
+    public static final int WIRE_FIXED64 = 1;
+    public static final int WIRE_LENGTH_DELIMITED = 2;
+    public static final int WIRE_FIXED32 = 5;
+
+    final int wireType;
+
+    FieldType(int wireType) {
+        this.wireType = wireType;
+    }
+
+    public boolean isReference() {
+        return this == STRING || this == BYTES;
+    }
+}
@@ -19,6 +19,7 @@ package com.game.netty.client.connector;
 import com.game.netty.ServerDefine;
 import com.game.netty.client.ClientChannel;
 import com.game.netty.config.AbstractChannelConfig;
+import com.game.netty.util.ReconnectBackoff;
 
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -29,11 +30,13 @@ public class ClientConnectChannel extends ClientChannel {
 
     private final ServerDefine server;
     private final AtomicBoolean isConnecting;
+    private final ReconnectBackoff backoff;
 
     public ClientConnectChannel(ServerDefine server, AbstractChannelConfig config) {
         super(config);
         this.server = server;
         this.isConnecting = new AtomicBoolean(false);
+        this.backoff = new ReconnectBackoff(config.getReconnectMinDelayMillis(), config.getReconnectMaxDelayMillis());
     }
 
     public final ServerDefine getServer() {
@@ -53,6 +56,10 @@ public class ClientConnectChannel extends ClientChannel {
         isConnecting.set(false);
     }
 
+    ReconnectBackoff getBackoff() {
+        return backoff;
+    }
+
     public boolean isConnected() {
         return channel != null && channel.isActive();
     }
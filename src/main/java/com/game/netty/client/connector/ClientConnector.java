@@ -43,6 +43,9 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Used by Client, connect to proxy server
+ * <p>
+ * Connects are asynchronous and run in parallel, a failed or closed connection is retried with
+ * exponential backoff and jitter; a periodic check is kept as a safety net.
  */
 public class ClientConnector {
 
@@ -111,9 +114,15 @@ public class ClientConnector {
     }
 
 
+    /**
+     * @param servers connection target servers, connections to new servers are initiated immediately if started
+     */
     public void setServers(List<ServerDefine> servers) {
         this.servers.clear();
         this.servers.addAll(servers);
+        if (started.get()) {
+            scheduledExecutorService.execute(this::checkChannels);
+        }
     }
 
     public void shutDown() {
@@ -160,20 +169,40 @@ public class ClientConnector {
         for (ServerDefine server : servers) {
             final ClientConnectChannel clientChannel = channelMap.get(server.getServerId());
             if (clientChannel != null) {
-                if (!clientChannel.isConnected() && clientChannel.tryLockConnectingStatus()) {
-                    scheduledExecutorService.execute(() -> connect(clientChannel));
-                }
+                tryConnect(clientChannel);
             } else {
                 ClientConnectChannel newChannel = new ClientConnectChannel(server, config);
                 if (channelMap.putIfAbsent(server.getServerId(), newChannel) == null) {
-                    if (newChannel.tryLockConnectingStatus()) {
-                        scheduledExecutorService.execute(() -> connect(newChannel));
-                    }
+                    tryConnect(newChannel);
                 }
             }
         }
     }
 
+    private void tryConnect(ClientConnectChannel clientChannel) {
+        if (started.get() && !clientChannel.isConnected() && isActive(clientChannel) && clientChannel.tryLockConnectingStatus()) {
+            connect(clientChannel);
+        }
+    }
+
+    /**
+     * @return whether the channel is still in use, a channel of removed server is not reconnected
+     */
+    private boolean isActive(ClientConnectChannel clientChannel) {
+        return channelMap.get(clientChannel.getServer().getServerId()) == clientChannel;
+    }
+
+    private void scheduleReconnect(ClientConnectChannel clientChannel) {
+        if (!started.get() || !isActive(clientChannel)) {
+            return;
+        }
+        long delay = clientChannel.getBackoff().nextDelayMillis();
+        workerGroup.schedule(() -> tryConnect(clientChannel), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * start an asynchronous connect, the connecting status must be locked by caller
+     */
     private void connect(ClientConnectChannel clientChannel) {
         ServerDefine server = clientChannel.getServer();
         try {
@@ -193,26 +222,33 @@ public class ClientConnector {
                         ch.pipeline().addLast(new LoggingHandler(GameNettyUtil.getLogLevel()));
                     }
                     ch.pipeline().addLast(sharedEncoder);
-                    ch.pipeline().addLast(new ClientMessageDecoder<>(codecConfig.getSupplier().get(), codecConfig.getClientMessageHeadSize(), codecConfig.isDecoderKeepMessageBuf()));
+                    ClientMessageDecoder<?> decoder = new ClientMessageDecoder<>(codecConfig.getSupplier().get(), codecConfig.getClientMessageHeadSize(), codecConfig.isDecoderKeepMessageBuf());
+                    decoder.setPooledMessage(codecConfig.isPooledMessage());
+                    ch.pipeline().addLast(decoder);
                     ch.pipeline().addLast(new PrivateHandler(clientChannel));
                 }
             });
 
+            b.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, config.getConnectTimeoutMillis());
             config.getChannelOptions().forEach(b::option);
 
             SocketAddress address = new InetSocketAddress(server.getIp(), server.getPort());
-            ChannelFuture f = b.connect(address).sync();
-            if (f.isSuccess()) {
-                log.info("connected to {}", server);
-            } else {
-                log.warn("connect fail to {}", server);
-                delegate.onChannelStatusEvent(clientChannel, ChannelEvent.CHANNEL_CONNECT_FAIL);
-            }
+            b.connect(address).addListener((ChannelFutureListener) f -> {
+                if (f.isSuccess()) {
+                    //the connecting status is released in channelActive, after the channel is published
+                    log.info("connected to {}", server);
+                } else {
+                    log.warn("connect fail to {} {}", server, f.cause());
+                    clientChannel.unLockConnectingStatus();
+                    delegate.onChannelStatusEvent(clientChannel, ChannelEvent.CHANNEL_CONNECT_FAIL);
+                    scheduleReconnect(clientChannel);
+                }
+            });
         } catch (Exception e) {
             log.warn("connect fail to {} {}", server, e);
             delegate.onChannelStatusEvent(clientChannel, ChannelEvent.CHANNEL_CONNECT_FAIL);
-        } finally {
             clientChannel.unLockConnectingStatus();
+            scheduleReconnect(clientChannel);
         }
     }
 
@@ -226,8 +262,18 @@ public class ClientConnector {
 
         @Override
         public void channelActive(ChannelHandlerContext ctx) {
+            if (!isActive(clientChannel)) {
+                //the server was removed while connecting, the channel would never be used nor closed
+                log.info("backendChannel active but obsolete, close it {}", clientChannel);
+                ctx.pipeline().remove(this);
+                ctx.channel().close();
+                clientChannel.unLockConnectingStatus();
+                return;
+            }
             log.info("backendChannel active {}", clientChannel);
+            clientChannel.getBackoff().reset();
             clientChannel.onConnected(ctx.channel());
+            clientChannel.unLockConnectingStatus();
             delegate.onChannelStatusEvent(clientChannel, ChannelEvent.CHANNEL_CONNECTED);
         }
 
@@ -242,6 +288,7 @@ public class ClientConnector {
             log.info("backendChannel inactive {}", clientChannel);
             clientChannel.close();
             delegate.onChannelStatusEvent(clientChannel, ChannelEvent.CHANNEL_INACTIVE);
+            scheduleReconnect(clientChannel);
         }
 
         @Override
@@ -91,7 +91,9 @@ public class ClientWebSocketAcceptor extends AbstractClientAcceptor {
                         ch.pipeline().addLast(new WebSocketServerProtocolHandler(path, null, true));
 
                         ch.pipeline().addLast(encoder);
-                        ch.pipeline().addLast(new WebSocketFrameDecoder<>(codecConfig.getSupplier().get(), codecConfig.getClientMessageHeadSize(), codecConfig.isDecoderKeepMessageBuf()));
+                        WebSocketFrameDecoder<?> decoder = new WebSocketFrameDecoder<>(codecConfig.getSupplier().get(), codecConfig.getClientMessageHeadSize(), codecConfig.isDecoderKeepMessageBuf());
+                        decoder.setPooledMessage(codecConfig.isPooledMessage());
+                        ch.pipeline().addLast(decoder);
                         ch.pipeline().addLast(new ClientChannelHandler());
                     }
                 }).option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
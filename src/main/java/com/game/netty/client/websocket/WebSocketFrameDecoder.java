@@ -53,12 +53,21 @@ public class WebSocketFrameDecoder<B> extends MessageToMessageDecoder<WebSocketF
      */
     private final boolean hasLengthField;
 
+    /**
+     * whether decode into pooled ClientMessage
+     */
+    private boolean pooledMessage;
+
     public WebSocketFrameDecoder(MessageBodyCodec<B> delegate, int messageHeadSize, boolean hasLengthField) {
         this.messageHeadSize = messageHeadSize;
         this.delegate = delegate;
         this.hasLengthField = hasLengthField;
     }
 
+    public void setPooledMessage(boolean pooledMessage) {
+        this.pooledMessage = pooledMessage;
+    }
+
     @Override
     protected void decode(ChannelHandlerContext ctx, WebSocketFrame msg, List out) throws Exception {
         if (msg instanceof BinaryWebSocketFrame) {
@@ -77,14 +86,14 @@ public class WebSocketFrameDecoder<B> extends MessageToMessageDecoder<WebSocketF
                 content.resetReaderIndex();
 
                 if (hasLengthField) {
-                    ClientMessage<B> clientMsg = new ClientMessage<>(messageHead, content, bodyObject);
+                    ClientMessage<B> clientMsg = newMessage(messageHead, content, bodyObject);
                     out.add(clientMsg);
                 } else {
                     //如果websocket编码没有lengthField，为满足ClientMessage需求，增加一个lengthField
                     ByteBuf lengthBuf = GameByteBufAlloc.heapBuf(ctx.alloc(), Integer.BYTES);
                     lengthBuf.writeInt(lengthFieldValue);
                     ByteBuf messageBuf = Unpooled.wrappedBuffer(2, lengthBuf, content);
-                    ClientMessage<B> clientMsg = new ClientMessage<>(messageHead, messageBuf, bodyObject);
+                    ClientMessage<B> clientMsg = newMessage(messageHead, messageBuf, bodyObject);
                     out.add(clientMsg);
                 }
             } catch (Exception e) {
@@ -94,8 +103,12 @@ public class WebSocketFrameDecoder<B> extends MessageToMessageDecoder<WebSocketF
             ByteBuf buf = msg.content();
             // if text mode, there's no head
             B body = delegate.decodeMessageBody(0, buf, buf.readableBytes());
-            ClientMessage<B> clientMsg = new ClientMessage<>(0, buf.retain(), body);
+            ClientMessage<B> clientMsg = newMessage(0, buf.retain(), body);
             out.add(clientMsg);
         }
     }
+
+    private ClientMessage<B> newMessage(long messageHead, ByteBuf buf, B body) {
+        return pooledMessage ? ClientMessage.newInstance(messageHead, buf, body) : new ClientMessage<>(messageHead, buf, body);
+    }
 }
@@ -97,10 +97,10 @@ public class WebSocketFrameEncoder<B> extends MessageToMessageEncoder<Object> {
     }
 
     private ByteBuf encodeRawMessage(ByteBufAllocator ctxAllocator, B body, long messageHead) {
-        int messageSize = delegate.bodyEncodeSize(body) + messageHeadSize;
+        int messageSize = delegate.bodyEncodeSize(messageHead, body) + messageHeadSize;
         ByteBuf buf = GameByteBufAlloc.heapBuf(ctxAllocator, messageSize);
         ClientMessageCodecUtil.writeHead(buf, messageHead, messageHeadSize);
-        delegate.encodeBody(body, buf);
+        delegate.encodeBody(messageHead, body, buf);
         return buf;
     }
 
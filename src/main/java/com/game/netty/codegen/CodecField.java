@@ -0,0 +1,50 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.codegen;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Mark a field of a {@link CodecMessage} class to be coded.
+ * <p>
+ * Supported field types are: boolean, byte, short, char, int, long, float, double, String and byte[];
+ * the wire format is the same as {@link com.game.netty.client.codec.binary.BinarySchemaCodec}, so both side can use either.
+ * <p>
+ * A private field is accessed by its getter and setter, which must exist.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.FIELD)
+public @interface CodecField {
+
+    /**
+     * @return field tag, in [1, 1023], unique in one message
+     */
+    int tag();
+
+    /**
+     * an optional field is omitted when it is null or 0/false, a required field is always written,
+     * and its absence is a decode error
+     *
+     * @return whether the field is optional
+     */
+    boolean optional() default false;
+}
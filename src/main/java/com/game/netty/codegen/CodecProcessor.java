@@ -0,0 +1,645 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.codegen;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Annotation processor which generates a MessageBodyCodec for each {@link CodecMessage} class.
+ * <p>
+ * The generated codec reads and writes fields one by one with direct field access (or getter/setter),
+ * no reflection, no boxing; it is a final class so the call sites stay monomorphic.
+ * <p>
+ * After all CodecMessage classes are processed, a registry class is generated, which maps heads to body types and registers all codecs into
+ * a CompositeBodyCodec. Its package is set by processor option {@value #OPTION_REGISTRY_PACKAGE},
+ * default is the package of the first CodecMessage class.
+ * <p>
+ * Usage: put game-netty on the annotation processor path of your project, e.g. by maven-compiler-plugin annotationProcessorPaths.
+ */
+@SupportedAnnotationTypes("com.game.netty.codegen.CodecMessage")
+@SupportedOptions(CodecProcessor.OPTION_REGISTRY_PACKAGE)
+public class CodecProcessor extends AbstractProcessor {
+
+    public static final String OPTION_REGISTRY_PACKAGE = "gamenetty.codec.registryPackage";
+
+    public static final String REGISTRY_CLASS = "GeneratedCodecRegistry";
+
+    private static final int MAX_TAG = 1023;
+
+    private static final int MAX_REQUIRED_FIELDS = 64;
+
+    private static final String INDENT = "    ";
+
+    private Filer filer;
+    private Messager messager;
+
+    /**
+     * all generated messages sorted by head, kept across rounds for the registry
+     */
+    private final Map<Long, MessageModel> messages = new TreeMap<>();
+
+    private String firstPackage;
+
+    private boolean registryWritten;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        this.filer = processingEnv.getFiler();
+        this.messager = processingEnv.getMessager();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Set<? extends Element> elements = roundEnv.getElementsAnnotatedWith(CodecMessage.class);
+        if (registryWritten && !elements.isEmpty()) {
+            error(elements.iterator().next(), "@CodecMessage class appears after " + REGISTRY_CLASS + " generated");
+            return true;
+        }
+        for (Element element : elements) {
+            MessageModel model = parseMessage(element);
+            if (model == null) {
+                continue;
+            }
+            MessageModel exist = messages.get(model.head);
+            if (exist != null) {
+                error(element, "head " + model.head + " already used by " + exist.typeName);
+                continue;
+            }
+            messages.put(model.head, model);
+            if (firstPackage == null) {
+                firstPackage = model.packageName;
+            }
+            writeSource(model.packageName, model.codecName, generateCodec(model), element);
+        }
+        // write the registry in the first round without new messages, so it is still compiled as a normal source
+        if (elements.isEmpty() && !messages.isEmpty() && !registryWritten && !roundEnv.errorRaised()) {
+            registryWritten = true;
+            String registryPackage = processingEnv.getOptions().getOrDefault(OPTION_REGISTRY_PACKAGE, firstPackage);
+            writeSource(registryPackage, REGISTRY_CLASS, generateRegistry(registryPackage), null);
+        }
+        return true;
+    }
+
+    private MessageModel parseMessage(Element element) {
+        if (element.getKind() != ElementKind.CLASS) {
+            error(element, "@CodecMessage only applies to class");
+            return null;
+        }
+        TypeElement type = (TypeElement) element;
+        Set<Modifier> modifiers = type.getModifiers();
+        if (modifiers.contains(Modifier.ABSTRACT) || modifiers.contains(Modifier.PRIVATE)) {
+            error(type, "@CodecMessage class can not be abstract or private");
+            return null;
+        }
+        if (type.getNestingKind() == NestingKind.MEMBER && !modifiers.contains(Modifier.STATIC)) {
+            error(type, "@CodecMessage nested class must be static");
+            return null;
+        }
+        if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS) {
+            error(type, "@CodecMessage can not apply to local class");
+            return null;
+        }
+        if (!hasNoArgConstructor(type)) {
+            error(type, "@CodecMessage class needs a non-private no-arg constructor");
+            return null;
+        }
+
+        MessageModel model = new MessageModel();
+        model.head = type.getAnnotation(CodecMessage.class).head();
+        model.packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        model.typeName = type.getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String flatName = model.packageName.isEmpty() ? binaryName : binaryName.substring(model.packageName.length() + 1);
+        model.codecName = flatName.replace('$', '_') + "Codec";
+
+        List<ExecutableElement> methods = ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type));
+        Set<Integer> tags = new HashSet<>();
+        boolean valid = true;
+        int requiredCount = 0;
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            CodecField annotation = field.getAnnotation(CodecField.class);
+            if (annotation == null) {
+                continue;
+            }
+            FieldModel fieldModel = parseField(field, annotation, methods);
+            if (fieldModel == null) {
+                valid = false;
+                continue;
+            }
+            if (!tags.add(fieldModel.tag)) {
+                error(field, "duplicated tag " + fieldModel.tag);
+                valid = false;
+                continue;
+            }
+            if (!fieldModel.optional) {
+                fieldModel.requiredIndex = requiredCount++;
+            }
+            model.fields.add(fieldModel);
+        }
+        if (requiredCount > MAX_REQUIRED_FIELDS) {
+            error(type, "too many required fields, max " + MAX_REQUIRED_FIELDS);
+            valid = false;
+        }
+        model.requiredCount = requiredCount;
+        return valid ? model : null;
+    }
+
+    private FieldModel parseField(VariableElement field, CodecField annotation, List<ExecutableElement> methods) {
+        Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.FINAL)) {
+            error(field, "@CodecField can not be static or final");
+            return null;
+        }
+        if (annotation.tag() < 1 || annotation.tag() > MAX_TAG) {
+            error(field, "tag must be in [1, " + MAX_TAG + "]");
+            return null;
+        }
+        WireKind kind = WireKind.of(field.asType());
+        if (kind == null) {
+            error(field, "unsupported field type " + field.asType());
+            return null;
+        }
+
+        FieldModel model = new FieldModel();
+        model.name = field.getSimpleName().toString();
+        model.tag = annotation.tag();
+        model.optional = annotation.optional();
+        model.kind = kind;
+        model.javaType = field.asType().toString();
+        if (!modifiers.contains(Modifier.PRIVATE)) {
+            model.getter = model.name;
+            return model;
+        }
+
+        String capitalized = Character.toUpperCase(model.name.charAt(0)) + model.name.substring(1);
+        String getter = findMethod(methods, "get" + capitalized, null, field.asType());
+        if (getter == null && kind == WireKind.BOOLEAN) {
+            getter = findMethod(methods, "is" + capitalized, null, field.asType());
+        }
+        String setter = findMethod(methods, "set" + capitalized, field.asType(), null);
+        if (getter == null || setter == null) {
+            error(field, "private @CodecField needs getter and setter");
+            return null;
+        }
+        model.getter = getter + "()";
+        model.setter = setter;
+        return model;
+    }
+
+    private String findMethod(List<ExecutableElement> methods, String name, TypeMirror paramType, TypeMirror returnType) {
+        for (ExecutableElement method : methods) {
+            if (!method.getSimpleName().contentEquals(name) || method.getModifiers().contains(Modifier.PRIVATE)
+                    || method.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            if (paramType == null) {
+                if (method.getParameters().isEmpty()
+                        && processingEnv.getTypeUtils().isSameType(method.getReturnType(), returnType)) {
+                    return name;
+                }
+            } else if (method.getParameters().size() == 1
+                    && processingEnv.getTypeUtils().isSameType(method.getParameters().get(0).asType(), paramType)) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    private boolean hasNoArgConstructor(TypeElement type) {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String generateCodec(MessageModel model) {
+        String type = model.typeName;
+        StringBuilder out = new StringBuilder(4096);
+        if (!model.packageName.isEmpty()) {
+            out.append("package ").append(model.packageName).append(";\n\n");
+        }
+        out.append("import com.game.netty.client.codec.MessageBodyCodec;\n");
+        out.append("import com.game.netty.client.codec.binary.BinaryWireUtil;\n");
+        out.append("import com.game.netty.util.VarIntUtil;\n");
+        out.append("import io.netty.buffer.ByteBuf;\n");
+        out.append("import io.netty.buffer.ByteBufUtil;\n");
+        out.append("import io.netty.handler.codec.CorruptedFrameException;\n\n");
+        out.append("import java.nio.charset.StandardCharsets;\n\n");
+        out.append("/**\n * MessageBodyCodec of {@link ").append(type).append("}, generated by CodecProcessor, do not edit\n */\n");
+        out.append("public final class ").append(model.codecName)
+                .append(" implements MessageBodyCodec<").append(type).append("> {\n\n");
+        out.append(INDENT).append("public static final long HEAD = ").append(model.head).append("L;\n\n");
+        out.append(INDENT).append("public static final ").append(model.codecName).append(" INSTANCE = new ")
+                .append(model.codecName).append("();\n\n");
+
+        // size
+        out.append(INDENT).append("@Override\n");
+        out.append(INDENT).append("public int bodyEncodeSize(").append(type).append(" body) {\n");
+        out.append(INDENT).append(INDENT).append("int size = 0;\n");
+        for (FieldModel field : model.fields) {
+            String value = "body." + field.getter;
+            String local = "f" + field.tag;
+            String indent = INDENT + INDENT;
+            out.append(indent).append(field.javaType).append(' ').append(local).append(" = ").append(value).append(";\n");
+            if (field.kind.reference) {
+                if (field.optional) {
+                    out.append(indent).append("if (").append(local).append(" != null) {\n");
+                    indent += INDENT;
+                } else {
+                    appendRequiredCheck(out, indent, local, type, field);
+                }
+            } else if (field.optional) {
+                out.append(indent).append("if (").append(field.kind.nonDefault(local)).append(") {\n");
+                indent += INDENT;
+            }
+            out.append(indent).append("size += ").append(keySize(field)).append(" + ")
+                    .append(field.kind.sizeExpression(local)).append(";\n");
+            if (field.optional) {
+                out.append(INDENT).append(INDENT).append("}\n");
+            }
+        }
+        out.append(INDENT).append(INDENT).append("return size;\n");
+        out.append(INDENT).append("}\n\n");
+
+        // encode
+        out.append(INDENT).append("@Override\n");
+        out.append(INDENT).append("public void encodeBody(").append(type).append(" body, ByteBuf out) {\n");
+        for (FieldModel field : model.fields) {
+            String local = "f" + field.tag;
+            String indent = INDENT + INDENT;
+            out.append(indent).append(field.javaType).append(' ').append(local).append(" = body.").append(field.getter).append(";\n");
+            if (field.optional) {
+                out.append(indent).append("if (").append(field.kind.reference ? local + " != null" : field.kind.nonDefault(local)).append(") {\n");
+                indent += INDENT;
+            } else if (field.kind.reference) {
+                appendRequiredCheck(out, indent, local, type, field);
+            }
+            appendKeyWrite(out, indent, key(field));
+            field.kind.appendWrite(out, indent, local);
+            if (field.optional) {
+                out.append(INDENT).append(INDENT).append("}\n");
+            }
+        }
+        out.append(INDENT).append("}\n\n");
+
+        // decode
+        String indent = INDENT + INDENT;
+        out.append(INDENT).append("@Override\n");
+        out.append(INDENT).append("public ").append(type).append(" decodeMessageBody(long messageHead, ByteBuf bodyBuf, int length) {\n");
+        out.append(indent).append(type).append(" body = new ").append(type).append("();\n");
+        if (model.requiredCount > 0) {
+            out.append(indent).append("long required = 0;\n");
+        }
+        out.append(indent).append("int end = bodyBuf.readerIndex() + length;\n");
+        out.append(indent).append("while (bodyBuf.readerIndex() < end) {\n");
+        out.append(indent).append(INDENT).append("int key = VarIntUtil.readVarInt32(bodyBuf);\n");
+        out.append(indent).append(INDENT).append("switch (key) {\n");
+        String caseIndent = indent + INDENT + INDENT;
+        for (FieldModel field : model.fields) {
+            out.append(caseIndent).append("case ").append(key(field)).append(":\n");
+            String read = field.kind.readExpression("bodyBuf");
+            if (field.setter == null) {
+                out.append(caseIndent).append(INDENT).append("body.").append(field.name).append(" = ").append(read).append(";\n");
+            } else {
+                out.append(caseIndent).append(INDENT).append("body.").append(field.setter).append('(').append(read).append(");\n");
+            }
+            if (!field.optional) {
+                out.append(caseIndent).append(INDENT).append("required |= 1L << ").append(field.requiredIndex).append(";\n");
+            }
+            out.append(caseIndent).append(INDENT).append("break;\n");
+        }
+        out.append(caseIndent).append("default:\n");
+        out.append(caseIndent).append(INDENT).append("BinaryWireUtil.skipField(bodyBuf, key & 0x7);\n");
+        out.append(indent).append(INDENT).append("}\n");
+        out.append(indent).append("}\n");
+        out.append(indent).append("if (bodyBuf.readerIndex() != end) {\n");
+        out.append(indent).append(INDENT).append("throw new CorruptedFrameException(\"field exceeds body end of ")
+                .append(type).append("\");\n");
+        out.append(indent).append("}\n");
+        if (model.requiredCount > 0) {
+            long mask = model.requiredCount == 64 ? -1L : (1L << model.requiredCount) - 1;
+            out.append(indent).append("if (required != ").append(mask).append("L) {\n");
+            out.append(indent).append(INDENT).append("throw new CorruptedFrameException(\"required field missing in ")
+                    .append(type).append("\");\n");
+            out.append(indent).append("}\n");
+        }
+        out.append(indent).append("return body;\n");
+        out.append(INDENT).append("}\n");
+        out.append("}\n");
+        return out.toString();
+    }
+
+    /**
+     * key is a constant, write its varint bytes directly
+     */
+    private static void appendKeyWrite(StringBuilder out, String indent, int key) {
+        if (key < 0x80) {
+            out.append(indent).append("out.writeByte(").append(key).append(");\n");
+        } else {
+            int bytes = ((key & 0x7F) | 0x80) << 8 | (key >>> 7);
+            out.append(indent).append("out.writeShort(0x").append(Integer.toHexString(bytes)).append(");\n");
+        }
+    }
+
+    private void appendRequiredCheck(StringBuilder out, String indent, String local, String type, FieldModel field) {
+        out.append(indent).append("if (").append(local).append(" == null) {\n");
+        out.append(indent).append(INDENT).append("throw new IllegalArgumentException(\"required field ")
+                .append(type).append('.').append(field.name).append(" is null\");\n");
+        out.append(indent).append("}\n");
+    }
+
+    private String generateRegistry(String registryPackage) {
+        StringBuilder out = new StringBuilder(2048);
+        if (!registryPackage.isEmpty()) {
+            out.append("package ").append(registryPackage).append(";\n\n");
+        }
+        out.append("import com.game.netty.client.codec.CompositeBodyCodec;\n\n");
+        out.append("/**\n * head to type mapping of all CodecMessage classes, generated by CodecProcessor, do not edit\n */\n");
+        out.append("public final class ").append(REGISTRY_CLASS).append(" {\n\n");
+
+        out.append(INDENT).append("/**\n");
+        out.append(INDENT).append(" * register all generated codecs\n");
+        out.append(INDENT).append(" *\n");
+        out.append(INDENT).append(" * @param codec target composite codec\n");
+        out.append(INDENT).append(" * @return the composite codec\n");
+        out.append(INDENT).append(" */\n");
+        out.append(INDENT).append("public static CompositeBodyCodec registerAll(CompositeBodyCodec codec) {\n");
+        for (MessageModel model : messages.values()) {
+            String codecClass = qualifiedCodec(model);
+            out.append(INDENT).append(INDENT).append("codec.register(").append(codecClass).append(".HEAD, ")
+                    .append(codecClass).append(".INSTANCE);\n");
+        }
+        out.append(INDENT).append(INDENT).append("return codec;\n");
+        out.append(INDENT).append("}\n\n");
+
+        out.append(INDENT).append("/**\n");
+        out.append(INDENT).append(" * @param head message head\n");
+        out.append(INDENT).append(" * @return body type of the head, null if not found\n");
+        out.append(INDENT).append(" */\n");
+        out.append(INDENT).append("public static Class<?> typeOf(long head) {\n");
+        for (MessageModel model : messages.values()) {
+            out.append(INDENT).append(INDENT).append("if (head == ").append(model.head).append("L) {\n");
+            out.append(INDENT).append(INDENT).append(INDENT).append("return ").append(model.typeName).append(".class;\n");
+            out.append(INDENT).append(INDENT).append("}\n");
+        }
+        out.append(INDENT).append(INDENT).append("return null;\n");
+        out.append(INDENT).append("}\n\n");
+
+        out.append(INDENT).append("/**\n");
+        out.append(INDENT).append(" * @param body message body\n");
+        out.append(INDENT).append(" * @return head of the body type\n");
+        out.append(INDENT).append(" */\n");
+        out.append(INDENT).append("public static long headOf(Object body) {\n");
+        for (MessageModel model : messages.values()) {
+            out.append(INDENT).append(INDENT).append("if (body instanceof ").append(model.typeName).append(") {\n");
+            out.append(INDENT).append(INDENT).append(INDENT).append("return ").append(model.head).append("L;\n");
+            out.append(INDENT).append(INDENT).append("}\n");
+        }
+        out.append(INDENT).append(INDENT)
+                .append("throw new IllegalArgumentException(\"not a CodecMessage: \" + (body == null ? null : body.getClass()));\n");
+        out.append(INDENT).append("}\n\n");
+
+        out.append(INDENT).append("private ").append(REGISTRY_CLASS).append("() {\n");
+        out.append(INDENT).append("}\n");
+        out.append("}\n");
+        return out.toString();
+    }
+
+    private static String qualifiedCodec(MessageModel model) {
+        return model.packageName.isEmpty() ? model.codecName : model.packageName + "." + model.codecName;
+    }
+
+    private static int key(FieldModel field) {
+        return field.tag << 3 | field.kind.wireType;
+    }
+
+    private static int keySize(FieldModel field) {
+        return key(field) < 0x80 ? 1 : 2;
+    }
+
+    private void writeSource(String packageName, String className, String source, Element origin) {
+        String name = packageName.isEmpty() ? className : packageName + "." + className;
+        try (Writer writer = (origin == null ? filer.createSourceFile(name) : filer.createSourceFile(name, origin)).openWriter()) {
+            writer.write(source);
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "fail to write " + name + ": " + e);
+        }
+    }
+
+    private void error(Element element, String message) {
+        messager.printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    /**
+     * java field type and its wire representation, same as FieldType of BinarySchemaCodec
+     */
+    private enum WireKind {
+        BOOLEAN(0, false),
+        BYTE(0, false),
+        SHORT(0, false),
+        CHAR(0, false),
+        INT(0, false),
+        LONG(0, false),
+        FLOAT(5, false),
+        DOUBLE(1, false),
+        STRING(2, true),
+        BYTES(2, true);
+
+        private final int wireType;
+        private final boolean reference;
+
+        WireKind(int wireType, boolean reference) {
+            this.wireType = wireType;
+            this.reference = reference;
+        }
+
+        static WireKind of(TypeMirror type) {
+            switch (type.getKind()) {
+                case BOOLEAN:
+                    return BOOLEAN;
+                case BYTE:
+                    return BYTE;
+                case SHORT:
+                    return SHORT;
+                case CHAR:
+                    return CHAR;
+                case INT:
+                    return INT;
+                case LONG:
+                    return LONG;
+                case FLOAT:
+                    return FLOAT;
+                case DOUBLE:
+                    return DOUBLE;
+                case ARRAY:
+                    return ((ArrayType) type).getComponentType().getKind() == TypeKind.BYTE ? BYTES : null;
+                case DECLARED:
+                    return "java.lang.String".equals(type.toString()) ? STRING : null;
+                default:
+                    return null;
+            }
+        }
+
+        String nonDefault(String value) {
+            return this == BOOLEAN ? value : value + " != 0";
+        }
+
+        String sizeExpression(String value) {
+            switch (this) {
+                case BOOLEAN:
+                    return "1";
+                case BYTE:
+                case SHORT:
+                case INT:
+                    return "VarIntUtil.varInt32Size(VarIntUtil.encodeZigZag32(" + value + "))";
+                case CHAR:
+                    return "VarIntUtil.varInt32Size(" + value + ")";
+                case LONG:
+                    return "VarIntUtil.varInt64Size(VarIntUtil.encodeZigZag64(" + value + "))";
+                case FLOAT:
+                    return "4";
+                case DOUBLE:
+                    return "8";
+                case STRING:
+                    return "BinaryWireUtil.lengthDelimitedSize(ByteBufUtil.utf8Bytes(" + value + "))";
+                default:
+                    return "BinaryWireUtil.lengthDelimitedSize(" + value + ".length)";
+            }
+        }
+
+        void appendWrite(StringBuilder out, String indent, String value) {
+            switch (this) {
+                case BOOLEAN:
+                    out.append(indent).append("out.writeByte(").append(value).append(" ? 1 : 0);\n");
+                    break;
+                case BYTE:
+                case SHORT:
+                case INT:
+                    out.append(indent).append("VarIntUtil.writeVarInt32(out, VarIntUtil.encodeZigZag32(").append(value).append("));\n");
+                    break;
+                case CHAR:
+                    out.append(indent).append("VarIntUtil.writeVarInt32(out, ").append(value).append(");\n");
+                    break;
+                case LONG:
+                    out.append(indent).append("VarIntUtil.writeVarInt64(out, VarIntUtil.encodeZigZag64(").append(value).append("));\n");
+                    break;
+                case FLOAT:
+                    out.append(indent).append("out.writeFloatLE(").append(value).append(");\n");
+                    break;
+                case DOUBLE:
+                    out.append(indent).append("out.writeDoubleLE(").append(value).append(");\n");
+                    break;
+                case STRING:
+                    out.append(indent).append("int ").append(value).append("Length = ByteBufUtil.utf8Bytes(").append(value).append(");\n");
+                    out.append(indent).append("VarIntUtil.writeVarInt32(out, ").append(value).append("Length);\n");
+                    out.append(indent).append("ByteBufUtil.reserveAndWriteUtf8(out, ").append(value).append(", ")
+                            .append(value).append("Length);\n");
+                    break;
+                default:
+                    out.append(indent).append("VarIntUtil.writeVarInt32(out, ").append(value).append(".length);\n");
+                    out.append(indent).append("out.writeBytes(").append(value).append(");\n");
+                    break;
+            }
+        }
+
+        String readExpression(String in) {
+            switch (this) {
+                case BOOLEAN:
+                    return "VarIntUtil.readVarInt64(" + in + ") != 0";
+                case BYTE:
+                    return "(byte) VarIntUtil.decodeZigZag32(VarIntUtil.readVarInt32(" + in + "))";
+                case SHORT:
+                    return "(short) VarIntUtil.decodeZigZag32(VarIntUtil.readVarInt32(" + in + "))";
+                case INT:
+                    return "VarIntUtil.decodeZigZag32(VarIntUtil.readVarInt32(" + in + "))";
+                case CHAR:
+                    return "(char) VarIntUtil.readVarInt32(" + in + ")";
+                case LONG:
+                    return "VarIntUtil.decodeZigZag64(VarIntUtil.readVarInt64(" + in + "))";
+                case FLOAT:
+                    return in + ".readFloatLE()";
+                case DOUBLE:
+                    return in + ".readDoubleLE()";
+                case STRING:
+                    return in + ".readCharSequence(BinaryWireUtil.readLength(" + in + "), StandardCharsets.UTF_8).toString()";
+                default:
+                    return "BinaryWireUtil.readBytes(" + in + ")";
+            }
+        }
+    }
+
+    private static final class MessageModel {
+        private long head;
+        private String packageName;
+        private String typeName;
+        private String codecName;
+        private int requiredCount;
+        private final List<FieldModel> fields = new ArrayList<>();
+    }
+
+    private static final class FieldModel {
+        private String name;
+        private int tag;
+        private boolean optional;
+        private WireKind kind;
+        private String javaType;
+        /**
+         * field name for direct access, or getter call
+         */
+        private String getter;
+        /**
+         * setter name, null for direct access
+         */
+        private String setter;
+        private int requiredIndex = -1;
+    }
+}
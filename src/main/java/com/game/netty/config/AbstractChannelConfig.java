@@ -46,6 +46,16 @@ public abstract class AbstractChannelConfig {
      */
     private int autoFlushIntervalMillis = 0;
 
+    /**
+     * connect timeout of a connector channel, a blackholed server fails after it
+     */
+    private int connectTimeoutMillis = 3000;
+
+    /**
+     * reconnect backoff of a connector channel, the delay grows from min to max with jitter
+     */
+    private int reconnectMinDelayMillis = 100;
+    private int reconnectMaxDelayMillis = 10000;
 
     public int getChannelReadTimeOut() {
         return channelReadTimeOut;
@@ -71,6 +81,30 @@ public abstract class AbstractChannelConfig {
         this.autoFlushIntervalMillis = autoFlushIntervalMillis;
     }
 
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    public int getReconnectMinDelayMillis() {
+        return reconnectMinDelayMillis;
+    }
+
+    public void setReconnectMinDelayMillis(int reconnectMinDelayMillis) {
+        this.reconnectMinDelayMillis = reconnectMinDelayMillis;
+    }
+
+    public int getReconnectMaxDelayMillis() {
+        return reconnectMaxDelayMillis;
+    }
+
+    public void setReconnectMaxDelayMillis(int reconnectMaxDelayMillis) {
+        this.reconnectMaxDelayMillis = reconnectMaxDelayMillis;
+    }
+
     public void addChanelOption(ChannelOption option, Object value) {
         channelOptions.put(option, value);
     }
@@ -24,9 +24,38 @@ import io.netty.channel.ChannelOption;
 @SuppressWarnings("unused")
 public class ProxyChannelConfig extends AbstractChannelConfig {
 
+    /**
+     * link heartbeat ping interval, 0 to disable ping, pings of peer are always answered;
+     * disabled by default, the peer must be a version that knows PING/PONG frames
+     *
+     * @see com.game.netty.proxy.codec.ProxyHeartbeatHandler
+     */
+    private int heartbeatIntervalMillis;
+
+    /**
+     * close the link if no pong received in this time, it should be several intervals
+     */
+    private int heartbeatTimeoutMillis = 5000;
+
     public ProxyChannelConfig() {
         addChanelOption(ChannelOption.SO_LINGER, 0);
         addChanelOption(ChannelOption.TCP_NODELAY, true);
         setAutoFlushIntervalMillis(2);
     }
+
+    public int getHeartbeatIntervalMillis() {
+        return heartbeatIntervalMillis;
+    }
+
+    public void setHeartbeatIntervalMillis(int heartbeatIntervalMillis) {
+        this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+    }
+
+    public int getHeartbeatTimeoutMillis() {
+        return heartbeatTimeoutMillis;
+    }
+
+    public void setHeartbeatTimeoutMillis(int heartbeatTimeoutMillis) {
+        this.heartbeatTimeoutMillis = heartbeatTimeoutMillis;
+    }
 }
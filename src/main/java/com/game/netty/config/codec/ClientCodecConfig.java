@@ -42,6 +42,13 @@ public class ClientCodecConfig {
      */
     private boolean decoderKeepMessageBuf = false;
 
+    /**
+     * decode into pooled ClientMessage, the message must not be touched after released
+     *
+     * @see ClientMessage#newInstance(long, io.netty.buffer.ByteBuf, Object)
+     */
+    private boolean pooledMessage = false;
+
     /**
      * @see ClientMessageEncoder
      */
@@ -53,7 +60,10 @@ public class ClientCodecConfig {
     private final List<BodyTransformer> bodyDecodeTransformers = new ArrayList<>();
 
     /**
+     * use CompositeBodyCodec to choose codec by message head
+     *
      * @see ClientMessageDecoder
+     * @see com.game.netty.client.codec.CompositeBodyCodec
      */
     private final Supplier<MessageBodyCodec<?>> supplier;
 
@@ -118,4 +128,12 @@ public class ClientCodecConfig {
     public void setDecoderKeepMessageBuf(boolean decoderKeepMessageBuf) {
         this.decoderKeepMessageBuf = decoderKeepMessageBuf;
     }
+
+    public boolean isPooledMessage() {
+        return pooledMessage;
+    }
+
+    public void setPooledMessage(boolean pooledMessage) {
+        this.pooledMessage = pooledMessage;
+    }
 }
@@ -18,8 +18,10 @@ package com.game.netty.config.codec;
 
 import com.game.netty.client.ClientMessage;
 import com.game.netty.client.codec.MessageBodyCodec;
+import com.game.netty.proxy.ProxyMessage;
 import com.game.netty.proxy.codec.ProxyHeaderCodec;
 import com.game.netty.proxy.codec.ProxyMessageDecoder;
+import com.game.netty.proxy.codec.ProxyMessageEncoder;
 
 import java.util.function.Supplier;
 
@@ -49,7 +51,23 @@ public class ProxyCodecConfig {
     private boolean decoderKeepMessageBuf;
 
     /**
-     * ProxyHeaderCodec or MessageBodyCodec may be stateful, so the parameter is a factory
+     * decode into pooled ProxyMessage and ClientMessage, the message must not be touched after released
+     *
+     * @see ProxyMessage#newInstance(Object, ClientMessage)
+     */
+    private boolean pooledMessage;
+
+    /**
+     * max bytes of a batch frame, 0 to disable; if enabled, messages written between flushes are packed into batch frames,
+     * the peer must be a version that knows batch frame
+     *
+     * @see ProxyMessageEncoder#setBatch(int)
+     */
+    private int maxBatchBytes;
+
+    /**
+     * ProxyHeaderCodec or MessageBodyCodec may be stateful, so the parameter is a factory,
+     * e.g. CompactProxyHeadCodec::new, each channel gets its own instances
      *
      * @param clientMessageHeadSize client message head size, must be 0,1,2,4,8
      * @param headCodecSupplier ProxyHeaderCodec factory
@@ -80,6 +98,22 @@ public class ProxyCodecConfig {
         this.decoderKeepMessageBuf = decoderKeepMessageBuf;
     }
 
+    public boolean isPooledMessage() {
+        return pooledMessage;
+    }
+
+    public void setPooledMessage(boolean pooledMessage) {
+        this.pooledMessage = pooledMessage;
+    }
+
+    public int getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    public void setMaxBatchBytes(int maxBatchBytes) {
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
     public Supplier<ProxyHeaderCodec<?>> headCodec() {
         return headCodecSupplier;
     }
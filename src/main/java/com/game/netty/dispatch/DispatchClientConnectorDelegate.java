@@ -0,0 +1,48 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.dispatch;
+
+import com.game.netty.client.ClientMessage;
+import com.game.netty.client.connector.ClientConnectChannel;
+import com.game.netty.client.connector.ClientConnectorDelegate;
+
+/**
+ * client connector delegate which dispatches messages by head, subclass only handles status and exception events
+ *
+ * @param <B> message body type
+ */
+public abstract class DispatchClientConnectorDelegate<B> implements ClientConnectorDelegate<B> {
+
+    protected final MessageDispatcher<ClientConnectChannel, ClientMessage<B>> dispatcher;
+
+    protected DispatchClientConnectorDelegate() {
+        this(MessageDispatcher.forClientMessage());
+    }
+
+    protected DispatchClientConnectorDelegate(MessageDispatcher<ClientConnectChannel, ClientMessage<B>> dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    public MessageDispatcher<ClientConnectChannel, ClientMessage<B>> getDispatcher() {
+        return dispatcher;
+    }
+
+    @Override
+    public void onChannelMessage(ClientConnectChannel channel, ClientMessage<B> message) {
+        dispatcher.dispatch(channel, message);
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.dispatch;
+
+import com.game.netty.proxy.ProxyMessage;
+import com.game.netty.proxy.connector.ProxyConnectChannel;
+import com.game.netty.proxy.connector.ProxyConnectorDelegate;
+
+/**
+ * proxy connector delegate which dispatches messages by head, subclass only handles status and exception events
+ *
+ * @param <H> proxy head type
+ * @param <B> message body type
+ */
+public abstract class DispatchProxyConnectorDelegate<H, B> implements ProxyConnectorDelegate<H, B> {
+
+    protected final MessageDispatcher<ProxyConnectChannel, ProxyMessage<H, B>> dispatcher;
+
+    protected DispatchProxyConnectorDelegate() {
+        this(MessageDispatcher.forProxyMessage());
+    }
+
+    protected DispatchProxyConnectorDelegate(MessageDispatcher<ProxyConnectChannel, ProxyMessage<H, B>> dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    public MessageDispatcher<ProxyConnectChannel, ProxyMessage<H, B>> getDispatcher() {
+        return dispatcher;
+    }
+
+    @Override
+    public void onChannelMessage(ProxyConnectChannel channel, ProxyMessage<H, B> message) {
+        dispatcher.dispatch(channel, message);
+    }
+}
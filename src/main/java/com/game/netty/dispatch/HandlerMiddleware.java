@@ -0,0 +1,37 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.dispatch;
+
+/**
+ * middleware wrapping the handler of a head, like timing, rate limiting, logging...
+ * <p>
+ * The middleware decides whether and when to call next; not calling next means the message is dropped.
+ *
+ * @param <C> channel type
+ * @param <M> message type
+ */
+@FunctionalInterface
+public interface HandlerMiddleware<C, M> {
+
+    /**
+     * @param head    message head
+     * @param channel the channel which receive the message
+     * @param message the message
+     * @param next    the next middleware or the handler itself
+     */
+    void handle(long head, C channel, M message, MessageHandler<C, M> next);
+}
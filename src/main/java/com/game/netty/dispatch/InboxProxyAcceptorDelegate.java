@@ -0,0 +1,223 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.dispatch;
+
+import com.game.netty.ChannelEvent;
+import com.game.netty.proxy.ProxyMessage;
+import com.game.netty.proxy.acceptor.ProxyAcceptedChannel;
+import com.game.netty.proxy.acceptor.ProxyAcceptorDelegate;
+import com.game.netty.util.MpscEventRing;
+import io.netty.channel.Channel;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * proxy acceptor delegate which feeds messages from all eventLoops to one game loop thread through a {@link MpscEventRing}.
+ * <p>
+ * The game loop calls {@link #drain} to handle messages with the wrapped delegate on its own thread,
+ * the wrapped delegate doesn't release them, as before.
+ * Status and exception events are passed to it on eventLoop directly, so they are not ordered with pending messages.
+ * <p>
+ * When the ring is filled over the high watermark, the channel putting message stops auto read;
+ * after the loop drains it under the low watermark, paused channels read again.
+ * A read already in progress still delivers messages, a message arriving at a full ring is dropped, released and counted,
+ * drops are logged at most once a second; size the ring so the headroom over the high watermark covers one read of every channel.
+ * Auto read is only toggled on the eventLoop of the channel, against the paused set at that time.
+ *
+ * @param <H> proxy head type
+ * @param <B> message body type
+ */
+public class InboxProxyAcceptorDelegate<H, B> implements ProxyAcceptorDelegate<H, B> {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(InboxProxyAcceptorDelegate.class);
+
+    private static final long DROP_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final ProxyAcceptorDelegate<H, B> delegate;
+
+    private final MpscEventRing<Event<H, B>> ring;
+
+    private final MpscEventRing.WaitStrategy waitStrategy;
+
+    private final int highWatermark;
+    private final int lowWatermark;
+
+    private final Set<Channel> pausedChannels = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final AtomicLong lastDropLogNanos = new AtomicLong();
+
+    private final Consumer<Event<H, B>> eventHandler = this::handle;
+
+    /**
+     * @param delegate     the delegate handling messages on game loop thread
+     * @param capacity     ring capacity, rounded up to power of 2
+     * @param waitStrategy how {@link #drain(int, long)} waits
+     */
+    public InboxProxyAcceptorDelegate(ProxyAcceptorDelegate<H, B> delegate, int capacity, MpscEventRing.WaitStrategy waitStrategy) {
+        this.delegate = delegate;
+        this.ring = new MpscEventRing<>(capacity, Event::new);
+        this.waitStrategy = waitStrategy;
+        this.highWatermark = ring.capacity() - ring.capacity() / 4;
+        this.lowWatermark = ring.capacity() / 4;
+    }
+
+    @Override
+    public void onAcceptorStarted() {
+        delegate.onAcceptorStarted();
+    }
+
+    @Override
+    public void onChannelStatusEvent(ProxyAcceptedChannel channel, ChannelEvent event) {
+        if (event == ChannelEvent.CHANNEL_INACTIVE) {
+            pausedChannels.remove(channel.getChannel());
+        }
+        delegate.onChannelStatusEvent(channel, event);
+    }
+
+    @Override
+    public void onChannelExceptionCaught(ProxyAcceptedChannel channel, Throwable e) {
+        delegate.onChannelExceptionCaught(channel, e);
+    }
+
+    @Override
+    public void onChannelMessage(ProxyAcceptedChannel channel, ProxyMessage<H, B> message) {
+        long seq = ring.tryClaim();
+        if (seq < 0) {
+            dropped.increment();
+            logDrop(channel);
+            pause(channel.getChannel());
+            return;
+        }
+        Event<H, B> event = ring.get(seq);
+        event.channel = channel;
+        //the acceptor releases the message after this call returns
+        event.message = message.retain();
+        ring.publish(seq);
+        if (ring.size() >= highWatermark) {
+            pause(channel.getChannel());
+        }
+    }
+
+    /**
+     * a full ring drops a burst, log at most once per interval on eventLoops, see {@link #getDroppedCount()} for totals
+     */
+    private void logDrop(ProxyAcceptedChannel channel) {
+        long now = System.nanoTime();
+        long last = lastDropLogNanos.get();
+        if ((last == 0 || now - last >= DROP_LOG_INTERVAL_NANOS) && lastDropLogNanos.compareAndSet(last, now) && logger.isWarnEnabled()) {
+            logger.warn("inbox full, drop message of {}, dropped {}", channel.getChannel(), dropped.sum());
+        }
+    }
+
+    private void pause(Channel channel) {
+        if (pausedChannels.add(channel)) {
+            channel.eventLoop().execute(() -> {
+                //resumed by the game loop before this task ran
+                if (pausedChannels.contains(channel)) {
+                    channel.config().setAutoRead(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * handle pending messages, only called by the game loop thread
+     *
+     * @param limit max messages to handle
+     * @return messages handled
+     */
+    public int drain(int limit) {
+        int count = ring.drain(eventHandler, limit);
+        resumeIfDrained();
+        return count;
+    }
+
+    /**
+     * handle pending messages, wait with the wait strategy if there is none, only called by the game loop thread
+     *
+     * @param limit        max messages to handle
+     * @param timeoutNanos max wait time
+     * @return messages handled, 0 if timeout
+     */
+    public int drain(int limit, long timeoutNanos) {
+        int count = ring.drain(eventHandler, limit, waitStrategy, timeoutNanos);
+        resumeIfDrained();
+        return count;
+    }
+
+    private void handle(Event<H, B> event) {
+        ProxyAcceptedChannel channel = event.channel;
+        ProxyMessage<H, B> message = event.message;
+        event.channel = null;
+        event.message = null;
+        try {
+            delegate.onChannelMessage(channel, message);
+        } finally {
+            message.release();
+        }
+    }
+
+    private void resumeIfDrained() {
+        if (pausedChannels.isEmpty() || ring.size() > lowWatermark) {
+            return;
+        }
+        Iterator<Channel> iterator = pausedChannels.iterator();
+        while (iterator.hasNext()) {
+            Channel channel = iterator.next();
+            iterator.remove();
+            channel.eventLoop().execute(() -> {
+                //paused again before this task ran
+                if (!pausedChannels.contains(channel)) {
+                    channel.config().setAutoRead(true);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return messages waiting in the ring, a snapshot
+     */
+    public int pendingMessages() {
+        return ring.size();
+    }
+
+    /**
+     * @return channels stopped reading by back pressure
+     */
+    public int pausedChannels() {
+        return pausedChannels.size();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private static final class Event<H, B> {
+        private ProxyAcceptedChannel channel;
+        private ProxyMessage<H, B> message;
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.dispatch;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Run tasks on a shared executor, tasks of the same key run one by one in submit order, tasks of different keys run in parallel.
+ * <p>
+ * Each active key owns a bounded mailbox, the mailbox is scheduled on the executor when its first task arrives,
+ * and removed when it is drained, so idle keys cost nothing. A mailbox yields the worker after {@code maxBatch} tasks,
+ * a busy key can't starve others.
+ * <p>
+ * {@link #submit} never blocks, it can be called from eventLoop; a task not accepted is passed to the drop handler.
+ *
+ * @param <K> key type
+ */
+public class KeyedSerialExecutor<K> {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(KeyedSerialExecutor.class);
+
+    public static final int DEFAULT_MAILBOX_CAPACITY = 1024;
+
+    public static final int DEFAULT_MAX_BATCH = 64;
+
+    /**
+     * what to do when a mailbox is full
+     */
+    public enum OverflowPolicy {
+        /**
+         * the new task is dropped
+         */
+        DROP_NEWEST,
+        /**
+         * the oldest pending task is dropped to make room
+         */
+        DROP_OLDEST
+    }
+
+    private final Executor executor;
+    private final int mailboxCapacity;
+    private final int maxBatch;
+    private final OverflowPolicy overflowPolicy;
+
+    /**
+     * called with dropped tasks, they never run, may be null
+     */
+    private final Consumer<Runnable> dropHandler;
+
+    private final Map<K, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param executor        shared worker executor
+     * @param mailboxCapacity max pending tasks per key
+     * @param maxBatch        max tasks run in one schedule of a mailbox
+     * @param overflowPolicy  what to do when a mailbox is full
+     * @param dropHandler     called with dropped tasks, may be null
+     */
+    public KeyedSerialExecutor(Executor executor, int mailboxCapacity, int maxBatch, OverflowPolicy overflowPolicy, Consumer<Runnable> dropHandler) {
+        if (mailboxCapacity <= 0 || maxBatch <= 0) {
+            throw new IllegalArgumentException("mailboxCapacity: " + mailboxCapacity + ", maxBatch: " + maxBatch);
+        }
+        this.executor = executor;
+        this.mailboxCapacity = mailboxCapacity;
+        this.maxBatch = maxBatch;
+        this.overflowPolicy = overflowPolicy;
+        this.dropHandler = dropHandler;
+    }
+
+    public KeyedSerialExecutor(Executor executor) {
+        this(executor, DEFAULT_MAILBOX_CAPACITY, DEFAULT_MAX_BATCH, OverflowPolicy.DROP_NEWEST, null);
+    }
+
+    /**
+     * a fixed size worker pool of daemon threads
+     *
+     * @param nThreads worker count, 0 for available processors
+     * @param name     thread name prefix
+     * @return executor
+     */
+    public static ExecutorService newWorkerPool(int nThreads, String name) {
+        int n = nThreads > 0 ? nThreads : Runtime.getRuntime().availableProcessors();
+        return Executors.newFixedThreadPool(n, new DefaultThreadFactory(name, true));
+    }
+
+    /**
+     * a virtual thread per task executor on JDK 21+, otherwise {@link #newWorkerPool(int, String)}.
+     * Blocking logic is cheap on virtual threads, still keys run serially.
+     *
+     * @param name thread name prefix of the fallback pool
+     * @return executor
+     */
+    public static ExecutorService newVirtualOrWorkerPool(String name) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return newWorkerPool(0, name);
+        }
+    }
+
+    /**
+     * @param key  order key, tasks of the same key run serially
+     * @param task task
+     * @return false if the task is dropped
+     */
+    public boolean submit(K key, Runnable task) {
+        submitted.increment();
+        for (; ; ) {
+            Mailbox mailbox = mailboxes.computeIfAbsent(key, Mailbox::new);
+            Runnable drop = null;
+            boolean schedule = false;
+            synchronized (mailbox) {
+                if (mailbox.closed) {
+                    //drained and removed just now, get a new one
+                    continue;
+                }
+                if (mailbox.queue.size() >= mailboxCapacity) {
+                    if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                        drop = task;
+                    } else {
+                        drop = mailbox.queue.poll();
+                        mailbox.queue.add(task);
+                    }
+                } else {
+                    mailbox.queue.add(task);
+                }
+                if (!mailbox.scheduled) {
+                    mailbox.scheduled = true;
+                    schedule = true;
+                }
+            }
+            if (schedule) {
+                mailbox.schedule();
+            }
+            if (drop != null) {
+                onDropped(drop);
+            }
+            return drop != task;
+        }
+    }
+
+    private void onDropped(Runnable task) {
+        dropped.increment();
+        if (dropHandler != null) {
+            try {
+                dropHandler.accept(task);
+            } catch (Throwable e) {
+                logger.warn("drop handler error", e);
+            }
+        }
+    }
+
+    /**
+     * @return keys having pending or running tasks
+     */
+    public int activeKeys() {
+        return mailboxes.size();
+    }
+
+    /**
+     * @param key order key
+     * @return pending tasks of the key, not counting the running one
+     */
+    public int pendingTasks(K key) {
+        Mailbox mailbox = mailboxes.get(key);
+        if (mailbox == null) {
+            return 0;
+        }
+        synchronized (mailbox) {
+            return mailbox.queue.size();
+        }
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private final class Mailbox implements Runnable {
+        private final K key;
+
+        /**
+         * guarded by this
+         */
+        private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+
+        /**
+         * mailbox is submitted to executor or running, guarded by this
+         */
+        private boolean scheduled;
+
+        /**
+         * removed from mailboxes, guarded by this
+         */
+        private boolean closed;
+
+        Mailbox(K key) {
+            this.key = key;
+        }
+
+        void schedule() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                //executor is shut down, nobody will run the tasks
+                Runnable[] tasks;
+                synchronized (this) {
+                    tasks = queue.toArray(new Runnable[0]);
+                    queue.clear();
+                    close();
+                }
+                for (Runnable task : tasks) {
+                    onDropped(task);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < maxBatch; i++) {
+                Runnable task;
+                synchronized (this) {
+                    task = queue.poll();
+                    if (task == null) {
+                        close();
+                        return;
+                    }
+                }
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    logger.warn("task of key {} error", key, e);
+                }
+            }
+            //yield the worker, run the rest later
+            synchronized (this) {
+                if (queue.isEmpty()) {
+                    close();
+                    return;
+                }
+            }
+            schedule();
+        }
+
+        /**
+         * guarded by this
+         */
+        private void close() {
+            scheduled = false;
+            closed = true;
+            mailboxes.remove(key, this);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.dispatch;
+
+import com.game.netty.client.ClientMessage;
+import com.game.netty.proxy.ProxyMessage;
+import com.game.netty.util.HeadIndexedTable;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Dispatch messages to handlers registered by message head.
+ * <p>
+ * The handler and its middlewares are composed on registration, so dispatching is one table lookup and one call,
+ * no boxing, no allocation.
+ * <p>
+ * Register all handlers before channels start, after that the dispatcher can be shared by all eventLoops.
+ *
+ * @param <C> channel type
+ * @param <M> message type
+ * @see DispatchClientAcceptorDelegate
+ * @see DispatchClientConnectorDelegate
+ * @see DispatchProxyAcceptorDelegate
+ * @see DispatchProxyConnectorDelegate
+ */
+public class MessageDispatcher<C, M> {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(MessageDispatcher.class);
+
+    /**
+     * default dense table size, heads less than this are indexed by array
+     */
+    public static final int DEFAULT_DENSE_SIZE = 1024;
+
+    private final ToLongFunction<M> headExtractor;
+
+    private final HeadIndexedTable<Entry<C, M>> table;
+
+    /**
+     * middlewares applied to every head, outside of per head middlewares
+     */
+    private final List<HandlerMiddleware<C, M>> commonMiddlewares = new ArrayList<>();
+
+    /**
+     * handle messages whose head is not registered, null to log and drop
+     */
+    private MessageHandler<C, M> defaultHandler;
+
+    /**
+     * @param headExtractor get head from message
+     * @param denseSize     heads less than denseSize are indexed by array
+     */
+    public MessageDispatcher(ToLongFunction<M> headExtractor, int denseSize) {
+        this.headExtractor = headExtractor;
+        this.table = new HeadIndexedTable<>(denseSize);
+    }
+
+    public static <C, B> MessageDispatcher<C, ClientMessage<B>> forClientMessage() {
+        return new MessageDispatcher<>(ClientMessage::getHead, DEFAULT_DENSE_SIZE);
+    }
+
+    public static <C, H, B> MessageDispatcher<C, ProxyMessage<H, B>> forProxyMessage() {
+        return new MessageDispatcher<>(message -> message.clientMessage().getHead(), DEFAULT_DENSE_SIZE);
+    }
+
+    /**
+     * register handler for a head
+     *
+     * @param head        message head
+     * @param handler     handler
+     * @param middlewares per head middlewares, the first one is the outermost
+     * @return this
+     */
+    @SafeVarargs
+    public final MessageDispatcher<C, M> register(long head, MessageHandler<C, M> handler, HandlerMiddleware<C, M>... middlewares) {
+        if (table.get(head) != null) {
+            throw new IllegalStateException("handler already registered for head " + head);
+        }
+        Entry<C, M> entry = new Entry<>(head, handler);
+        for (HandlerMiddleware<C, M> middleware : middlewares) {
+            entry.middlewares.add(middleware);
+        }
+        entry.compose(commonMiddlewares);
+        table.put(head, entry);
+        return this;
+    }
+
+    /**
+     * add middleware to a registered head, it becomes the innermost one
+     *
+     * @param head       message head
+     * @param middleware middleware
+     * @return this
+     */
+    public MessageDispatcher<C, M> addMiddleware(long head, HandlerMiddleware<C, M> middleware) {
+        Entry<C, M> entry = table.get(head);
+        if (entry == null) {
+            throw new IllegalStateException("no handler registered for head " + head);
+        }
+        entry.middlewares.add(middleware);
+        entry.compose(commonMiddlewares);
+        return this;
+    }
+
+    /**
+     * add middleware applied to all heads, must be called before register
+     *
+     * @param middleware middleware
+     * @return this
+     */
+    public MessageDispatcher<C, M> addCommonMiddleware(HandlerMiddleware<C, M> middleware) {
+        if (table.size() > 0) {
+            throw new IllegalStateException("common middleware must be added before register handlers");
+        }
+        commonMiddlewares.add(middleware);
+        return this;
+    }
+
+    public MessageDispatcher<C, M> setDefaultHandler(MessageHandler<C, M> defaultHandler) {
+        this.defaultHandler = defaultHandler;
+        return this;
+    }
+
+    public MessageDispatcher<C, M> unregister(long head) {
+        table.remove(head);
+        return this;
+    }
+
+    public boolean isRegistered(long head) {
+        return table.get(head) != null;
+    }
+
+    /**
+     * dispatch message to the handler of its head
+     *
+     * @param channel the channel which receive the message
+     * @param message the message
+     * @return false if neither head handler nor default handler found
+     */
+    public boolean dispatch(C channel, M message) {
+        long head = headExtractor.applyAsLong(message);
+        Entry<C, M> entry = table.get(head);
+        if (entry != null) {
+            entry.chain.handle(channel, message);
+            return true;
+        }
+        if (defaultHandler != null) {
+            defaultHandler.handle(channel, message);
+            return true;
+        }
+        if (logger.isWarnEnabled()) {
+            logger.warn("no handler for message head:{} from {}", head, channel);
+        }
+        return false;
+    }
+
+    private static final class Entry<C, M> {
+        private final long head;
+        private final MessageHandler<C, M> handler;
+        private final List<HandlerMiddleware<C, M>> middlewares = new ArrayList<>();
+        private MessageHandler<C, M> chain;
+
+        Entry(long head, MessageHandler<C, M> handler) {
+            this.head = head;
+            this.handler = handler;
+        }
+
+        void compose(List<HandlerMiddleware<C, M>> commonMiddlewares) {
+            MessageHandler<C, M> next = handler;
+            for (int i = middlewares.size() - 1; i >= 0; i--) {
+                next = wrap(middlewares.get(i), next);
+            }
+            for (int i = commonMiddlewares.size() - 1; i >= 0; i--) {
+                next = wrap(commonMiddlewares.get(i), next);
+            }
+            chain = next;
+        }
+
+        private MessageHandler<C, M> wrap(HandlerMiddleware<C, M> middleware, MessageHandler<C, M> next) {
+            return (channel, message) -> middleware.handle(head, channel, message, next);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.dispatch;
+
+/**
+ * handler for messages of one head
+ *
+ * @param <C> channel type
+ * @param <M> message type, ClientMessage or ProxyMessage
+ */
+@FunctionalInterface
+public interface MessageHandler<C, M> {
+
+    /**
+     * called on the thread calling MessageDispatcher.dispatch, normally the channel eventLoop
+     *
+     * @param channel the channel which receive the message
+     * @param message the message, it is released after handle returned unless retained
+     */
+    void handle(C channel, M message);
+}
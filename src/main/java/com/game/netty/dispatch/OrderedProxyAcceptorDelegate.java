@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.dispatch;
+
+import com.game.netty.ChannelEvent;
+import com.game.netty.proxy.DefaultProxyHead;
+import com.game.netty.proxy.ProxyMessage;
+import com.game.netty.proxy.acceptor.ProxyAcceptedChannel;
+import com.game.netty.proxy.acceptor.ProxyAcceptorDelegate;
+
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * proxy acceptor delegate which moves message handling from eventLoop to a {@link KeyedSerialExecutor},
+ * messages of the same key (user or session) are handled in receive order, messages of different keys in parallel.
+ * <p>
+ * The wrapped delegate gets messages on worker threads, it doesn't release them, as before.
+ * Status and exception events are passed to it on eventLoop directly, so they are not ordered with pending messages.
+ * A message without key is ordered by the channel it comes from.
+ *
+ * @param <H> proxy head type
+ * @param <B> message body type
+ */
+public class OrderedProxyAcceptorDelegate<H, B> implements ProxyAcceptorDelegate<H, B> {
+
+    private final ProxyAcceptorDelegate<H, B> delegate;
+
+    private final Function<H, Object> keyExtractor;
+
+    private final KeyedSerialExecutor<Object> executor;
+
+    /**
+     * @param delegate        the delegate handling messages on worker threads
+     * @param keyExtractor    get order key from proxy head, may return null
+     * @param workers         shared worker executor
+     * @param mailboxCapacity max pending messages per key
+     * @param overflowPolicy  what to do when a key has too many pending messages, dropped messages are released
+     */
+    public OrderedProxyAcceptorDelegate(ProxyAcceptorDelegate<H, B> delegate, Function<H, Object> keyExtractor,
+                                        Executor workers, int mailboxCapacity, KeyedSerialExecutor.OverflowPolicy overflowPolicy) {
+        this.delegate = delegate;
+        this.keyExtractor = keyExtractor;
+        this.executor = new KeyedSerialExecutor<>(workers, mailboxCapacity, KeyedSerialExecutor.DEFAULT_MAX_BATCH, overflowPolicy,
+                task -> ((MessageTask<?, ?>) task).message.release());
+    }
+
+    /**
+     * order by user id if logged in, else by session id
+     *
+     * @return key extractor for DefaultProxyHead
+     */
+    public static Function<DefaultProxyHead, Object> byUserOrSession() {
+        return head -> head.getUserId() != 0 ? (Object) head.getUserId() : head.getSessionId();
+    }
+
+    public KeyedSerialExecutor<Object> getExecutor() {
+        return executor;
+    }
+
+    @Override
+    public void onAcceptorStarted() {
+        delegate.onAcceptorStarted();
+    }
+
+    @Override
+    public void onChannelStatusEvent(ProxyAcceptedChannel channel, ChannelEvent event) {
+        delegate.onChannelStatusEvent(channel, event);
+    }
+
+    @Override
+    public void onChannelExceptionCaught(ProxyAcceptedChannel channel, Throwable e) {
+        delegate.onChannelExceptionCaught(channel, e);
+    }
+
+    @Override
+    public void onChannelMessage(ProxyAcceptedChannel channel, ProxyMessage<H, B> message) {
+        H head = message.proxyHeader();
+        Object key = head == null ? null : keyExtractor.apply(head);
+        //the acceptor releases the message after this call returns
+        executor.submit(key != null ? key : channel, new MessageTask<>(delegate, channel, message.retain()));
+    }
+
+    private static final class MessageTask<H, B> implements Runnable {
+        private final ProxyAcceptorDelegate<H, B> delegate;
+        private final ProxyAcceptedChannel channel;
+        private final ProxyMessage<H, B> message;
+
+        MessageTask(ProxyAcceptorDelegate<H, B> delegate, ProxyAcceptedChannel channel, ProxyMessage<H, B> message) {
+            this.delegate = delegate;
+            this.channel = channel;
+            this.message = message;
+        }
+
+        @Override
+        public void run() {
+            try {
+                delegate.onChannelMessage(channel, message);
+            } finally {
+                message.release();
+            }
+        }
+    }
+}
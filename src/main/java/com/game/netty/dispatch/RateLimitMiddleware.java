@@ -0,0 +1,98 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.dispatch;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * middleware limiting message rate of a head, messages over limit are dropped.
+ * <p>
+ * The limiter uses GCRA(a lock free form of token bucket), the rate is shared by all channels calling this instance.
+ *
+ * @param <C> channel type
+ * @param <M> message type
+ */
+public class RateLimitMiddleware<C, M> implements HandlerMiddleware<C, M> {
+
+    /**
+     * nanos between two permits
+     */
+    private final long intervalNanos;
+
+    /**
+     * how far theoretical arrival time can be ahead of now
+     */
+    private final long burstNanos;
+
+    /**
+     * theoretical arrival time of next permit
+     */
+    private final AtomicLong arrivalNanos = new AtomicLong(System.nanoTime());
+
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * called with dropped messages, may be null
+     */
+    private final MessageHandler<C, M> rejectHandler;
+
+    /**
+     * @param permitsPerSecond allowed message rate
+     * @param burst            max messages allowed in a burst
+     * @param rejectHandler    called with dropped messages, may be null
+     */
+    public RateLimitMiddleware(int permitsPerSecond, int burst, MessageHandler<C, M> rejectHandler) {
+        if (permitsPerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond and burst must > 0");
+        }
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+        this.burstNanos = intervalNanos * burst;
+        this.rejectHandler = rejectHandler;
+    }
+
+    @Override
+    public void handle(long head, C channel, M message, MessageHandler<C, M> next) {
+        if (tryAcquire()) {
+            next.handle(channel, message);
+        } else {
+            rejected.increment();
+            if (rejectHandler != null) {
+                rejectHandler.handle(channel, message);
+            }
+        }
+    }
+
+    private boolean tryAcquire() {
+        long now = System.nanoTime();
+        for (; ; ) {
+            long arrival = arrivalNanos.get();
+            long start = arrival - now < 0 ? now : arrival;
+            if (start - now >= burstNanos) {
+                return false;
+            }
+            if (arrivalNanos.compareAndSet(arrival, start + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
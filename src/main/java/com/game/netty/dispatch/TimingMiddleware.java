@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.dispatch;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * middleware to measure handler cost, use one instance for each head to get per head statistics
+ *
+ * @param <C> channel type
+ * @param <M> message type
+ */
+public class TimingMiddleware<C, M> implements HandlerMiddleware<C, M> {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    @Override
+    public void handle(long head, C channel, M message, MessageHandler<C, M> next) {
+        long start = System.nanoTime();
+        try {
+            next.handle(channel, message);
+        } finally {
+            long cost = System.nanoTime() - start;
+            count.increment();
+            totalNanos.add(cost);
+            long max;
+            while (cost > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, cost)) {
+                //retry
+            }
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public long getAverageNanos() {
+        long c = count.sum();
+        return c == 0 ? 0 : totalNanos.sum() / c;
+    }
+
+    /**
+     * reset statistics, normally after they are reported
+     */
+    public void reset() {
+        count.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+    }
+}
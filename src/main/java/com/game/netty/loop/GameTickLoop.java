@@ -0,0 +1,266 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.loop;
+
+import com.game.netty.GameChannel;
+import com.game.netty.util.LatencyHistogram;
+import io.netty.channel.Channel;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A single thread game loop, runs tick callbacks at a fixed rate, then flushes all output of the tick at once.
+ * <p>
+ * Tick deadlines are computed from the start time, not from the end of the previous tick, so the rate doesn't drift;
+ * a tick longer than the interval is an overrun, the next tick starts immediately,
+ * and ticks which can't be caught up are skipped rather than run in a burst.
+ * <p>
+ * Output during a tick is collected by {@link #write(Channel, Object)}, at tick end each channel gets one eventLoop task
+ * which writes its messages and flushes once. Channels written by GameChannel API can be registered by
+ * {@link #flushAtTickEnd(GameChannel)}. Set autoFlushIntervalMillis of these channels to 0, the loop flushes them.
+ * <p>
+ * Input usually comes from an {@link com.game.netty.dispatch.InboxProxyAcceptorDelegate}, drain it in the first callback.
+ */
+public class GameTickLoop {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(GameTickLoop.class);
+
+    /**
+     * called once per tick on loop thread
+     */
+    @FunctionalInterface
+    public interface TickCallback {
+        /**
+         * @param tick       tick number, starts from 0, skipped ticks are not numbered
+         * @param deltaNanos nanos since the previous tick started
+         */
+        void onTick(long tick, long deltaNanos);
+    }
+
+    private final long intervalNanos;
+
+    private final List<TickCallback> callbacks = new CopyOnWriteArrayList<>();
+
+    private final Thread thread;
+
+    private volatile boolean running;
+
+    /**
+     * messages written in current tick, only accessed by loop thread
+     */
+    private final Map<Channel, List<Object>> pendingWrites = new IdentityHashMap<>();
+
+    /**
+     * channels to flush at tick end, only accessed by loop thread
+     */
+    private final Map<Channel, Boolean> pendingFlushes = new IdentityHashMap<>();
+
+    private final LatencyHistogram tickDuration = new LatencyHistogram();
+    private final LongAdder ticks = new LongAdder();
+    private final LongAdder overruns = new LongAdder();
+    private final LongAdder skippedTicks = new LongAdder();
+
+    /**
+     * @param name           loop thread name
+     * @param intervalMillis tick interval
+     */
+    public GameTickLoop(String name, long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("intervalMillis must > 0");
+        }
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.thread = new DefaultThreadFactory(name).newThread(this::run);
+    }
+
+    /**
+     * add a callback, callbacks run in adding order, can be called on any thread
+     *
+     * @param callback callback
+     * @return this
+     */
+    public GameTickLoop addTickCallback(TickCallback callback) {
+        callbacks.add(callback);
+        return this;
+    }
+
+    public GameTickLoop removeTickCallback(TickCallback callback) {
+        callbacks.remove(callback);
+        return this;
+    }
+
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * stop after current tick, output of the tick is still flushed
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    public void awaitTermination() throws InterruptedException {
+        thread.join();
+    }
+
+    public boolean inLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * write a message at tick end, messages of a channel are written in order and flushed once, only called on loop thread
+     *
+     * @param channel channel
+     * @param message message, Attention: ownership transfer happened here
+     */
+    public void write(Channel channel, Object message) {
+        assertInLoop();
+        pendingWrites.computeIfAbsent(channel, c -> new ArrayList<>()).add(message);
+    }
+
+    /**
+     * flush a channel at tick end, for messages written by GameChannel API without flush, only called on loop thread
+     *
+     * @param channel channel
+     */
+    public void flushAtTickEnd(GameChannel channel) {
+        assertInLoop();
+        Channel ch = channel.getChannel();
+        if (ch != null) {
+            pendingFlushes.put(ch, Boolean.TRUE);
+        }
+    }
+
+    private void assertInLoop() {
+        if (!inLoop()) {
+            throw new IllegalStateException("not in game loop thread");
+        }
+    }
+
+    private void run() {
+        long start = System.nanoTime();
+        long deadline = start;
+        long lastTickStart = start;
+        long tick = 0;
+        while (running) {
+            long now = System.nanoTime();
+            if (now - deadline < 0) {
+                LockSupport.parkNanos(deadline - now);
+                continue;
+            }
+            runTick(tick++, now - lastTickStart);
+            lastTickStart = now;
+            deadline += intervalNanos;
+
+            long end = System.nanoTime();
+            long duration = end - now;
+            tickDuration.recordNanos(duration);
+            ticks.increment();
+            if (duration > intervalNanos) {
+                overruns.increment();
+            }
+            long behind = end - deadline;
+            if (behind >= intervalNanos) {
+                //keep the phase, drop the ticks missed
+                long missed = behind / intervalNanos;
+                skippedTicks.add(missed);
+                deadline += missed * intervalNanos;
+            }
+        }
+    }
+
+    private void runTick(long tick, long deltaNanos) {
+        for (TickCallback callback : callbacks) {
+            try {
+                callback.onTick(tick, deltaNanos);
+            } catch (Throwable e) {
+                logger.warn("tick callback error", e);
+            }
+        }
+        flushTick();
+    }
+
+    private void flushTick() {
+        for (Map.Entry<Channel, List<Object>> entry : pendingWrites.entrySet()) {
+            Channel channel = entry.getKey();
+            List<Object> messages = entry.getValue();
+            pendingFlushes.remove(channel);
+            try {
+                channel.eventLoop().execute(() -> {
+                    for (int i = 0, n = messages.size(); i < n; i++) {
+                        channel.write(messages.get(i));
+                    }
+                    channel.flush();
+                });
+            } catch (RejectedExecutionException e) {
+                //eventLoop shutting down, the messages would never be written
+                for (int i = 0, n = messages.size(); i < n; i++) {
+                    ReferenceCountUtil.release(messages.get(i));
+                }
+                logger.warn("eventLoop rejected tick output of {}, drop {} messages", channel, messages.size());
+            }
+        }
+        pendingWrites.clear();
+        for (Channel channel : pendingFlushes.keySet()) {
+            channel.flush();
+        }
+        pendingFlushes.clear();
+    }
+
+    public long getIntervalNanos() {
+        return intervalNanos;
+    }
+
+    /**
+     * @return tick duration histogram, callbacks and flush included
+     */
+    public LatencyHistogram getTickDuration() {
+        return tickDuration;
+    }
+
+    public long getTickCount() {
+        return ticks.sum();
+    }
+
+    /**
+     * @return ticks longer than the interval
+     */
+    public long getOverrunCount() {
+        return overruns.sum();
+    }
+
+    /**
+     * @return ticks not run because the loop fell behind more than one interval
+     */
+    public long getSkippedTickCount() {
+        return skippedTicks.sum();
+    }
+}
@@ -30,7 +30,6 @@ public class DefaultProxyHead {
     private final String ip;
     private final long userId;
 
-
     public DefaultProxyHead() {
         this.sessionId = null;
         this.ip = null;
@@ -61,6 +60,19 @@ public class DefaultProxyHead {
         return userId;
     }
 
+    /**
+     * a head of the same session with another user id
+     *
+     * @param userId user id
+     * @return new head, or this if user id is the same
+     */
+    public DefaultProxyHead withUserId(long userId) {
+        if (userId == this.userId) {
+            return this;
+        }
+        return new DefaultProxyHead(sessionId, ip, userId);
+    }
+
     @Override
     public String toString() {
         return "DefaultProxyHead{" +
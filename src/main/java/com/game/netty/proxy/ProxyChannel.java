@@ -18,28 +18,190 @@ package com.game.netty.proxy;
 
 import com.game.netty.GameChannel;
 import com.game.netty.config.AbstractChannelConfig;
+import com.game.netty.proxy.codec.ProxyHeartbeatHandler;
+import com.game.netty.proxy.codec.ProxyMessageEncoder;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * a proxy related channel between a proxy and a logic server
  */
 public abstract class ProxyChannel extends GameChannel {
 
+    private final ProxyLinkStats linkStats = new ProxyLinkStats();
+
+    private final ProxyRequestTable requestTable = new ProxyRequestTable(ProxyRequestTable.DEFAULT_MAX_PENDING, linkStats);
+
+    /**
+     * encoder of current channel, it may keep a pending batch
+     */
+    private ProxyMessageEncoder<?, ?> encoder;
+
     public ProxyChannel(AbstractChannelConfig config) {
         super(config);
     }
 
+    @Override
+    public void onConnected(Channel channel) {
+        this.encoder = channel.pipeline().get(ProxyMessageEncoder.class);
+        ProxyHeartbeatHandler heartbeatHandler = channel.pipeline().get(ProxyHeartbeatHandler.class);
+        if (heartbeatHandler != null) {
+            heartbeatHandler.setLinkStats(linkStats);
+        }
+        super.onConnected(channel);
+    }
+
+    @Override
+    protected boolean hasPendingWrites() {
+        ProxyMessageEncoder<?, ?> encoder = this.encoder;
+        return super.hasPendingWrites() || (encoder != null && encoder.hasPendingBatch());
+    }
+
+    @Override
+    public long pendingWriteBytes() {
+        ProxyMessageEncoder<?, ?> encoder = this.encoder;
+        return super.pendingWriteBytes() + (encoder == null ? 0 : encoder.pendingBatchBytes());
+    }
+
+    /**
+     * @return load feedback of this link, kept across reconnect, also heartbeat rtt and clock offset
+     */
+    public final ProxyLinkStats getLinkStats() {
+        return linkStats;
+    }
+
     public final ChannelFuture write(ProxyMessage<?, ?> message) {
+        return writeMessage(message, false);
+    }
+
+    public final ChannelFuture writeAndFlush(ProxyMessage<?, ?> message) {
+        return writeMessage(message, true);
+    }
+
+    /**
+     * write a ProxyMessage, a subclass may hold the message while disconnected
+     *
+     * @param message message, Attention: ownership transfer happened here
+     * @param flush   flush after write
+     * @return write future, null if not connected
+     */
+    protected ChannelFuture writeMessage(ProxyMessage<?, ?> message, boolean flush) {
+        Channel channel = this.channel;
+        if (channel != null) {
+            return flush ? channel.writeAndFlush(message) : channel.write(message);
+        }
+        return null;
+    }
+
+    /**
+     * send a request, many requests can be pending on one channel, the response is matched by correlation id.
+     * <p>
+     * The returned future completes with the response on channel eventLoop, the consumer must release the response;
+     * it fails with TimeoutException on timeout, or with the write failure.
+     *
+     * @param message       request, Attention: ownership transfer happened here
+     * @param timeoutMillis timeout
+     * @return response future
+     */
+    public final CompletableFuture<ProxyMessage<?, ?>> request(ProxyMessage<?, ?> message, long timeoutMillis) {
+        Channel channel = this.channel;
+        if (channel == null) {
+            message.release();
+            return failedFuture(new ClosedChannelException());
+        }
+        ProxyRequestTable.PendingRequest pending = requestTable.register(message.clientMessage().getHead(), timeoutMillis);
+        if (pending == null) {
+            message.release();
+            return failedFuture(new IllegalStateException("too many pending requests: " + requestTable.getMaxPending()));
+        }
+        int correlationId = pending.getCorrelationId();
+        channel.writeAndFlush(message.markRequest(correlationId)).addListener(future -> {
+            if (!future.isSuccess()) {
+                requestTable.fail(correlationId, future.cause());
+            }
+        });
+        return pending;
+    }
+
+    /**
+     * send the response of a request
+     *
+     * @param request  request received
+     * @param response response, Attention: ownership transfer happened here
+     * @return write future, null if not connected
+     */
+    public final ChannelFuture reply(ProxyMessage<?, ?> request, ProxyMessage<?, ?> response) {
+        if (!request.isRequest()) {
+            response.release();
+            throw new IllegalArgumentException("not a request");
+        }
+        return writeAndFlush(response.markResponse(request.correlationId()));
+    }
+
+    /**
+     * called by channel handler when a response is received
+     *
+     * @param response response, Attention: ownership transfer happened here
+     * @return whether a pending request matched
+     */
+    public final boolean completeRequest(ProxyMessage<?, ?> response) {
+        return requestTable.complete(response);
+    }
+
+    /**
+     * called by channel handler when the channel is inactive
+     */
+    public void onDisconnected() {
+        requestTable.failAll(new ClosedChannelException());
+    }
+
+    /**
+     * @return pending requests and latency histograms by request type
+     */
+    public final ProxyRequestTable getRequestTable() {
+        return requestTable;
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(Throwable cause) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(cause);
+        return future;
+    }
+
+    /**
+     * write one message to many clients, the receiving proxy fans it out
+     *
+     * @param message multicast message, Attention: ownership transfer happened here
+     * @return write future, null if not connected
+     */
+    public final ChannelFuture write(ProxyMulticastMessage<?> message) {
         if (channel != null) {
             return channel.write(message);
         }
         return null;
     }
 
-    public final ChannelFuture writeAndFlush(ProxyMessage<?, ?> message) {
+    public final ChannelFuture writeAndFlush(ProxyMulticastMessage<?> message) {
         if (channel != null) {
             return channel.writeAndFlush(message);
         }
         return null;
     }
+
+    /**
+     * tell the peer a session is closed, so the session state kept by a stateful ProxyHeaderCodec can be dropped.
+     * The unbind is ordered after messages written before, and is flushed with them.
+     *
+     * @param sessionId closed session
+     * @return write future, null if not connected
+     */
+    public final ChannelFuture unbindSession(String sessionId) {
+        if (channel != null) {
+            return channel.writeAndFlush(new ProxySessionUnbind(sessionId));
+        }
+        return null;
+    }
 }
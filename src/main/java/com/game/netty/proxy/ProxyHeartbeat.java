@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.proxy;
+
+/**
+ * A ping or pong on the proxy link, handled by {@link com.game.netty.proxy.codec.ProxyHeartbeatHandler}, never reaches the delegate.
+ * <p>
+ * A pong echoes the origin times of its ping and carries the wall clock of the peer when the ping arrived,
+ * so the pinging side gets rtt = now - originNanos, and clock offset = peerWallMicros - (originWallMicros + nowWallMicros) / 2.
+ */
+public final class ProxyHeartbeat {
+
+    private final boolean pong;
+    private final long originNanos;
+    private final long originWallMicros;
+    private final long peerWallMicros;
+
+    private ProxyHeartbeat(boolean pong, long originNanos, long originWallMicros, long peerWallMicros) {
+        this.pong = pong;
+        this.originNanos = originNanos;
+        this.originWallMicros = originWallMicros;
+        this.peerWallMicros = peerWallMicros;
+    }
+
+    public static ProxyHeartbeat ping(long originNanos, long originWallMicros) {
+        return new ProxyHeartbeat(false, originNanos, originWallMicros, 0);
+    }
+
+    public static ProxyHeartbeat pong(long originNanos, long originWallMicros, long peerWallMicros) {
+        return new ProxyHeartbeat(true, originNanos, originWallMicros, peerWallMicros);
+    }
+
+    public boolean isPong() {
+        return pong;
+    }
+
+    public long getOriginNanos() {
+        return originNanos;
+    }
+
+    public long getOriginWallMicros() {
+        return originWallMicros;
+    }
+
+    public long getPeerWallMicros() {
+        return peerWallMicros;
+    }
+
+    /**
+     * @param peerWallMicros wall clock when the ping arrives
+     * @return the pong to this ping
+     */
+    public ProxyHeartbeat toPong(long peerWallMicros) {
+        return pong(originNanos, originWallMicros, peerWallMicros);
+    }
+
+    @Override
+    public String toString() {
+        return "ProxyHeartbeat{" +
+                "pong=" + pong +
+                ", originNanos=" + originNanos +
+                ", originWallMicros=" + originWallMicros +
+                ", peerWallMicros=" + peerWallMicros +
+                '}';
+    }
+}
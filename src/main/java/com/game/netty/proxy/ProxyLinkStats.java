@@ -0,0 +1,141 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.proxy;
+
+import com.game.netty.util.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Load feedback of a proxy link: smoothed RTT and in-flight request count, read by balancers.
+ * <p>
+ * RTT samples come from link heartbeats and from responses of {@link ProxyChannel#request}, smoothed like TCP SRTT (alpha = 1/8);
+ * a response sample includes the processing time of the peer.
+ * Heartbeats also keep a RTT histogram and the estimated clock offset of the peer, see {@link #recordHeartbeat(long, long)}.
+ * All methods are thread safe and lock free.
+ */
+public final class ProxyLinkStats {
+
+    private static final AtomicLongFieldUpdater<ProxyLinkStats> SMOOTHED_RTT_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(ProxyLinkStats.class, "smoothedRttNanos");
+
+    private static final AtomicIntegerFieldUpdater<ProxyLinkStats> IN_FLIGHT_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(ProxyLinkStats.class, "inFlight");
+
+    private static final int SMOOTH_SHIFT = 3;
+
+    /**
+     * smoothed rtt, 0 before first sample
+     */
+    private volatile long smoothedRttNanos;
+
+    private volatile long lastRttNanos;
+
+    private volatile int inFlight;
+
+    private final LatencyHistogram heartbeatRtt = new LatencyHistogram();
+
+    /**
+     * smoothed clock offset of peer, peer wall clock - local wall clock
+     */
+    private volatile long clockOffsetMicros;
+
+    /**
+     * nanoTime of last heartbeat, 0 if none
+     */
+    private volatile long lastHeartbeatNanos;
+
+    /**
+     * @param rttNanos a rtt sample
+     */
+    public void recordRtt(long rttNanos) {
+        if (rttNanos < 0) {
+            return;
+        }
+        lastRttNanos = rttNanos;
+        for (; ; ) {
+            long current = smoothedRttNanos;
+            long next = current == 0 ? rttNanos : current + ((rttNanos - current) >> SMOOTH_SHIFT);
+            if (SMOOTHED_RTT_UPDATER.compareAndSet(this, current, Math.max(next, 1))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * a pong is received, called on channel eventLoop
+     *
+     * @param rttNanos          rtt of the ping
+     * @param clockOffsetMicros offset sample, peer wall clock - local wall clock
+     */
+    public void recordHeartbeat(long rttNanos, long clockOffsetMicros) {
+        recordRtt(rttNanos);
+        heartbeatRtt.recordNanos(rttNanos);
+        long current = this.clockOffsetMicros;
+        this.clockOffsetMicros = lastHeartbeatNanos == 0 ? clockOffsetMicros : current + ((clockOffsetMicros - current) >> SMOOTH_SHIFT);
+        lastHeartbeatNanos = System.nanoTime();
+    }
+
+    public LatencyHistogram getHeartbeatRttHistogram() {
+        return heartbeatRtt;
+    }
+
+    public long getClockOffsetMicros() {
+        return clockOffsetMicros;
+    }
+
+    public long getLastHeartbeatNanos() {
+        return lastHeartbeatNanos;
+    }
+
+    public long getSmoothedRttNanos() {
+        return smoothedRttNanos;
+    }
+
+    public long getLastRttNanos() {
+        return lastRttNanos;
+    }
+
+    /**
+     * a request is sent and waiting for response
+     */
+    public void incrementInFlight() {
+        IN_FLIGHT_UPDATER.incrementAndGet(this);
+    }
+
+    /**
+     * a request is completed, by response, timeout or failure
+     */
+    public void decrementInFlight() {
+        IN_FLIGHT_UPDATER.decrementAndGet(this);
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    @Override
+    public String toString() {
+        return "ProxyLinkStats{" +
+                "smoothedRttNanos=" + smoothedRttNanos +
+                ", lastRttNanos=" + lastRttNanos +
+                ", inFlight=" + inFlight +
+                ", clockOffsetMicros=" + clockOffsetMicros +
+                '}';
+    }
+}
@@ -17,7 +17,14 @@
 package com.game.netty.proxy;
 
 import com.game.netty.client.ClientMessage;
+import io.netty.util.IllegalReferenceCountException;
+import io.netty.util.Recycler;
 import io.netty.util.ReferenceCounted;
+import io.netty.util.ResourceLeakDetector;
+import io.netty.util.ResourceLeakDetectorFactory;
+import io.netty.util.ResourceLeakTracker;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * A message between proxy and logic server.
@@ -25,15 +32,53 @@ import io.netty.util.ReferenceCounted;
  * ProxyMessage is composed by two parts: the raw ClientMessage and a ProxyHead appended by proxy or logic server.
  * <p>
  * Using ProxyHead, Proxy can attach some information about the current client channel, which are probably needed by logic server.
+ * <p>
+ * A ProxyMessage created by {@link #newInstance(Object, ClientMessage)} is pooled, see {@link ClientMessage} for the contract.
+ * <p>
+ * A message may carry a correlation id, it is then a request or a response, see {@link ProxyChannel#request}.
  *
  * @param <H> ProxyHead type
  * @param <B> ClientMessage Body type
  */
 public class ProxyMessage<H, B> implements ReferenceCounted {
 
-    private final ClientMessage<B> clientMessage;
-    private final H proxyHeader;
+    private static final Recycler<ProxyMessage<?, ?>> RECYCLER = new Recycler<ProxyMessage<?, ?>>() {
+        @Override
+        protected ProxyMessage<?, ?> newObject(Handle<ProxyMessage<?, ?>> handle) {
+            return new ProxyMessage<>(handle);
+        }
+    };
+
+    @SuppressWarnings("rawtypes")
+    private static final ResourceLeakDetector<ProxyMessage> leakDetector =
+            ResourceLeakDetectorFactory.instance().newResourceLeakDetector(ProxyMessage.class);
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<ProxyMessage> REF_CNT_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(ProxyMessage.class, "pooledRefCnt");
+
+    private ClientMessage<B> clientMessage;
+    private H proxyHeader;
+
+    /**
+     * recycler handle, null if the message is not pooled
+     */
+    private final Recycler.Handle<ProxyMessage<?, ?>> recyclerHandle;
+
+    /**
+     * reference count of a pooled message, 0 means it has been recycled
+     */
+    private volatile int pooledRefCnt;
+
+    @SuppressWarnings("rawtypes")
+    private ResourceLeakTracker<ProxyMessage> leak;
+
+    private static final byte NOT_CORRELATED = 0;
+    private static final byte REQUEST = 1;
+    private static final byte RESPONSE = 2;
 
+    private byte correlationType;
+    private int correlationId;
 
     /**
      * @param header header data
@@ -42,52 +87,181 @@ public class ProxyMessage<H, B> implements ReferenceCounted {
     public ProxyMessage(H header, ClientMessage<B> clientMessage) {
         this.clientMessage = clientMessage;
         this.proxyHeader = header;
+        this.recyclerHandle = null;
+    }
+
+    private ProxyMessage(Recycler.Handle<ProxyMessage<?, ?>> recyclerHandle) {
+        this.recyclerHandle = recyclerHandle;
+    }
+
+    /**
+     * get a pooled message, the caller owns one reference, the message is recycled by the last release()
+     *
+     * @param header        header data
+     * @param clientMessage client message, Attention: ownership transfer happened here
+     * @param <H>           proxy head type
+     * @param <B>           body type
+     * @return pooled message
+     */
+    @SuppressWarnings("unchecked")
+    public static <H, B> ProxyMessage<H, B> newInstance(H header, ClientMessage<B> clientMessage) {
+        ProxyMessage<H, B> message = (ProxyMessage<H, B>) RECYCLER.get();
+        message.proxyHeader = header;
+        message.clientMessage = clientMessage;
+        message.pooledRefCnt = 1;
+        message.leak = leakDetector.track(message);
+        return message;
+    }
+
+    public boolean isPooled() {
+        return recyclerHandle != null;
     }
 
     public ClientMessage<B> clientMessage() {
+        ensureAccessible();
         return clientMessage;
     }
 
     public H proxyHeader() {
+        ensureAccessible();
         return proxyHeader;
     }
 
+    /**
+     * @return correlation id, 0 if the message is neither a request nor a response
+     */
+    public int correlationId() {
+        return correlationId;
+    }
+
+    public boolean isRequest() {
+        return correlationType == REQUEST;
+    }
+
+    public boolean isResponse() {
+        return correlationType == RESPONSE;
+    }
+
+    /**
+     * mark the message as a request, normally called by {@link ProxyChannel#request} or decoder
+     *
+     * @param correlationId correlation id, not 0
+     * @return this
+     */
+    public ProxyMessage<H, B> markRequest(int correlationId) {
+        this.correlationType = REQUEST;
+        this.correlationId = correlationId;
+        return this;
+    }
+
+    /**
+     * mark the message as a response, normally called by {@link ProxyChannel#reply} or decoder
+     *
+     * @param correlationId correlation id of the request
+     * @return this
+     */
+    public ProxyMessage<H, B> markResponse(int correlationId) {
+        this.correlationType = RESPONSE;
+        this.correlationId = correlationId;
+        return this;
+    }
+
     @Override
     public ProxyMessage<H, B> retain() {
-        clientMessage.retain();
-        return this;
+        return retain(1);
     }
 
     @Override
     public ProxyMessage<H, B> retain(int increment) {
+        if (recyclerHandle != null) {
+            retainPooled(increment);
+        }
         clientMessage.retain(increment);
         return this;
     }
 
     @Override
     public ProxyMessage<H, B> touch() {
-        clientMessage.touch();
-        return this;
+        return touch(null);
     }
 
     @Override
     public ProxyMessage<H, B> touch(Object hint) {
+        if (leak != null) {
+            leak.record(hint);
+        }
         clientMessage.touch(hint);
         return this;
     }
 
     @Override
     public int refCnt() {
+        if (recyclerHandle != null) {
+            return pooledRefCnt;
+        }
         return clientMessage.refCnt();
     }
 
     @Override
     public boolean release() {
-        return clientMessage.release();
+        return release(1);
     }
 
     @Override
     public boolean release(int decrement) {
-        return clientMessage.release(decrement);
+        if (recyclerHandle == null) {
+            return clientMessage.release(decrement);
+        }
+        boolean deallocate = releasePooled(decrement);
+        clientMessage.release(decrement);
+        if (deallocate) {
+            recycle();
+        }
+        return deallocate;
+    }
+
+    private void retainPooled(int increment) {
+        for (; ; ) {
+            int refCnt = pooledRefCnt;
+            if (refCnt <= 0 || refCnt + increment < refCnt) {
+                throw new IllegalReferenceCountException(refCnt, increment);
+            }
+            if (REF_CNT_UPDATER.compareAndSet(this, refCnt, refCnt + increment)) {
+                return;
+            }
+        }
+    }
+
+    private boolean releasePooled(int decrement) {
+        for (; ; ) {
+            int refCnt = pooledRefCnt;
+            if (refCnt < decrement || decrement <= 0) {
+                throw new IllegalReferenceCountException(refCnt, -decrement);
+            }
+            if (REF_CNT_UPDATER.compareAndSet(this, refCnt, refCnt - decrement)) {
+                return refCnt == decrement;
+            }
+        }
+    }
+
+    private void recycle() {
+        clientMessage = null;
+        proxyHeader = null;
+        correlationType = NOT_CORRELATED;
+        correlationId = 0;
+        if (leak != null) {
+            leak.close(this);
+            leak = null;
+        }
+        recyclerHandle.recycle(this);
+    }
+
+    /**
+     * catch use after recycle, the check only applies to pooled message
+     */
+    private void ensureAccessible() {
+        if (recyclerHandle != null && pooledRefCnt == 0) {
+            throw new IllegalReferenceCountException(0);
+        }
     }
 }
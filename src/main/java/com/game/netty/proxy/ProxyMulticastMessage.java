@@ -0,0 +1,125 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.proxy;
+
+import com.game.netty.client.ClientMessage;
+import io.netty.util.ReferenceCounted;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A message from logic server to many clients, the proxy fans it out, so the body crosses the proxy link once.
+ * <p>
+ * Targets are a list of session ids, or a group id which is resolved by proxy, or both; a client in both receives it once.
+ *
+ * @param <B> ClientMessage Body type
+ * @see com.game.netty.proxy.connector.ProxyConnector#initMulticast
+ */
+public class ProxyMulticastMessage<B> implements ReferenceCounted {
+
+    private final String groupId;
+    private final List<String> sessionIds;
+    private final ClientMessage<B> clientMessage;
+
+    /**
+     * @param sessionIds    target sessions
+     * @param clientMessage client message, Attention: ownership transfer happened here
+     */
+    public ProxyMulticastMessage(List<String> sessionIds, ClientMessage<B> clientMessage) {
+        this(null, sessionIds, clientMessage);
+    }
+
+    /**
+     * @param groupId       target group, resolved by proxy
+     * @param clientMessage client message, Attention: ownership transfer happened here
+     */
+    public ProxyMulticastMessage(String groupId, ClientMessage<B> clientMessage) {
+        this(groupId, Collections.emptyList(), clientMessage);
+    }
+
+    /**
+     * @param groupId       target group, may be null
+     * @param sessionIds    target sessions, may be empty
+     * @param clientMessage client message, Attention: ownership transfer happened here
+     */
+    public ProxyMulticastMessage(String groupId, List<String> sessionIds, ClientMessage<B> clientMessage) {
+        this.groupId = groupId;
+        this.sessionIds = sessionIds;
+        this.clientMessage = clientMessage;
+    }
+
+    public String groupId() {
+        return groupId;
+    }
+
+    public List<String> sessionIds() {
+        return sessionIds;
+    }
+
+    public ClientMessage<B> clientMessage() {
+        return clientMessage;
+    }
+
+    @Override
+    public int refCnt() {
+        return clientMessage.refCnt();
+    }
+
+    @Override
+    public ProxyMulticastMessage<B> retain() {
+        clientMessage.retain();
+        return this;
+    }
+
+    @Override
+    public ProxyMulticastMessage<B> retain(int increment) {
+        clientMessage.retain(increment);
+        return this;
+    }
+
+    @Override
+    public ProxyMulticastMessage<B> touch() {
+        clientMessage.touch();
+        return this;
+    }
+
+    @Override
+    public ProxyMulticastMessage<B> touch(Object hint) {
+        clientMessage.touch(hint);
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return clientMessage.release();
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return clientMessage.release(decrement);
+    }
+
+    @Override
+    public String toString() {
+        return "ProxyMulticastMessage{" +
+                "groupId='" + groupId + '\'' +
+                ", sessions=" + sessionIds.size() +
+                ", head=" + clientMessage.getHead() +
+                '}';
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.proxy;
+
+import com.game.netty.util.LatencyHistogram;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Pending requests of a ProxyChannel, matched with responses by correlation id.
+ * <p>
+ * The table is a fixed array of slots indexed by {@code correlationId & mask}, a request takes a free slot by CAS,
+ * and the response, timeout or failure which clears the slot by CAS completes the request, so each request completes once.
+ * Timeouts are driven by one HashedWheelTimer shared by all tables.
+ * <p>
+ * Latency of completed requests is recorded per request type, which is the client message head.
+ */
+public final class ProxyRequestTable {
+
+    public static final int DEFAULT_MAX_PENDING = 4096;
+
+    private static final class TimerHolder {
+        private static final Timer TIMER = new HashedWheelTimer(
+                new DefaultThreadFactory("proxy-request-timer", true), 10, TimeUnit.MILLISECONDS, 512);
+    }
+
+    private final AtomicReferenceArray<PendingRequest> slots;
+    private final int mask;
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    private final ProxyLinkStats linkStats;
+    private final Map<Long, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxPending max pending requests, rounded up to power of 2
+     * @param linkStats  in-flight count and response rtt samples are kept here
+     */
+    public ProxyRequestTable(int maxPending, ProxyLinkStats linkStats) {
+        if (maxPending <= 0 || maxPending > 1 << 24) {
+            throw new IllegalArgumentException("maxPending: " + maxPending);
+        }
+        int size = maxPending == 1 ? 1 : Integer.highestOneBit(maxPending - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.linkStats = linkStats;
+    }
+
+    /**
+     * take a slot for a new request
+     *
+     * @param requestType   request type for latency statistics
+     * @param timeoutMillis timeout, the future fails with TimeoutException after it
+     * @return pending request, or null if the table is full
+     */
+    public PendingRequest register(long requestType, long timeoutMillis) {
+        for (int i = 0; i <= mask; i++) {
+            int id = nextId.incrementAndGet();
+            if (id == 0) {
+                continue;
+            }
+            PendingRequest request = new PendingRequest(id, requestType);
+            if (slots.compareAndSet(id & mask, null, request)) {
+                linkStats.incrementInFlight();
+                request.timeout = TimerHolder.TIMER.newTimeout(request, timeoutMillis, TimeUnit.MILLISECONDS);
+                if (request.isDone()) {
+                    //completed before the timeout is set
+                    request.cancelTimeout();
+                }
+                return request;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * complete a request by its response
+     *
+     * @param response response, Attention: ownership transfer happened here,
+     *                 to the future if matched, or released if no request is waiting for it
+     * @return whether a request matched
+     */
+    public boolean complete(ProxyMessage<?, ?> response) {
+        PendingRequest request = remove(response.correlationId());
+        if (request == null) {
+            response.release();
+            return false;
+        }
+        request.cancelTimeout();
+        long latencyNanos = System.nanoTime() - request.startNanos;
+        histogram(request.requestType).recordNanos(latencyNanos);
+        linkStats.recordRtt(latencyNanos);
+        if (!request.complete(response)) {
+            //cancelled by caller
+            response.release();
+        }
+        return true;
+    }
+
+    /**
+     * fail a request, e.g. it can't be written
+     */
+    public void fail(int correlationId, Throwable cause) {
+        PendingRequest request = remove(correlationId);
+        if (request != null) {
+            request.cancelTimeout();
+            request.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * fail all pending requests, e.g. the channel is closed
+     */
+    public void failAll(Throwable cause) {
+        for (int i = 0; i <= mask; i++) {
+            PendingRequest request = slots.get(i);
+            if (request != null) {
+                fail(request.correlationId, cause);
+            }
+        }
+    }
+
+    public int getMaxPending() {
+        return mask + 1;
+    }
+
+    /**
+     * @param requestType request type
+     * @return latency of completed requests of the type, created on first use
+     */
+    public LatencyHistogram histogram(long requestType) {
+        return histograms.computeIfAbsent(requestType, t -> new LatencyHistogram());
+    }
+
+    /**
+     * @return request type to latency histogram, read only
+     */
+    public Map<Long, LatencyHistogram> getHistograms() {
+        return Collections.unmodifiableMap(histograms);
+    }
+
+    private PendingRequest remove(int correlationId) {
+        int index = correlationId & mask;
+        PendingRequest request = slots.get(index);
+        if (request == null || request.correlationId != correlationId || !slots.compareAndSet(index, request, null)) {
+            return null;
+        }
+        linkStats.decrementInFlight();
+        return request;
+    }
+
+    /**
+     * a request waiting for response, completed with the response message, which must be released by consumer
+     */
+    public final class PendingRequest extends CompletableFuture<ProxyMessage<?, ?>> implements TimerTask {
+
+        private final int correlationId;
+        private final long requestType;
+        private final long startNanos = System.nanoTime();
+        private volatile Timeout timeout;
+
+        private PendingRequest(int correlationId, long requestType) {
+            this.correlationId = correlationId;
+            this.requestType = requestType;
+        }
+
+        public int getCorrelationId() {
+            return correlationId;
+        }
+
+        private void cancelTimeout() {
+            Timeout timeout = this.timeout;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+
+        @Override
+        public void run(Timeout timeout) {
+            if (remove(correlationId) != null) {
+                completeExceptionally(new TimeoutException("request " + correlationId + " timeout"));
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.proxy;
+
+/**
+ * An outbound message tells the peer a session is closed, so the session state kept on the link can be dropped.
+ * <p>
+ * It only makes sense for stateful ProxyHeaderCodec like CompactProxyHeadCodec, for others it is ignored by encoder.
+ *
+ * @see ProxyChannel#unbindSession(String)
+ */
+public final class ProxySessionUnbind {
+
+    private final String sessionId;
+
+    public ProxySessionUnbind(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    @Override
+    public String toString() {
+        return "ProxySessionUnbind{" +
+                "sessionId='" + sessionId + '\'' +
+                '}';
+    }
+}
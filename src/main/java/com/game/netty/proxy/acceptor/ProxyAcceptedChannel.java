@@ -29,6 +29,7 @@ public class ProxyAcceptedChannel extends ProxyChannel {
      * the identification of the Channel
      * How to identify a channel is your business, you can even ignore it
      * But, if you set channelIdentity，ServerAcceptor will try to keep uniqueness：close duplicate channel
+     * Attention: a proxy with connection pool has several channels to one server, the identity should tell them apart
      */
     private Object channelIdentity;
 
@@ -20,6 +20,7 @@ import com.game.netty.ChannelEvent;
 import com.game.netty.proxy.ProxyMessage;
 import com.game.netty.netty.GameNettyEnv;
 import com.game.netty.netty.GameNettyUtil;
+import com.game.netty.proxy.codec.ProxyHeartbeatHandler;
 import com.game.netty.proxy.codec.ProxyMessageDecoder;
 import com.game.netty.proxy.codec.ProxyMessageEncoder;
 import com.game.netty.config.ProxyChannelConfig;
@@ -45,8 +46,6 @@ public class ProxyAcceptor {
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(ProxyAcceptor.class);
     private final EventLoopGroup bossEventLoopGroup;
     private final EventLoopGroup workerEventLoopGroup;
-    private ProxyMessageEncoder<?, ?> sharedEncoder;
-
     private final Map<ChannelId, ProxyAcceptedChannel> channels = new ConcurrentHashMap<>();
     private final ProxyAcceptorDelegate<?, ?> delegate;
     private ProxyChannelConfig config;
@@ -91,7 +90,6 @@ public class ProxyAcceptor {
      * @throws InterruptedException interrupt when bind
      */
     public void start() throws InterruptedException {
-        sharedEncoder = new ProxyMessageEncoder<>(codecConfig.headCodec().get(), codecConfig.bodyCodec().get(), codecConfig.getClientMessageHeadSize());
 
         ServerBootstrap b = new ServerBootstrap();
         b.group(bossEventLoopGroup, workerEventLoopGroup).channel(GameNettyEnv.DEFAULT.serverChannelClass())
@@ -101,8 +99,13 @@ public class ProxyAcceptor {
                         if (GameNettyUtil.getLogLevel() != null) {
                             ch.pipeline().addLast(new LoggingHandler(GameNettyUtil.getLogLevel()));
                         }
-                        ch.pipeline().addLast(sharedEncoder);
-                        ch.pipeline().addLast(new ProxyMessageDecoder<>(codecConfig.headCodec().get(), codecConfig.bodyCodec().get(), codecConfig.getClientMessageHeadSize(), codecConfig.isDecoderKeepMessageBuf()));
+                        ProxyMessageEncoder<?, ?> encoder = new ProxyMessageEncoder<>(codecConfig.headCodec().get(), codecConfig.bodyCodec().get(), codecConfig.getClientMessageHeadSize());
+                        encoder.setBatch(codecConfig.getMaxBatchBytes());
+                        ch.pipeline().addLast(encoder);
+                        ProxyMessageDecoder<?, ?> decoder = new ProxyMessageDecoder<>(codecConfig.headCodec().get(), codecConfig.bodyCodec().get(), codecConfig.getClientMessageHeadSize(), codecConfig.isDecoderKeepMessageBuf());
+                        decoder.setPooledMessage(codecConfig.isPooledMessage());
+                        ch.pipeline().addLast(decoder);
+                        ch.pipeline().addLast(new ProxyHeartbeatHandler(config.getHeartbeatIntervalMillis(), config.getHeartbeatTimeoutMillis()));
                         ch.pipeline().addLast(new PrivateChannelHandler());
                     }
                 });
@@ -128,6 +131,18 @@ public class ProxyAcceptor {
         return channels.values();
     }
 
+    /**
+     * tell all proxies a client session is closed
+     *
+     * @param sessionId closed session
+     * @see ProxyAcceptedChannel#unbindSession(String)
+     */
+    public void unbindSession(String sessionId) {
+        for (ProxyAcceptedChannel channel : channels.values()) {
+            channel.unbindSession(sessionId);
+        }
+    }
+
     public final void shutDown() {
         for (ProxyAcceptedChannel channel : channels.values()) {
             channel.close();
@@ -212,6 +227,10 @@ public class ProxyAcceptor {
         //we don't need to release msg here, as ProxyMessage extends ReferenceCounted
         @Override
         protected void channelRead0(ChannelHandlerContext ctx, ProxyMessage msg) {
+            if (msg.isResponse()) {
+                serverChannel.completeRequest(msg.retain());
+                return;
+            }
             delegate.onChannelMessage(serverChannel, msg);
         }
 
@@ -221,6 +240,9 @@ public class ProxyAcceptor {
                 logger.info("backendChannel inactive {}", ctx.channel().remoteAddress());
             }
             ctx.close();
+            if (serverChannel != null) {
+                serverChannel.onDisconnected();
+            }
             if (registered && removeChannel(serverChannel)) {
                 registered = false;
                 delegate.onChannelStatusEvent(serverChannel, ChannelEvent.CHANNEL_INACTIVE);
@@ -51,6 +51,7 @@ public interface ProxyAcceptorDelegate<H, B> {
      * channel message call back, this will be fired on channel eventLoop
      * @param channel channel
      * @param message received message
+     * @see com.game.netty.dispatch.OrderedProxyAcceptorDelegate
      */
     void onChannelMessage(ProxyAcceptedChannel channel, ProxyMessage<H, B> message);
 }
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.proxy.codec;
+
+import com.game.netty.proxy.DefaultProxyHead;
+import com.game.netty.util.VarIntUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.util.NetUtil;
+import io.netty.util.collection.IntObjectHashMap;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A stateful codec for DefaultProxyHead, which keeps a session dictionary on one proxy link.
+ * <p>
+ * The first message of a session announces the full head and binds it to a small integer id,
+ * later messages only carry the varint id and user id; a SESSION_UNBIND control frame drops the binding.
+ * The gateway must call {@link com.game.netty.proxy.connector.ProxyConnector#unbindSession(String)} when a client session
+ * closes, otherwise the dictionary fills up and new sessions fall back to INLINE heads.
+ * The ip is bound together with the session id, it is assumed not to change during a session;
+ * it is written as 4 or 16 raw bytes if it is a literal address.
+ * A string is written as [Length + 1(VarInt)]+[Utf8 Bytes], 0 for null, so an empty string stays distinct from null.
+ * <p>
+ * Encode format: [Kind(Byte)]+...
+ * <ul>
+ * <li>INLINE: [UserId(VarInt)]+[SessionId]+[Ip], for head without session id, or when the dictionary is full</li>
+ * <li>BIND: [Id(VarInt)]+[UserId(VarInt)]+[SessionId]+[Ip]</li>
+ * <li>REF: [Id(VarInt)]+[UserId(VarInt)]</li>
+ * </ul>
+ * <p>
+ * The codec is not thread safe, and must not be shared between channels,
+ * config it by a factory: {@code new ProxyCodecConfig(headSize, CompactProxyHeadCodec::new, () -> bodyCodec)}.
+ * Both side of the link must use it.
+ */
+public class CompactProxyHeadCodec implements ProxyHeaderCodec<DefaultProxyHead> {
+
+    private static final int KIND_INLINE = 0;
+    private static final int KIND_BIND = 1;
+    private static final int KIND_REF = 2;
+
+    private static final int IP_NONE = 0;
+    private static final int IP_TEXT = 0xFF;
+
+    public static final int DEFAULT_MAX_BINDINGS = 1 << 20;
+
+    private final int maxBindings;
+
+    /**
+     * outbound dictionary, session id to bound id
+     */
+    private final Map<String, BoundId> outboundIds = new HashMap<>();
+
+    /**
+     * inbound dictionary, bound id to the last decoded head of the session
+     */
+    private final IntObjectHashMap<DefaultProxyHead> inboundHeads = new IntObjectHashMap<>();
+
+    /**
+     * ids are never reused, so a stale reference can never hit another session
+     */
+    private int nextId = 1;
+
+    public CompactProxyHeadCodec() {
+        this(DEFAULT_MAX_BINDINGS);
+    }
+
+    /**
+     * @param maxBindings max outbound bound sessions, heads of more sessions are encoded inline
+     */
+    public CompactProxyHeadCodec(int maxBindings) {
+        this.maxBindings = maxBindings;
+    }
+
+    @Override
+    public int proxyHeadEncodeSize(DefaultProxyHead header) {
+        int size = Byte.BYTES + VarIntUtil.varInt64Size(header.getUserId());
+        String sessionId = header.getSessionId();
+        if (sessionId == null) {
+            return size + stringSize(null) + ipSize(header.getIp());
+        }
+        BoundId id = outboundIds.get(sessionId);
+        if (id != null) {
+            return size + VarIntUtil.varInt32Size(id.value);
+        }
+        size += stringSize(sessionId) + ipSize(header.getIp());
+        if (outboundIds.size() < maxBindings) {
+            size += VarIntUtil.varInt32Size(nextId);
+        }
+        return size;
+    }
+
+    @Override
+    public void encodeProxyHead(DefaultProxyHead header, ByteBuf out) {
+        String sessionId = header.getSessionId();
+        BoundId id = sessionId == null ? null : outboundIds.get(sessionId);
+        if (id != null) {
+            out.writeByte(KIND_REF);
+            VarIntUtil.writeVarInt32(out, id.value);
+            VarIntUtil.writeVarInt64(out, header.getUserId());
+            return;
+        }
+        if (sessionId != null && outboundIds.size() < maxBindings) {
+            int newId = nextId++;
+            outboundIds.put(sessionId, new BoundId(newId));
+            out.writeByte(KIND_BIND);
+            VarIntUtil.writeVarInt32(out, newId);
+        } else {
+            out.writeByte(KIND_INLINE);
+        }
+        VarIntUtil.writeVarInt64(out, header.getUserId());
+        writeString(out, sessionId);
+        writeIp(out, header.getIp());
+    }
+
+    @Override
+    public DefaultProxyHead decodeProxyHead(ByteBuf in, int headLength) {
+        int kind = in.readUnsignedByte();
+        switch (kind) {
+            case KIND_REF: {
+                int id = VarIntUtil.readVarInt32(in);
+                long userId = VarIntUtil.readVarInt64(in);
+                DefaultProxyHead head = inboundHeads.get(id);
+                if (head == null) {
+                    throw new CorruptedFrameException("unknown proxy session id " + id);
+                }
+                if (head.getUserId() != userId) {
+                    head = new DefaultProxyHead(head.getSessionId(), head.getIp(), userId);
+                    inboundHeads.put(id, head);
+                }
+                return head;
+            }
+            case KIND_BIND: {
+                int id = VarIntUtil.readVarInt32(in);
+                DefaultProxyHead head = readFullHead(in);
+                inboundHeads.put(id, head);
+                return head;
+            }
+            case KIND_INLINE:
+                return readFullHead(in);
+            default:
+                throw new CorruptedFrameException("unknown proxy head kind " + kind);
+        }
+    }
+
+    @Override
+    public boolean encodeSessionUnbind(String sessionId, ByteBuf out) {
+        BoundId id = outboundIds.remove(sessionId);
+        if (id == null) {
+            return false;
+        }
+        VarIntUtil.writeVarInt32(out, id.value);
+        return true;
+    }
+
+    @Override
+    public void decodeSessionUnbind(ByteBuf in, int length) {
+        inboundHeads.remove(VarIntUtil.readVarInt32(in));
+    }
+
+    public int outboundBindings() {
+        return outboundIds.size();
+    }
+
+    public int inboundBindings() {
+        return inboundHeads.size();
+    }
+
+    private static DefaultProxyHead readFullHead(ByteBuf in) {
+        long userId = VarIntUtil.readVarInt64(in);
+        String sessionId = readString(in);
+        String ip = readIp(in);
+        return new DefaultProxyHead(sessionId, ip, userId);
+    }
+
+    private static int stringSize(String value) {
+        if (value == null) {
+            return Byte.BYTES;
+        }
+        int length = ByteBufUtil.utf8Bytes(value);
+        return VarIntUtil.varInt32Size(length + 1) + length;
+    }
+
+    private static void writeString(ByteBuf out, String value) {
+        if (value == null) {
+            out.writeByte(0);
+            return;
+        }
+        int length = ByteBufUtil.utf8Bytes(value);
+        VarIntUtil.writeVarInt32(out, length + 1);
+        ByteBufUtil.reserveAndWriteUtf8(out, value, length);
+    }
+
+    private static String readString(ByteBuf in) {
+        int length = VarIntUtil.readVarInt32(in) - 1;
+        if (length < -1 || length > in.readableBytes()) {
+            throw new CorruptedFrameException("invalid string length " + length);
+        }
+        return length < 0 ? null : in.readCharSequence(length, StandardCharsets.UTF_8).toString();
+    }
+
+    private static int ipSize(String ip) {
+        if (ip == null) {
+            return Byte.BYTES;
+        }
+        byte[] raw = NetUtil.createByteArrayFromIpAddressString(ip);
+        if (raw != null) {
+            return Byte.BYTES + raw.length;
+        }
+        return Byte.BYTES + stringSize(ip);
+    }
+
+    private static void writeIp(ByteBuf out, String ip) {
+        if (ip == null) {
+            out.writeByte(IP_NONE);
+            return;
+        }
+        byte[] raw = NetUtil.createByteArrayFromIpAddressString(ip);
+        if (raw != null) {
+            out.writeByte(raw.length);
+            out.writeBytes(raw);
+        } else {
+            out.writeByte(IP_TEXT);
+            writeString(out, ip);
+        }
+    }
+
+    private static String readIp(ByteBuf in) {
+        int kind = in.readUnsignedByte();
+        switch (kind) {
+            case IP_NONE:
+                return null;
+            case IP_TEXT:
+                return readString(in);
+            case 4:
+            case 16: {
+                byte[] raw = new byte[kind];
+                in.readBytes(raw);
+                return NetUtil.bytesToIpAddress(raw);
+            }
+            default:
+                throw new CorruptedFrameException("unknown ip kind " + kind);
+        }
+    }
+
+    /**
+     * outbound bound id, kept unboxed
+     */
+    private static final class BoundId {
+        private final int value;
+
+        private BoundId(int value) {
+            this.value = value;
+        }
+    }
+}
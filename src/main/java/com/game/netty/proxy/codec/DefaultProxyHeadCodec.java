@@ -19,10 +19,15 @@ package com.game.netty.proxy.codec;
 import com.game.netty.proxy.DefaultProxyHead;
 import com.game.netty.util.StringTool;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+import java.nio.charset.StandardCharsets;
 
 
 /**
  * DefaultProxyHead codec implementation
+ * <p>
+ * The encode format is: [UserId(Long)]+[SessionLength(Byte)]+[Session UTF-8]+[IpLength(Byte)]+[Ip UTF-8]
  */
 public class DefaultProxyHeadCodec implements ProxyHeaderCodec<DefaultProxyHead> {
 
@@ -37,11 +42,11 @@ public class DefaultProxyHeadCodec implements ProxyHeaderCodec<DefaultProxyHead>
         int length = Long.BYTES; //user id
         length += Byte.BYTES; //session length field
         if (!StringTool.isEmpty(header.getSessionId())) {
-            length += header.getSessionId().length(); //session body field
+            length += ByteBufUtil.utf8Bytes(header.getSessionId()); //session body field
         }
         length += Byte.BYTES; //ip length field
         if (!StringTool.isEmpty(header.getIp())) {
-            length += header.getIp().length(); //session body field
+            length += ByteBufUtil.utf8Bytes(header.getIp()); //ip body field
         }
         return length;
     }
@@ -53,30 +58,10 @@ public class DefaultProxyHeadCodec implements ProxyHeaderCodec<DefaultProxyHead>
     public void encodeProxyHead(DefaultProxyHead header, ByteBuf out) {
         //写用户ID
         out.writeLong(header.getUserId());
-
         //写sessionId
-        if (!StringTool.isEmpty(header.getSessionId())) {
-            int sessionLength = header.getSessionId().length();
-            if (sessionLength > Byte.MAX_VALUE) {
-                throw new IllegalArgumentException("session too long");
-            }
-            out.writeByte(sessionLength);
-            out.writeBytes(header.getSessionId().getBytes());
-        } else {
-            out.writeByte(0);
-        }
-
+        writeString(out, header.getSessionId(), "session too long");
         //写ip
-        if (!StringTool.isEmpty(header.getIp())) {
-            int ipLength = header.getIp().length();
-            if (ipLength > Byte.MAX_VALUE) {
-                throw new IllegalArgumentException("ip too long");
-            }
-            out.writeByte(ipLength);
-            out.writeBytes(header.getIp().getBytes());
-        } else {
-            out.writeByte(0);
-        }
+        writeString(out, header.getIp(), "ip too long");
     }
 
     /**
@@ -84,26 +69,33 @@ public class DefaultProxyHeadCodec implements ProxyHeaderCodec<DefaultProxyHead>
      */
     @Override
     public DefaultProxyHead decodeProxyHead(ByteBuf in, int length) {
-
         //读取用户id
         long userId = in.readLong();
         //读取session
-        String session = null;
-        byte s = in.readByte();
-        if (s > 0) {
-            byte[] sBuf = new byte[s];
-            in.readBytes(sBuf);
-            session = new String(sBuf);
+        String session = readString(in);
+        //读取ip
+        String ip = readString(in);
+        return new DefaultProxyHead(session, ip, userId);
+    }
+
+    static void writeString(ByteBuf out, String value, String tooLongMessage) {
+        if (StringTool.isEmpty(value)) {
+            out.writeByte(0);
+            return;
         }
+        int length = ByteBufUtil.utf8Bytes(value);
+        if (length > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException(tooLongMessage);
+        }
+        out.writeByte(length);
+        ByteBufUtil.reserveAndWriteUtf8(out, value, length);
+    }
 
-        //读取ip
-        String ip = null;
-        s = in.readByte();
-        if (s > 0) {
-            byte[] sBuf = new byte[s];
-            in.readBytes(sBuf);
-            ip = new String(sBuf);
+    static String readString(ByteBuf in) {
+        byte length = in.readByte();
+        if (length > 0) {
+            return in.readCharSequence(length, StandardCharsets.UTF_8).toString();
         }
-        return new DefaultProxyHead(session, ip, userId);
+        return null;
     }
 }
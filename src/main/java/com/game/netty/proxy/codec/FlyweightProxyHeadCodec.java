@@ -0,0 +1,152 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.proxy.codec;
+
+import com.game.netty.proxy.DefaultProxyHead;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.internal.MathUtil;
+
+/**
+ * A DefaultProxyHeadCodec which avoids per message allocation, the encode format is the same, so the peer can use either.
+ * <p>
+ * Encoding: the session and ip bytes are encoded once and cached in a direct mapped table keyed by head identity,
+ * so keep one head object per session at proxy side.
+ * <p>
+ * Decoding: heads are interned in a direct mapped table keyed by session and ip bytes,
+ * a hit with the same user id returns the interned head without any allocation.
+ * A decoded head is also put into the encode table, so writing it back costs nothing.
+ * <p>
+ * The codec is thread safe, table slots are replaced as immutable entries, a lost update only costs a miss.
+ */
+public class FlyweightProxyHeadCodec extends DefaultProxyHeadCodec {
+
+    public static final int DEFAULT_TABLE_SIZE = 4096;
+
+    private final Entry[] table;
+    private final Entry[] encodeTable;
+    private final int mask;
+
+    public FlyweightProxyHeadCodec() {
+        this(DEFAULT_TABLE_SIZE);
+    }
+
+    /**
+     * @param tableSize intern table size, rounded up to power of 2, should be around the count of online sessions
+     */
+    public FlyweightProxyHeadCodec(int tableSize) {
+        int size = MathUtil.findNextPositivePowerOfTwo(tableSize);
+        this.table = new Entry[size];
+        this.encodeTable = new Entry[size];
+        this.mask = size - 1;
+    }
+
+    @Override
+    public int proxyHeadEncodeSize(DefaultProxyHead header) {
+        return Long.BYTES + encodedOf(header).length;
+    }
+
+    @Override
+    public void encodeProxyHead(DefaultProxyHead header, ByteBuf out) {
+        out.writeLong(header.getUserId());
+        out.writeBytes(encodedOf(header));
+    }
+
+    @Override
+    public DefaultProxyHead decodeProxyHead(ByteBuf in, int length) {
+        long userId = in.readLong();
+        int start = in.readerIndex();
+        int encodedLength = length - Long.BYTES;
+        int hash = hash(in, start, encodedLength);
+        int slot = hash & mask;
+        Entry entry = table[slot];
+        if (entry != null && entry.hash == hash && matches(entry.encoded, in, start, encodedLength)) {
+            in.skipBytes(encodedLength);
+            if (entry.head.getUserId() != userId) {
+                entry = new Entry(hash, entry.encoded, entry.head.withUserId(userId));
+                table[slot] = entry;
+                cacheEncoded(entry.head, entry.encoded);
+            }
+            return entry.head;
+        }
+
+        byte[] encoded = new byte[encodedLength];
+        in.getBytes(start, encoded);
+        DefaultProxyHead head = new DefaultProxyHead(readString(in), readString(in), userId);
+        table[slot] = new Entry(hash, encoded, head);
+        cacheEncoded(head, encoded);
+        return head;
+    }
+
+    private byte[] encodedOf(DefaultProxyHead header) {
+        int hash = spread(System.identityHashCode(header));
+        Entry entry = encodeTable[hash & mask];
+        if (entry != null && entry.head == header) {
+            return entry.encoded;
+        }
+        byte[] encoded = new byte[super.proxyHeadEncodeSize(header) - Long.BYTES];
+        ByteBuf buf = Unpooled.wrappedBuffer(encoded).writerIndex(0);
+        writeString(buf, header.getSessionId(), "session too long");
+        writeString(buf, header.getIp(), "ip too long");
+        encodeTable[hash & mask] = new Entry(hash, encoded, header);
+        return encoded;
+    }
+
+    private void cacheEncoded(DefaultProxyHead head, byte[] encoded) {
+        int hash = spread(System.identityHashCode(head));
+        encodeTable[hash & mask] = new Entry(hash, encoded, head);
+    }
+
+    private static int hash(ByteBuf in, int start, int length) {
+        int hash = 1;
+        for (int i = start, end = start + length; i < end; i++) {
+            hash = 31 * hash + in.getByte(i);
+        }
+        return spread(hash);
+    }
+
+    /**
+     * spread high bits, so the masked slot uses all of them
+     */
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(byte[] encoded, ByteBuf in, int start, int length) {
+        if (encoded.length != length) {
+            return false;
+        }
+        for (int i = 0; i < encoded.length; i++) {
+            if (encoded[i] != in.getByte(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Entry {
+        private final int hash;
+        private final byte[] encoded;
+        private final DefaultProxyHead head;
+
+        private Entry(int hash, byte[] encoded, DefaultProxyHead head) {
+            this.hash = hash;
+            this.encoded = encoded;
+            this.head = head;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.proxy.codec;
+
+/**
+ * Control frame types on the proxy link.
+ * <p>
+ * A control frame shares the ProxyMessage frame layout, but its ProxyHeadSize field is a negative type value:
+ * [FullLength(Int)]+[FrameType(Int, negative)]+[Payload]; a frame of unknown type is skipped.
+ */
+public final class ProxyFrameType {
+
+    /**
+     * a session is closed, payload is written by {@link ProxyHeaderCodec#encodeSessionUnbind}
+     */
+    public static final int SESSION_UNBIND = -1;
+
+    /**
+     * several ProxyMessages in one frame, payload is a sequence of items:
+     * [ProxyHeadSize(VarInt)]+[ProxyHead Bytes]+[ClientMessage Encoded]
+     */
+    public static final int BATCH = -2;
+
+    /**
+     * a ProxyMulticastMessage, payload: [GroupId]+[SessionCount(VarInt)]+[SessionId]*+[ClientMessage Encoded],
+     * a string is [Utf8Length(VarInt)]+[Utf8 Bytes], a null group id is length 0
+     */
+    public static final int MULTICAST = -3;
+
+    /**
+     * a ProxyMessage expecting a response, payload: [CorrelationId(Int)]+[ProxyHeadSize(Int)]+[ProxyHead Bytes]+[ClientMessage Encoded]
+     */
+    public static final int REQUEST = -4;
+
+    /**
+     * a response to a REQUEST, payload is the same as REQUEST
+     */
+    public static final int RESPONSE = -5;
+
+    /**
+     * a heartbeat ping, payload: [OriginNanos(Long)]+[OriginWallMicros(Long)]
+     */
+    public static final int PING = -6;
+
+    /**
+     * a heartbeat pong, payload: [OriginNanos(Long)]+[OriginWallMicros(Long)]+[PeerWallMicros(Long)]
+     */
+    public static final int PONG = -7;
+
+    private ProxyFrameType() {
+    }
+}
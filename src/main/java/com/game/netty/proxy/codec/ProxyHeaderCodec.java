@@ -49,4 +49,26 @@ public interface ProxyHeaderCodec<H> {
      * @return decoded proxy head object
      */
     H decodeProxyHead(ByteBuf in, int headLength);
+
+    /**
+     * write the payload of a SESSION_UNBIND control frame, only stateful codec need it
+     *
+     * @param sessionId closed session
+     * @param out       byte buf to write
+     * @return false if nothing to send
+     * @see ProxyFrameType#SESSION_UNBIND
+     */
+    default boolean encodeSessionUnbind(String sessionId, ByteBuf out) {
+        return false;
+    }
+
+    /**
+     * read the payload of a SESSION_UNBIND control frame, in.readIndex point to the payload
+     *
+     * @param in     buf to read
+     * @param length payload length
+     */
+    default void decodeSessionUnbind(ByteBuf in, int length) {
+        in.skipBytes(length);
+    }
 }
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.proxy.codec;
+
+import com.game.netty.proxy.ProxyHeartbeat;
+import com.game.netty.proxy.ProxyLinkStats;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Link heartbeat, placed after ProxyMessageDecoder: answers pings, sends pings periodically,
+ * feeds pong rtt and clock offset to {@link ProxyLinkStats}, and closes a link which stops answering.
+ * <p>
+ * Pinging is off by default, enable it only if both peers know PING/PONG control frames:
+ * an older peer fails to decode a ping and closes the link, a peer which never answers is closed after the timeout.
+ * The ProxyLinkStats is attached by ProxyChannel when connected, samples before that are dropped.
+ */
+public class ProxyHeartbeatHandler extends ChannelDuplexHandler {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(ProxyHeartbeatHandler.class);
+
+    private final long intervalMillis;
+    private final long timeoutNanos;
+
+    private volatile ProxyLinkStats linkStats;
+
+    private ScheduledFuture<?> pingFuture;
+
+    /**
+     * nanoTime of last pong, or of ping start if no pong received
+     */
+    private long lastPongNanos;
+
+    /**
+     * @param intervalMillis ping interval, 0 to only answer pings of peer
+     * @param timeoutMillis  close the link if no pong received in this time
+     */
+    public ProxyHeartbeatHandler(long intervalMillis, long timeoutMillis) {
+        this.intervalMillis = intervalMillis;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    }
+
+    public void setLinkStats(ProxyLinkStats linkStats) {
+        this.linkStats = linkStats;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        if (ctx.channel().isActive()) {
+            startPing(ctx);
+        }
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        startPing(ctx);
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        stopPing();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        stopPing();
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof ProxyHeartbeat)) {
+            super.channelRead(ctx, msg);
+            return;
+        }
+        ProxyHeartbeat heartbeat = (ProxyHeartbeat) msg;
+        if (!heartbeat.isPong()) {
+            ctx.writeAndFlush(heartbeat.toPong(wallMicros()));
+            return;
+        }
+        long now = System.nanoTime();
+        lastPongNanos = now;
+        ProxyLinkStats stats = linkStats;
+        if (stats != null) {
+            long offsetMicros = heartbeat.getPeerWallMicros() - (heartbeat.getOriginWallMicros() + wallMicros()) / 2;
+            stats.recordHeartbeat(now - heartbeat.getOriginNanos(), offsetMicros);
+        }
+    }
+
+    private void startPing(ChannelHandlerContext ctx) {
+        if (intervalMillis <= 0 || pingFuture != null) {
+            return;
+        }
+        lastPongNanos = System.nanoTime();
+        pingFuture = ctx.executor().scheduleAtFixedRate(() -> ping(ctx), intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void stopPing() {
+        if (pingFuture != null) {
+            pingFuture.cancel(false);
+            pingFuture = null;
+        }
+    }
+
+    private void ping(ChannelHandlerContext ctx) {
+        long now = System.nanoTime();
+        if (now - lastPongNanos > timeoutNanos) {
+            logger.warn("heartbeat timeout, close {}", ctx.channel());
+            stopPing();
+            ctx.close();
+            return;
+        }
+        ctx.writeAndFlush(ProxyHeartbeat.ping(now, wallMicros()));
+    }
+
+    private static long wallMicros() {
+        return TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    }
+}
@@ -17,19 +17,26 @@
 package com.game.netty.proxy.codec;
 
 import com.game.netty.client.ClientMessage;
+import com.game.netty.proxy.ProxyHeartbeat;
 import com.game.netty.proxy.ProxyMessage;
+import com.game.netty.proxy.ProxyMulticastMessage;
+import com.game.netty.client.codec.binary.BinaryWireUtil;
 import com.game.netty.util.ClientMessageCodecUtil;
 import com.game.netty.util.GameByteBufAlloc;
+import com.game.netty.util.VarIntUtil;
 
 import com.game.netty.client.codec.MessageBodyCodec;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
- * ProxyMessage Decoder for Netty Channel pipeline
+ * ProxyMessage Decoder for Netty Channel pipeline, control frames are consumed here, see {@link ProxyFrameType}
  *
  * @param <H> ProxyHead type
  * @param <B> ClientMessage Body type
@@ -49,6 +56,11 @@ public class ProxyMessageDecoder<H, B> extends ByteToMessageDecoder {
      */
     private final boolean keepMessageBuf;
 
+    /**
+     * whether decode into pooled ProxyMessage and ClientMessage
+     */
+    private boolean pooledMessage;
+
     /**
      * @param headerCodec           proxy header codec
      * @param bodyCodec             message body codec
@@ -65,6 +77,10 @@ public class ProxyMessageDecoder<H, B> extends ByteToMessageDecoder {
         }
     }
 
+    public void setPooledMessage(boolean pooledMessage) {
+        this.pooledMessage = pooledMessage;
+    }
+
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
 
@@ -78,36 +94,99 @@ public class ProxyMessageDecoder<H, B> extends ByteToMessageDecoder {
 
             //decode proxy header
             int headSize = in.readInt();
-            H proxyHead = headerCodec.decodeProxyHead(in, headSize);
-
-            //decode client header
-            int clientStart = in.readerIndex();
-            int bodyLength = in.readInt() - clientMessageHeadSize;
-            long clientHead = ClientMessageCodecUtil.readHead(in, clientMessageHeadSize);
-
-            //decode inner client message
-            int savedReadIndex = in.readerIndex();
-            ClientMessage<B> clientMessage;
-            if (keepMessageBuf) {
-                int clientFullLength = bodyLength + clientMessageHeadSize + Integer.BYTES;
-                ByteBuf messageBuf = GameByteBufAlloc.heapBuf(ctx.alloc(), clientFullLength);
-                messageBuf.writeBytes(in, clientStart, clientFullLength);
-                in.skipBytes(bodyLength);
-                //set readIndex to body position
-                messageBuf.skipBytes(clientMessageHeadSize + Integer.BYTES);
-                B b = bodyCodec.decodeMessageBody(clientHead, messageBuf, bodyLength);
-                messageBuf.readerIndex(0);
-                clientMessage = new ClientMessage<>(clientHead, messageBuf, b);
-            } else {
-                B b = bodyCodec.decodeMessageBody(clientHead, in, bodyLength);
-                if (b == null) {
-                    throw new IllegalStateException("keepMessageBuf=false and decoded body==null, I guess a misconfiguration");
-                }
-                in.readerIndex(savedReadIndex + bodyLength);
-                clientMessage = new ClientMessage<>(clientHead, b);
+            if (headSize < 0) {
+                decodeControlFrame(ctx, headSize, in, fullLength - Integer.BYTES * 2, out);
+                continue;
             }
-            ProxyMessage<H, B> proxyMessage = new ProxyMessage<>(proxyHead, clientMessage);
-            out.add(proxyMessage);
+            out.add(decodeMessage(ctx, in, headSize));
+        }
+    }
+
+    private ProxyMessage<H, B> decodeMessage(ChannelHandlerContext ctx, ByteBuf in, int headSize) {
+        H proxyHead = headerCodec.decodeProxyHead(in, headSize);
+        ClientMessage<B> clientMessage = decodeClientMessage(ctx, in);
+        return pooledMessage ? ProxyMessage.newInstance(proxyHead, clientMessage) : new ProxyMessage<>(proxyHead, clientMessage);
+    }
+
+    private ProxyMulticastMessage<B> decodeMulticast(ChannelHandlerContext ctx, ByteBuf in) {
+        String groupId = readString(in);
+        int count = VarIntUtil.readVarInt32(in);
+        if (count < 0 || count > in.readableBytes()) {
+            throw new CorruptedFrameException("invalid multicast session count " + count);
+        }
+        List<String> sessionIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            sessionIds.add(readString(in));
+        }
+        return new ProxyMulticastMessage<>(groupId, sessionIds, decodeClientMessage(ctx, in));
+    }
+
+    private static String readString(ByteBuf in) {
+        int length = BinaryWireUtil.readLength(in);
+        return length == 0 ? null : in.readCharSequence(length, StandardCharsets.UTF_8).toString();
+    }
+
+    private ClientMessage<B> decodeClientMessage(ChannelHandlerContext ctx, ByteBuf in) {
+        //decode client header
+        int clientStart = in.readerIndex();
+        int bodyLength = in.readInt() - clientMessageHeadSize;
+        long clientHead = ClientMessageCodecUtil.readHead(in, clientMessageHeadSize);
+
+        //decode inner client message
+        int savedReadIndex = in.readerIndex();
+        ClientMessage<B> clientMessage;
+        if (keepMessageBuf) {
+            int clientFullLength = bodyLength + clientMessageHeadSize + Integer.BYTES;
+            ByteBuf messageBuf = GameByteBufAlloc.heapBuf(ctx.alloc(), clientFullLength);
+            messageBuf.writeBytes(in, clientStart, clientFullLength);
+            in.skipBytes(bodyLength);
+            //set readIndex to body position
+            messageBuf.skipBytes(clientMessageHeadSize + Integer.BYTES);
+            B b = bodyCodec.decodeMessageBody(clientHead, messageBuf, bodyLength);
+            messageBuf.readerIndex(0);
+            clientMessage = pooledMessage ? ClientMessage.newInstance(clientHead, messageBuf, b) : new ClientMessage<>(clientHead, messageBuf, b);
+        } else {
+            B b = bodyCodec.decodeMessageBody(clientHead, in, bodyLength);
+            if (b == null) {
+                throw new IllegalStateException("keepMessageBuf=false and decoded body==null, I guess a misconfiguration");
+            }
+            in.readerIndex(savedReadIndex + bodyLength);
+            clientMessage = pooledMessage ? ClientMessage.newInstance(clientHead, b) : new ClientMessage<>(clientHead, b);
+        }
+        return clientMessage;
+    }
+
+    private void decodeControlFrame(ChannelHandlerContext ctx, int frameType, ByteBuf in, int length, List<Object> out) {
+        int end = in.readerIndex() + length;
+        switch (frameType) {
+            case ProxyFrameType.SESSION_UNBIND:
+                headerCodec.decodeSessionUnbind(in, length);
+                break;
+            case ProxyFrameType.REQUEST:
+                int requestId = in.readInt();
+                out.add(decodeMessage(ctx, in, in.readInt()).markRequest(requestId));
+                break;
+            case ProxyFrameType.RESPONSE:
+                int responseId = in.readInt();
+                out.add(decodeMessage(ctx, in, in.readInt()).markResponse(responseId));
+                break;
+            case ProxyFrameType.PING:
+                out.add(ProxyHeartbeat.ping(in.readLong(), in.readLong()));
+                break;
+            case ProxyFrameType.PONG:
+                out.add(ProxyHeartbeat.pong(in.readLong(), in.readLong(), in.readLong()));
+                break;
+            case ProxyFrameType.MULTICAST:
+                out.add(decodeMulticast(ctx, in));
+                break;
+            case ProxyFrameType.BATCH:
+                while (in.readerIndex() < end) {
+                    out.add(decodeMessage(ctx, in, VarIntUtil.readVarInt32(in)));
+                }
+                break;
+            default:
+                break;
         }
+        in.readerIndex(end);
     }
 }
@@ -16,31 +16,64 @@
 
 package com.game.netty.proxy.codec;
 
+import com.game.netty.client.ClientMessage;
+import com.game.netty.client.codec.binary.BinaryWireUtil;
+import com.game.netty.proxy.ProxyHeartbeat;
 import com.game.netty.proxy.ProxyMessage;
+import com.game.netty.proxy.ProxyMulticastMessage;
+import com.game.netty.proxy.ProxySessionUnbind;
 import com.game.netty.util.ClientMessageCodecUtil;
 import com.game.netty.util.GameByteBufAlloc;
 import com.game.netty.client.codec.MessageBodyCodec;
+import com.game.netty.util.VarIntUtil;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
-import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelOutboundHandlerAdapter;
 import io.netty.channel.ChannelPromise;
 
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * ProxyMessage Encoder for Netty Channel pipeline;
  * The encode format is:  [FullLength(Int)]+[ProxyHeadSize(Int)]+[ProxyHead Bytes]+[ClientMessage Encoded]
+ * <p>
+ * {@link ProxySessionUnbind}, {@link ProxyMulticastMessage}, {@link ProxyHeartbeat} and correlated ProxyMessage are encoded as control frames,
+ * see {@link ProxyFrameType}.
+ * <p>
+ * If batch is enabled, messages written between two flushes are packed into BATCH frames,
+ * a batch is emitted at flush, or when it reaches maxBatchBytes; promises complete when the batch is written.
+ * <p>
+ * The encoder keeps per channel state (batch, stateful ProxyHeaderCodec), each channel has its own encoder.
  *
  * @param <H> Proxy Header Type
  * @param <B> Message Body Type
  */
-@ChannelHandler.Sharable
 public class ProxyMessageEncoder<H, B> extends ChannelOutboundHandlerAdapter {
 
+    public static final int DEFAULT_MAX_BATCH_BYTES = 64 * 1024;
+
     private final int clientMessageHeadSize;
     private final MessageBodyCodec<B> bodyCodec;
     private final ProxyHeaderCodec<H> headerCodec;
 
+    private boolean batch;
+    private int maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+
+    /**
+     * the batch being packed, null if no message pending
+     */
+    private ByteBuf batchBuf;
+    private final List<ChannelPromise> batchPromises = new ArrayList<>();
+
+    /**
+     * pending batch bytes, read from other thread as load feedback, so the value may be stale
+     */
+    private int pendingBatchBytes;
+
     /**
      * @param headerCodec           proxy header codec
      * @param bodyCodec             message body codec
@@ -52,45 +85,277 @@ public class ProxyMessageEncoder<H, B> extends ChannelOutboundHandlerAdapter {
         this.headerCodec = headerCodec;
     }
 
+    /**
+     * enable batch frame, the peer decoder must be a version that knows BATCH frame
+     *
+     * @param maxBatchBytes max bytes of a batch frame, a bigger message is written alone
+     */
+    public void setBatch(int maxBatchBytes) {
+        this.batch = maxBatchBytes > 0;
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    /**
+     * @return whether there is a batch not written yet
+     */
+    public boolean hasPendingBatch() {
+        return batchBuf != null;
+    }
+
+    public int pendingBatchBytes() {
+        return pendingBatchBytes;
+    }
+
     @Override
     public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
 
         if (msg instanceof ProxyMessage) {
             ProxyMessage<H, B> message = (ProxyMessage<H, B>) msg;
             try {
-                int serverHeadSize = headerCodec.proxyHeadEncodeSize(message.proxyHeader());
-
-                if (message.clientMessage().content() != null) {
-                    //if the inner clientMessage keep the message body buf, reuse it
-                    ByteBuf buf = GameByteBufAlloc.heapBuf(ctx.alloc(), serverHeadSize + Integer.BYTES * 2);
-                    int clientMessageSize = message.clientMessage().content().readableBytes();
-                    buf.writeInt(Integer.BYTES + serverHeadSize + clientMessageSize);
-                    buf.writeInt(serverHeadSize);
-                    headerCodec.encodeProxyHead(message.proxyHeader(), buf);
-                    ByteBuf fullBuf = Unpooled.compositeBuffer(2)
-                            .addComponent(true, buf)
-                            .addComponent(true, message.clientMessage().content().retain());
-                    ctx.write(fullBuf, promise);
+                if (message.correlationId() != 0) {
+                    writeBatch(ctx);
+                    writeMessage(ctx, message, message.isRequest() ? ProxyFrameType.REQUEST : ProxyFrameType.RESPONSE, promise);
+                } else if (batch) {
+                    writeBatchItem(ctx, message, promise);
                 } else {
-                    int bodyEncodeSize = bodyCodec.bodyEncodeSize(message.clientMessage().getBody());
-                    int clientMessageSize = Integer.BYTES + clientMessageHeadSize + bodyEncodeSize;
-                    ByteBuf buf = GameByteBufAlloc.heapBuf(ctx.alloc(), Integer.BYTES * 2 + serverHeadSize + clientMessageSize);
-
-                    buf.writeInt(Integer.BYTES + serverHeadSize + clientMessageSize);
-                    buf.writeInt(serverHeadSize);
-                    headerCodec.encodeProxyHead(message.proxyHeader(), buf);
-
-                    buf.writeInt(clientMessageSize - Integer.BYTES);
-                    ClientMessageCodecUtil.writeHead(buf, message.clientMessage().getHead(), clientMessageHeadSize);
-                    bodyCodec.encodeBody(message.clientMessage().getBody(), buf);
-
-                    ctx.write(buf, promise);
+                    writeMessage(ctx, message, promise);
                 }
             } finally {
                 message.release();
             }
         } else {
-            ctx.write(msg, promise);
+            //keep the order with batched messages
+            writeBatch(ctx);
+            if (msg instanceof ProxySessionUnbind) {
+                writeSessionUnbind(ctx, ((ProxySessionUnbind) msg).getSessionId(), promise);
+            } else if (msg instanceof ProxyHeartbeat) {
+                writeHeartbeat(ctx, (ProxyHeartbeat) msg, promise);
+            } else if (msg instanceof ProxyMulticastMessage) {
+                @SuppressWarnings("unchecked")
+                ProxyMulticastMessage<B> message = (ProxyMulticastMessage<B>) msg;
+                try {
+                    writeMulticast(ctx, message, promise);
+                } finally {
+                    message.release();
+                }
+            } else {
+                ctx.write(msg, promise);
+            }
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        writeBatch(ctx);
+        ctx.flush();
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
+        discardBatch();
+        ctx.close(promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        discardBatch();
+    }
+
+    private void writeMessage(ChannelHandlerContext ctx, ProxyMessage<H, B> message, ChannelPromise promise) {
+        writeMessage(ctx, message, 0, promise);
+    }
+
+    /**
+     * @param frameType 0 for a plain message, or REQUEST/RESPONSE which prefix [FrameType]+[CorrelationId]
+     */
+    private void writeMessage(ChannelHandlerContext ctx, ProxyMessage<H, B> message, int frameType, ChannelPromise promise) {
+        int serverHeadSize = headerCodec.proxyHeadEncodeSize(message.proxyHeader());
+        int prefixSize = frameType == 0 ? Integer.BYTES * 2 : Integer.BYTES * 4;
+
+        if (message.clientMessage().content() != null) {
+            //if the inner clientMessage keep the message body buf, reuse it
+            ByteBuf buf = GameByteBufAlloc.heapBuf(ctx.alloc(), serverHeadSize + prefixSize);
+            int clientMessageSize = message.clientMessage().content().readableBytes();
+            buf.writeInt(prefixSize - Integer.BYTES + serverHeadSize + clientMessageSize);
+            writeCorrelation(buf, message, frameType);
+            buf.writeInt(serverHeadSize);
+            headerCodec.encodeProxyHead(message.proxyHeader(), buf);
+            ByteBuf fullBuf = Unpooled.compositeBuffer(2)
+                    .addComponent(true, buf)
+                    .addComponent(true, message.clientMessage().content().retain());
+            ctx.write(fullBuf, promise);
+        } else {
+            int clientMessageSize = clientMessageSize(message.clientMessage());
+            ByteBuf buf = GameByteBufAlloc.heapBuf(ctx.alloc(), prefixSize + serverHeadSize + clientMessageSize);
+
+            buf.writeInt(prefixSize - Integer.BYTES + serverHeadSize + clientMessageSize);
+            writeCorrelation(buf, message, frameType);
+            buf.writeInt(serverHeadSize);
+            headerCodec.encodeProxyHead(message.proxyHeader(), buf);
+            writeClientMessage(message.clientMessage(), clientMessageSize, buf);
+
+            ctx.write(buf, promise);
+        }
+    }
+
+    private static void writeCorrelation(ByteBuf buf, ProxyMessage<?, ?> message, int frameType) {
+        if (frameType != 0) {
+            buf.writeInt(frameType);
+            buf.writeInt(message.correlationId());
+        }
+    }
+
+    /**
+     * batch item format: [ProxyHeadSize(VarInt)]+[ProxyHead Bytes]+[ClientMessage Encoded]
+     */
+    private void writeBatchItem(ChannelHandlerContext ctx, ProxyMessage<H, B> message, ChannelPromise promise) {
+        ClientMessage<B> clientMessage = message.clientMessage();
+        int serverHeadSize = headerCodec.proxyHeadEncodeSize(message.proxyHeader());
+        ByteBuf content = clientMessage.content();
+        int clientMessageSize = content != null ? content.readableBytes() : clientMessageSize(clientMessage);
+        int itemSize = VarIntUtil.varInt32Size(serverHeadSize) + serverHeadSize + clientMessageSize;
+
+        if (batchBuf != null && batchBuf.readableBytes() + itemSize > maxBatchBytes) {
+            writeBatch(ctx);
+        }
+        if (itemSize + Integer.BYTES * 2 > maxBatchBytes) {
+            writeMessage(ctx, message, promise);
+            return;
+        }
+        if (batchBuf == null) {
+            batchBuf = GameByteBufAlloc.heapBuf(ctx.alloc(), Math.min(maxBatchBytes, Math.max(itemSize * 8, 1024)));
+            batchBuf.writeInt(0);
+            batchBuf.writeInt(ProxyFrameType.BATCH);
+        }
+        int itemStart = batchBuf.writerIndex();
+        try {
+            VarIntUtil.writeVarInt32(batchBuf, serverHeadSize);
+            headerCodec.encodeProxyHead(message.proxyHeader(), batchBuf);
+            if (content != null) {
+                batchBuf.writeBytes(content, content.readerIndex(), clientMessageSize);
+            } else {
+                writeClientMessage(clientMessage, clientMessageSize, batchBuf);
+            }
+        } catch (RuntimeException e) {
+            //drop the partial item, or the items after it are out of sync at the peer; the promise is failed by the caller
+            batchBuf.writerIndex(itemStart);
+            throw e;
+        }
+        batchPromises.add(promise);
+        pendingBatchBytes = batchBuf.readableBytes();
+    }
+
+    private void writeBatch(ChannelHandlerContext ctx) {
+        ByteBuf buf = batchBuf;
+        if (buf == null) {
+            return;
+        }
+        batchBuf = null;
+        pendingBatchBytes = 0;
+        buf.setInt(0, buf.readableBytes() - Integer.BYTES);
+        if (batchPromises.size() == 1) {
+            ctx.write(buf, batchPromises.get(0));
+        } else {
+            ChannelPromise[] promises = batchPromises.toArray(new ChannelPromise[0]);
+            ctx.write(buf).addListener(future -> {
+                for (ChannelPromise promise : promises) {
+                    if (future.isSuccess()) {
+                        promise.trySuccess();
+                    } else {
+                        promise.tryFailure(future.cause());
+                    }
+                }
+            });
+        }
+        batchPromises.clear();
+    }
+
+    private void discardBatch() {
+        if (batchBuf == null) {
+            return;
+        }
+        batchBuf.release();
+        batchBuf = null;
+        pendingBatchBytes = 0;
+        ClosedChannelException cause = new ClosedChannelException();
+        for (ChannelPromise promise : batchPromises) {
+            promise.tryFailure(cause);
+        }
+        batchPromises.clear();
+    }
+
+    private int clientMessageSize(ClientMessage<B> clientMessage) {
+        int bodyEncodeSize = bodyCodec.bodyEncodeSize(clientMessage.getHead(), clientMessage.getBody());
+        return Integer.BYTES + clientMessageHeadSize + bodyEncodeSize;
+    }
+
+    private void writeClientMessage(ClientMessage<B> clientMessage, int clientMessageSize, ByteBuf buf) {
+        buf.writeInt(clientMessageSize - Integer.BYTES);
+        ClientMessageCodecUtil.writeHead(buf, clientMessage.getHead(), clientMessageHeadSize);
+        bodyCodec.encodeBody(clientMessage.getHead(), clientMessage.getBody(), buf);
+    }
+
+    private void writeHeartbeat(ChannelHandlerContext ctx, ProxyHeartbeat heartbeat, ChannelPromise promise) {
+        int payloadSize = heartbeat.isPong() ? Long.BYTES * 3 : Long.BYTES * 2;
+        ByteBuf buf = GameByteBufAlloc.heapBuf(ctx.alloc(), Integer.BYTES * 2 + payloadSize);
+        buf.writeInt(Integer.BYTES + payloadSize);
+        buf.writeInt(heartbeat.isPong() ? ProxyFrameType.PONG : ProxyFrameType.PING);
+        buf.writeLong(heartbeat.getOriginNanos());
+        buf.writeLong(heartbeat.getOriginWallMicros());
+        if (heartbeat.isPong()) {
+            buf.writeLong(heartbeat.getPeerWallMicros());
+        }
+        ctx.write(buf, promise);
+    }
+
+    private void writeMulticast(ChannelHandlerContext ctx, ProxyMulticastMessage<B> message, ChannelPromise promise) {
+        ClientMessage<B> clientMessage = message.clientMessage();
+        ByteBuf content = clientMessage.content();
+        int clientMessageSize = content != null ? content.readableBytes() : clientMessageSize(clientMessage);
+        int targetSize = stringSize(message.groupId()) + VarIntUtil.varInt32Size(message.sessionIds().size());
+        for (String sessionId : message.sessionIds()) {
+            targetSize += stringSize(sessionId);
+        }
+        ByteBuf buf = GameByteBufAlloc.heapBuf(ctx.alloc(), Integer.BYTES * 2 + targetSize + clientMessageSize);
+        buf.writeInt(Integer.BYTES + targetSize + clientMessageSize);
+        buf.writeInt(ProxyFrameType.MULTICAST);
+        writeString(buf, message.groupId());
+        VarIntUtil.writeVarInt32(buf, message.sessionIds().size());
+        for (String sessionId : message.sessionIds()) {
+            writeString(buf, sessionId);
+        }
+        if (content != null) {
+            buf.writeBytes(content, content.readerIndex(), clientMessageSize);
+        } else {
+            writeClientMessage(clientMessage, clientMessageSize, buf);
+        }
+        ctx.write(buf, promise);
+    }
+
+    private static int stringSize(String value) {
+        return value == null ? Byte.BYTES : BinaryWireUtil.lengthDelimitedSize(ByteBufUtil.utf8Bytes(value));
+    }
+
+    private static void writeString(ByteBuf buf, String value) {
+        if (value == null) {
+            buf.writeByte(0);
+            return;
+        }
+        int length = ByteBufUtil.utf8Bytes(value);
+        VarIntUtil.writeVarInt32(buf, length);
+        ByteBufUtil.reserveAndWriteUtf8(buf, value, length);
+    }
+
+    private void writeSessionUnbind(ChannelHandlerContext ctx, String sessionId, ChannelPromise promise) {
+        ByteBuf buf = GameByteBufAlloc.heapBuf(ctx.alloc(), Integer.BYTES * 2 + Long.BYTES);
+        buf.writeInt(0);
+        buf.writeInt(ProxyFrameType.SESSION_UNBIND);
+        if (headerCodec.encodeSessionUnbind(sessionId, buf)) {
+            buf.setInt(0, buf.readableBytes() - Integer.BYTES);
+            ctx.write(buf, promise);
+        } else {
+            buf.release();
+            promise.trySuccess();
         }
     }
 }
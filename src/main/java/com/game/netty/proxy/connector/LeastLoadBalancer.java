@@ -0,0 +1,331 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.proxy.connector;
+
+import com.game.netty.ServerDefine;
+import com.game.netty.proxy.ProxyChannel;
+import com.game.netty.proxy.ProxyLinkStats;
+import io.netty.channel.EventLoop;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Pick the least loaded logic server of a ProxyConnector for stateless requests, by power of two choices.
+ * <p>
+ * The load score of a channel is: rtt * (inFlight + 1) + pendingWriteBytes / 1KB * pendingKbCost,
+ * rtt is the smoothed rtt of {@link ProxyLinkStats}, fed by heartbeats and request responses; with heartbeat off and
+ * no request sent by {@link ProxyChannel#request}, every link has the same unknown rtt and only inFlight and pending bytes count.
+ * <p>
+ * Outlier ejection: a server whose rtt is ejectionFactor times more than the median is skipped for a while,
+ * at most maxEjectionPercent servers are ejected at the same time.
+ * <p>
+ * For session affinity, use {@link ProxyRouter} instead.
+ */
+public class LeastLoadBalancer {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(LeastLoadBalancer.class);
+
+    private static final AtomicLongFieldUpdater<LeastLoadBalancer> NEXT_EVALUATE_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(LeastLoadBalancer.class, "nextEvaluateNanos");
+
+    private final ProxyConnector connector;
+
+    private volatile ServerState[] states;
+
+    private volatile long nextEvaluateNanos;
+
+    /**
+     * rtt used for a link without sample
+     */
+    private long unknownRttNanos = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private long pendingKbCostNanos = TimeUnit.MICROSECONDS.toNanos(10);
+
+    private double ejectionFactor = 3.0;
+
+    /**
+     * a server with rtt below this is never ejected
+     */
+    private long minEjectionRttNanos = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private long ejectionNanos = TimeUnit.SECONDS.toNanos(10);
+
+    private int maxEjectionPercent = 50;
+
+    private long evaluateIntervalNanos = TimeUnit.SECONDS.toNanos(1);
+
+    public LeastLoadBalancer(ProxyConnector connector) {
+        this.connector = connector;
+        this.nextEvaluateNanos = System.nanoTime();
+        this.states = buildStates(connector.getRemoteServers());
+        connector.addServerUpdateListener(servers -> states = buildStates(servers));
+    }
+
+    /**
+     * @param affinityKey pick the pooled channel by this key, like the session id hash, so requests of a key keep order
+     * @return picked channel, null if no connected server
+     * @see ProxyConnector#getChannel(int, int)
+     */
+    public ProxyConnectChannel next(int affinityKey) {
+        return next(null, affinityKey);
+    }
+
+    /**
+     * @param eventLoop event loop of the caller, pick the pooled channel on it
+     * @return picked channel, null if no connected server
+     * @see ProxyConnector#getChannel(int, EventLoop)
+     */
+    public ProxyConnectChannel next(EventLoop eventLoop) {
+        if (eventLoop == null) {
+            throw new NullPointerException("eventLoop");
+        }
+        return next(eventLoop, 0);
+    }
+
+    private ProxyConnectChannel next(EventLoop eventLoop, int affinityKey) {
+        long now = System.nanoTime();
+        maybeEvaluate(now);
+        ServerState[] states = this.states;
+        int n = states.length;
+        if (n == 0) {
+            return null;
+        }
+        if (n == 1) {
+            return channelOf(states[0], eventLoop, affinityKey, now, false);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int a = random.nextInt(n);
+        int b = random.nextInt(n - 1);
+        if (b >= a) {
+            b++;
+        }
+        ProxyConnectChannel first = channelOf(states[a], eventLoop, affinityKey, now, true);
+        ProxyConnectChannel second = channelOf(states[b], eventLoop, affinityKey, now, true);
+        if (first != null && second != null) {
+            return score(first) <= score(second) ? first : second;
+        }
+        if (first != null || second != null) {
+            return first != null ? first : second;
+        }
+        ProxyConnectChannel best = scan(states, eventLoop, affinityKey, now, true);
+        return best != null ? best : scan(states, eventLoop, affinityKey, now, false);
+    }
+
+    /**
+     * @param channel target channel
+     * @return load score of the channel, lower is better
+     */
+    public long score(ProxyConnectChannel channel) {
+        ProxyLinkStats stats = channel.getLinkStats();
+        long rtt = stats.getSmoothedRttNanos();
+        if (rtt == 0) {
+            rtt = unknownRttNanos;
+        }
+        return rtt * (Math.max(stats.getInFlight(), 0) + 1) + (channel.pendingWriteBytes() >> 10) * pendingKbCostNanos;
+    }
+
+    /**
+     * @return server id to its lowest channel score, -1 for server without connected channel
+     */
+    public Map<Integer, Long> getScores() {
+        Map<Integer, Long> scores = new LinkedHashMap<>();
+        for (ServerState state : states) {
+            long best = -1;
+            ProxyConnectChannel[] pool = connector.getChannels(state.server.getServerId());
+            if (pool != null) {
+                for (ProxyConnectChannel channel : pool) {
+                    if (channel.isConnected()) {
+                        long score = score(channel);
+                        best = best < 0 ? score : Math.min(best, score);
+                    }
+                }
+            }
+            scores.put(state.server.getServerId(), best);
+        }
+        return scores;
+    }
+
+    /**
+     * @param serverId server id
+     * @return whether the server is ejected as an outlier
+     */
+    public boolean isEjected(int serverId) {
+        long now = System.nanoTime();
+        for (ServerState state : states) {
+            if (state.server.getServerId() == serverId) {
+                return state.isEjected(now);
+            }
+        }
+        return false;
+    }
+
+    public void setUnknownRttNanos(long unknownRttNanos) {
+        this.unknownRttNanos = unknownRttNanos;
+    }
+
+    public void setPendingKbCostNanos(long pendingKbCostNanos) {
+        this.pendingKbCostNanos = pendingKbCostNanos;
+    }
+
+    public void setEjectionFactor(double ejectionFactor) {
+        this.ejectionFactor = ejectionFactor;
+    }
+
+    public void setMinEjectionRttNanos(long minEjectionRttNanos) {
+        this.minEjectionRttNanos = minEjectionRttNanos;
+    }
+
+    public void setEjectionNanos(long ejectionNanos) {
+        this.ejectionNanos = ejectionNanos;
+    }
+
+    public void setMaxEjectionPercent(int maxEjectionPercent) {
+        this.maxEjectionPercent = maxEjectionPercent;
+    }
+
+    public void setEvaluateIntervalNanos(long evaluateIntervalNanos) {
+        this.evaluateIntervalNanos = evaluateIntervalNanos;
+    }
+
+    private ProxyConnectChannel channelOf(ServerState state, EventLoop eventLoop, int affinityKey, long now, boolean skipEjected) {
+        if (skipEjected && state.isEjected(now)) {
+            return null;
+        }
+        int serverId = state.server.getServerId();
+        ProxyConnectChannel channel = eventLoop != null ? connector.getChannel(serverId, eventLoop)
+                : connector.getChannel(serverId, affinityKey);
+        return channel != null && channel.isConnected() ? channel : null;
+    }
+
+    private ProxyConnectChannel scan(ServerState[] states, EventLoop eventLoop, int affinityKey, long now, boolean skipEjected) {
+        ProxyConnectChannel best = null;
+        long bestScore = Long.MAX_VALUE;
+        for (ServerState state : states) {
+            ProxyConnectChannel channel = channelOf(state, eventLoop, affinityKey, now, skipEjected);
+            if (channel != null) {
+                long score = score(channel);
+                if (score < bestScore) {
+                    bestScore = score;
+                    best = channel;
+                }
+            }
+        }
+        return best;
+    }
+
+    private void maybeEvaluate(long now) {
+        long next = nextEvaluateNanos;
+        if (now - next < 0 || !NEXT_EVALUATE_UPDATER.compareAndSet(this, next, now + evaluateIntervalNanos)) {
+            return;
+        }
+        ServerState[] states = this.states;
+        long[] rtts = new long[states.length];
+        int measured = 0;
+        for (int i = 0; i < states.length; i++) {
+            rtts[i] = serverRtt(states[i]);
+            if (rtts[i] > 0) {
+                measured++;
+            }
+        }
+        if (measured < 2) {
+            return;
+        }
+        long[] sorted = Arrays.stream(rtts).filter(rtt -> rtt > 0).sorted().toArray();
+        long threshold = Math.max(minEjectionRttNanos, (long) (sorted[sorted.length / 2] * ejectionFactor));
+        int ejected = 0;
+        for (ServerState state : states) {
+            if (state.isEjected(now)) {
+                ejected++;
+            }
+        }
+        int maxEjected = states.length * maxEjectionPercent / 100;
+        for (int i = 0; i < states.length && ejected < maxEjected; i++) {
+            if (rtts[i] > threshold && !states[i].isEjected(now)) {
+                states[i].ejectedUntilNanos = now + ejectionNanos;
+                states[i].ejected = true;
+                ejected++;
+                if (logger.isWarnEnabled()) {
+                    logger.warn("eject outlier server {}, rtt {}ns, threshold {}ns", states[i].server, rtts[i], threshold);
+                }
+            }
+        }
+    }
+
+    /**
+     * average smoothed rtt of connected pooled channels, 0 if no sample
+     */
+    private long serverRtt(ServerState state) {
+        ProxyConnectChannel[] pool = connector.getChannels(state.server.getServerId());
+        if (pool == null) {
+            return 0;
+        }
+        long sum = 0;
+        int count = 0;
+        for (ProxyConnectChannel channel : pool) {
+            long rtt = channel.getLinkStats().getSmoothedRttNanos();
+            if (rtt > 0 && channel.isConnected()) {
+                sum += rtt;
+                count++;
+            }
+        }
+        return count == 0 ? 0 : sum / count;
+    }
+
+    private ServerState[] buildStates(List<ServerDefine> servers) {
+        Map<Integer, ServerState> old = new HashMap<>();
+        ServerState[] oldStates = this.states;
+        if (oldStates != null) {
+            for (ServerState state : oldStates) {
+                old.put(state.server.getServerId(), state);
+            }
+        }
+        ServerState[] newStates = new ServerState[servers.size()];
+        for (int i = 0; i < newStates.length; i++) {
+            ServerDefine server = servers.get(i);
+            ServerState state = new ServerState(server);
+            ServerState oldState = old.get(server.getServerId());
+            if (oldState != null) {
+                state.ejectedUntilNanos = oldState.ejectedUntilNanos;
+                state.ejected = oldState.ejected;
+            }
+            newStates[i] = state;
+        }
+        return newStates;
+    }
+
+    private static final class ServerState {
+        private final ServerDefine server;
+        private volatile long ejectedUntilNanos;
+        private volatile boolean ejected;
+
+        private ServerState(ServerDefine server) {
+            this.server = server;
+        }
+
+        private boolean isEjected(long now) {
+            return ejected && now - ejectedUntilNanos < 0;
+        }
+    }
+}
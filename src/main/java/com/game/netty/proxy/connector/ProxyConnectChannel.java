@@ -1,63 +1,132 @@
-/*
- * Copyright 2020 Long Huihu
- *
- * The Netty Project licenses this file to you under the Apache License,
- * version 2.0 (the "License"); you may not use this file except in compliance
- * with the License. You may obtain a copy of the License at:
- *
- *   http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
- * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
- * License for the specific language governing permissions and limitations
- * under the License.
- */
-
-package com.game.netty.proxy.connector;
-
-import com.game.netty.ServerDefine;
-import com.game.netty.proxy.ProxyChannel;
-import com.game.netty.config.AbstractChannelConfig;
-
-import java.util.concurrent.atomic.AtomicBoolean;
-
-/**
- * a channel at proxy to logic server
- */
-public final class ProxyConnectChannel extends ProxyChannel {
-
-    private final ServerDefine server;
-    private final AtomicBoolean isConnecting;
-
-    public ProxyConnectChannel(ServerDefine server, AbstractChannelConfig config) {
-        super(config);
-        this.server = server;
-        this.isConnecting = new AtomicBoolean(false);
-    }
-
-    public final ServerDefine getRemoteServer() {
-        return server;
-    }
-
-    boolean tryLockConnectingStatus() {
-        return isConnecting.compareAndSet(false, true);
-    }
-
-    void unLockConnectingStatus() {
-        isConnecting.set(false);
-    }
-
-    public boolean isConnected() {
-        return channel != null && channel.isActive();
-    }
-
-    @Override
-    public String toString() {
-        return "{" +
-                "server=" + server +
-                ", isConnecting=" + isConnecting +
-                ", channel=" + (channel==null?"null":channel.remoteAddress().toString()) +
-                '}';
-    }
-}
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.proxy.connector;
+
+import com.game.netty.ServerDefine;
+import com.game.netty.proxy.ProxyChannel;
+import com.game.netty.config.AbstractChannelConfig;
+import com.game.netty.proxy.ProxyMessage;
+import com.game.netty.util.ReconnectBackoff;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * a channel at proxy to logic server
+ */
+public final class ProxyConnectChannel extends ProxyChannel {
+
+    private final ServerDefine server;
+    private final AtomicBoolean isConnecting;
+    private final ReconnectBackoff backoff;
+
+    private volatile ProxyReplayBuffer replayBuffer;
+
+    /**
+     * index in the connection pool of the server
+     */
+    private final int poolIndex;
+
+    public ProxyConnectChannel(ServerDefine server, AbstractChannelConfig config) {
+        this(server, config, 0);
+    }
+
+    public ProxyConnectChannel(ServerDefine server, AbstractChannelConfig config, int poolIndex) {
+        super(config);
+        this.server = server;
+        this.poolIndex = poolIndex;
+        this.isConnecting = new AtomicBoolean(false);
+        this.backoff = new ReconnectBackoff(config.getReconnectMinDelayMillis(), config.getReconnectMaxDelayMillis());
+    }
+
+    public final ServerDefine getRemoteServer() {
+        return server;
+    }
+
+    public int getPoolIndex() {
+        return poolIndex;
+    }
+
+    boolean tryLockConnectingStatus() {
+        return isConnecting.compareAndSet(false, true);
+    }
+
+    void unLockConnectingStatus() {
+        isConnecting.set(false);
+    }
+
+    ReconnectBackoff getBackoff() {
+        return backoff;
+    }
+
+    public boolean isConnected() {
+        return channel != null && channel.isActive();
+    }
+
+    void setReplayBuffer(ProxyReplayBuffer replayBuffer) {
+        this.replayBuffer = replayBuffer;
+    }
+
+    /**
+     * @return replay buffer, null if not enabled
+     * @see ProxyConnector#initReplayBuffer
+     */
+    public ProxyReplayBuffer getReplayBuffer() {
+        return replayBuffer;
+    }
+
+    /**
+     * while reconnecting, or replaying, a message is held in replay buffer if enabled, the returned future is null then;
+     * requests are never buffered, they have their own timeout
+     */
+    @Override
+    protected ChannelFuture writeMessage(ProxyMessage<?, ?> message, boolean flush) {
+        ProxyReplayBuffer buffer = this.replayBuffer;
+        if (buffer == null || message.correlationId() != 0 || (isConnected() && buffer.isEmpty())) {
+            return super.writeMessage(message, flush);
+        }
+        buffer.offer(message);
+        Channel channel = this.channel;
+        if (channel != null && channel.isActive()) {
+            //connected during offer, or replaying
+            channel.eventLoop().execute(this::replay);
+        }
+        return null;
+    }
+
+    /**
+     * replay buffered messages, called on channel eventLoop when connected
+     */
+    void replay() {
+        ProxyReplayBuffer buffer = this.replayBuffer;
+        Channel channel = this.channel;
+        if (buffer != null && channel != null && channel.isActive()) {
+            buffer.replay(channel);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+                "server=" + server +
+                ", poolIndex=" + poolIndex +
+                ", isConnecting=" + isConnecting +
+                ", channel=" + (channel==null?"null":channel.remoteAddress().toString()) +
+                '}';
+    }
+}
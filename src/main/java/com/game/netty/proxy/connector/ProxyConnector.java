@@ -18,40 +18,75 @@ package com.game.netty.proxy.connector;
 
 import com.game.netty.ChannelEvent;
 import com.game.netty.ServerDefine;
+import com.game.netty.client.ClientMessage;
+import com.game.netty.client.acceptor.AbstractClientAcceptor;
+import com.game.netty.client.acceptor.ClientAcceptedChannel;
+import com.game.netty.client.acceptor.group.ClientGroup;
+import com.game.netty.client.acceptor.session.SessionInterface;
+import com.game.netty.client.acceptor.session.SessionManagerInterface;
+import com.game.netty.client.codec.MessageBodyCodec;
 import com.game.netty.proxy.ProxyMessage;
+import com.game.netty.proxy.ProxyMulticastMessage;
 import com.game.netty.netty.GameNettyEnv;
 import com.game.netty.netty.GameNettyUtil;
+import com.game.netty.proxy.codec.ProxyHeartbeatHandler;
 import com.game.netty.proxy.codec.ProxyMessageDecoder;
 import com.game.netty.proxy.codec.ProxyMessageEncoder;
 import com.game.netty.config.ProxyChannelConfig;
 import com.game.netty.config.codec.ProxyCodecConfig;
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.*;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleStateEvent;
 import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * connector for proxy to initiate connect to logic server
+ * <p>
+ * The connector keeps a pool of connections to each server, one connection by default.
+ * When sharing the worker EventLoopGroup of the client acceptor and using {@link #POOL_PER_EVENT_LOOP},
+ * each worker loop gets its own connection registered on that loop; picking the channel by
+ * {@link #getChannel(int, EventLoop)} then forwards client messages without crossing threads,
+ * and keeps them in order as a client channel never changes its loop.
+ * <p>
+ * Connects are asynchronous and run in parallel, a failed or closed connection is retried with
+ * exponential backoff and jitter, see {@link ProxyChannelConfig#getReconnectMinDelayMillis()};
+ * a periodic check is kept as a safety net.
  */
 @SuppressWarnings("unused")
 public class ProxyConnector {
     private static final InternalLogger log = InternalLoggerFactory.getInstance(ProxyConnector.class);
 
-    private final Map<Integer, ProxyConnectChannel> channelMap = new ConcurrentHashMap<>();
+    /**
+     * pool size option: one connection per worker event loop
+     */
+    public static final int POOL_PER_EVENT_LOOP = 0;
+
+    /**
+     * server id to its connection pool, the array never changes after created
+     */
+    private final Map<Integer, ProxyConnectChannel[]> channelMap = new ConcurrentHashMap<>();
 
     private ProxyChannelConfig config;
     private ProxyCodecConfig codecConfig;
@@ -60,7 +95,19 @@ public class ProxyConnector {
 
     private final EventLoopGroup workerGroup;
 
-    private ProxyMessageEncoder<?, ?> sharedEncoder;
+    /**
+     * whether the worker group is created by the connector, a shared group is not shut down
+     */
+    private final boolean ownWorkerGroup;
+
+    /**
+     * event loops of worker group, pooled connection i is registered on loops[i % loops.length]
+     */
+    private final EventLoop[] loops;
+
+    private final Map<EventExecutor, Integer> loopIndex = new IdentityHashMap<>();
+
+    private int poolSize = 1;
 
     private final ProxyConnectorDelegate<?, ?> delegate;
 
@@ -69,9 +116,38 @@ public class ProxyConnector {
 
     private final AtomicBoolean started = new AtomicBoolean(false);
 
+    private final List<Consumer<List<ServerDefine>>> serverUpdateListeners = new CopyOnWriteArrayList<>();
+
+    private int replayMaxBytes;
+    private long replayMaxAgeMillis;
+    private ProxyReplayBuffer.OverflowPolicy replayOverflowPolicy;
+
+    private AbstractClientAcceptor clientAcceptor;
+    private Function<String, Iterable<? extends ClientAcceptedChannel>> groupResolver;
+
     public ProxyConnector(ProxyConnectorDelegate<?, ?> delegate) {
-        this.workerGroup = GameNettyEnv.DEFAULT.createWorkerEventLoopGroup(0);
+        this(delegate, GameNettyEnv.DEFAULT.createWorkerEventLoopGroup(0), true);
+    }
+
+    /**
+     * @param delegate    delegator for handle connector related events
+     * @param workerGroup shared event loop group, normally the worker group of client acceptor,
+     *                    see AbstractClientAcceptor.getWorkerEventLoopGroup()
+     */
+    public ProxyConnector(ProxyConnectorDelegate<?, ?> delegate, EventLoopGroup workerGroup) {
+        this(delegate, workerGroup, false);
+    }
+
+    private ProxyConnector(ProxyConnectorDelegate<?, ?> delegate, EventLoopGroup workerGroup, boolean ownWorkerGroup) {
+        this.workerGroup = workerGroup;
+        this.ownWorkerGroup = ownWorkerGroup;
         this.delegate = delegate;
+        List<EventLoop> loopList = new ArrayList<>();
+        for (EventExecutor executor : workerGroup) {
+            loopIndex.put(executor, loopList.size());
+            loopList.add((EventLoop) executor);
+        }
+        this.loops = loopList.toArray(new EventLoop[0]);
         scheduledExecutorService = new ScheduledThreadPoolExecutor(1);
     }
 
@@ -85,12 +161,79 @@ public class ProxyConnector {
         return this;
     }
 
+    /**
+     * enable a replay buffer for each pooled connection, messages written while reconnecting are held
+     * and written in order once connected, must be called before start
+     *
+     * @param maxBytes       max buffered bytes of a connection
+     * @param maxAgeMillis   a message buffered longer is dropped
+     * @param overflowPolicy what to drop when full
+     * @return this
+     */
+    public ProxyConnector initReplayBuffer(int maxBytes, long maxAgeMillis, ProxyReplayBuffer.OverflowPolicy overflowPolicy) {
+        if (started.get()) {
+            throw new IllegalStateException("connector has already started");
+        }
+        this.replayMaxBytes = maxBytes;
+        this.replayMaxAgeMillis = maxAgeMillis;
+        this.replayOverflowPolicy = overflowPolicy;
+        return this;
+    }
+
+    /**
+     * enable fan out of ProxyMulticastMessage, by session ids only
+     *
+     * @param clientAcceptor acceptor of client channels, sessions are resolved by its session manager
+     * @return this
+     */
+    public ProxyConnector initMulticast(AbstractClientAcceptor clientAcceptor) {
+        return initMulticast(clientAcceptor, null);
+    }
+
+    /**
+     * enable fan out of ProxyMulticastMessage, a message received from logic server is encoded once
+     * and written to every target client channel
+     *
+     * @param clientAcceptor acceptor of client channels, sessions are resolved by its session manager
+     * @param groupResolver  resolve group id to channels, null to use the groups of acceptor, see {@link AbstractClientAcceptor#getGroupManager()}
+     * @return this
+     */
+    public ProxyConnector initMulticast(AbstractClientAcceptor clientAcceptor,
+                                        Function<String, Iterable<? extends ClientAcceptedChannel>> groupResolver) {
+        this.clientAcceptor = clientAcceptor;
+        this.groupResolver = groupResolver;
+        return this;
+    }
+
+    /**
+     * config connection count to each server, must be called before start.
+     * <p>
+     * Attention: each pooled connection is a ProxyAcceptedChannel at logic server,
+     * a channelIdentity set there should tell pooled connections apart.
+     *
+     * @param poolSize connection count, or {@link #POOL_PER_EVENT_LOOP}
+     * @return this
+     */
+    public ProxyConnector initPool(int poolSize) {
+        if (started.get()) {
+            throw new IllegalStateException("connector has already started");
+        }
+        if (poolSize < 0) {
+            throw new IllegalArgumentException("poolSize: " + poolSize);
+        }
+        this.poolSize = poolSize == POOL_PER_EVENT_LOOP ? loops.length : poolSize;
+        return this;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
     public void start(List<ServerDefine> servers) {
         if (!started.compareAndSet(false, true)) {
             throw new IllegalStateException("connector has already started");
         }
         updateRemoteServers(servers);
-        sharedEncoder = new ProxyMessageEncoder<>(codecConfig.headCodec().get(), codecConfig.bodyCodec().get(), codecConfig.getClientMessageHeadSize());
         scheduledExecutorService.execute(() -> {
             checkChannels();
             this.delegate.onConnectorStart();
@@ -98,24 +241,126 @@ public class ProxyConnector {
         checkChannelTaskFuture = scheduledExecutorService.scheduleAtFixedRate(this::checkChannels, 5, 5, TimeUnit.SECONDS);
     }
 
+    /**
+     * update remote servers, connections to new servers are initiated and obsolete ones are closed immediately
+     *
+     * @param servers all remote servers
+     */
     public void updateRemoteServers(List<ServerDefine> servers) {
         this.servers.clear();
         this.servers.addAll(servers);
+        List<ServerDefine> current = getRemoteServers();
+        for (Consumer<List<ServerDefine>> listener : serverUpdateListeners) {
+            listener.accept(current);
+        }
+        if (started.get()) {
+            scheduledExecutorService.execute(this::checkChannels);
+        }
+    }
+
+    /**
+     * @return snapshot of remote servers
+     */
+    public List<ServerDefine> getRemoteServers() {
+        return Collections.unmodifiableList(new ArrayList<>(servers));
+    }
+
+    /**
+     * listen remote servers update, the listener is called in the thread calling updateRemoteServers
+     *
+     * @param listener accept the new server list
+     */
+    public void addServerUpdateListener(Consumer<List<ServerDefine>> listener) {
+        serverUpdateListeners.add(listener);
     }
 
     public void shutDown() {
         if (started.compareAndSet(true, false)) {
-            for (Map.Entry<Integer, ProxyConnectChannel> e : channelMap.entrySet()) {
-                e.getValue().close();
+            for (Map.Entry<Integer, ProxyConnectChannel[]> e : channelMap.entrySet()) {
+                for (ProxyConnectChannel channel : e.getValue()) {
+                    channel.close();
+                    if (channel.getReplayBuffer() != null) {
+                        channel.getReplayBuffer().clear();
+                    }
+                }
             }
             checkChannelTaskFuture.cancel(true);
             checkChannelTaskFuture = null;
+            if (ownWorkerGroup) {
+                workerGroup.shutdownGracefully();
+            }
         }
     }
 
-
+    /**
+     * @param serverId server id
+     * @return the first pooled channel to the server
+     */
     public ProxyConnectChannel getChannel(int serverId) {
-        return channelMap.get(serverId);
+        ProxyConnectChannel[] pool = channelMap.get(serverId);
+        return pool == null ? null : pool[0];
+    }
+
+    /**
+     * pick the pooled channel for a client channel by its event loop, with a connection per event loop,
+     * the picked channel is on the same loop.
+     *
+     * @param serverId  server id
+     * @param eventLoop event loop of the client channel
+     * @return picked channel, null if server not found
+     */
+    public ProxyConnectChannel getChannel(int serverId, EventLoop eventLoop) {
+        Integer index = loopIndex.get(eventLoop);
+        return getChannel(serverId, index != null ? index : System.identityHashCode(eventLoop));
+    }
+
+    /**
+     * pick the pooled channel by an affinity hash, such as session id hash, the same hash always picks the same channel.
+     * If the picked channel is not connected, the next connected one is used, the order is not kept in this case.
+     *
+     * @param serverId     server id
+     * @param affinityHash affinity hash
+     * @return picked channel, null if server not found
+     */
+    public ProxyConnectChannel getChannel(int serverId, int affinityHash) {
+        ProxyConnectChannel[] pool = channelMap.get(serverId);
+        if (pool == null) {
+            return null;
+        }
+        int index = (affinityHash & Integer.MAX_VALUE) % pool.length;
+        for (int i = 0; i < pool.length; i++) {
+            ProxyConnectChannel channel = pool[(index + i) % pool.length];
+            if (channel.isConnected()) {
+                return channel;
+            }
+        }
+        return pool[index];
+    }
+
+    /**
+     * @param serverId server id
+     * @return all pooled channels to the server, null if server not found
+     */
+    public ProxyConnectChannel[] getChannels(int serverId) {
+        ProxyConnectChannel[] pool = channelMap.get(serverId);
+        return pool == null ? null : pool.clone();
+    }
+
+    /**
+     * tell all logic servers a client session is closed, the gateway must call it when a client session is removed,
+     * usually on CHANNEL_INACTIVE of the client channel, so a stateful ProxyHeaderCodec can drop the session
+     *
+     * @param sessionId closed session
+     * @see ProxyConnectChannel#unbindSession(String)
+     */
+    public void unbindSession(String sessionId) {
+        for (ProxyConnectChannel[] pool : channelMap.values()) {
+            for (ProxyConnectChannel channel : pool) {
+                if (channel.isConnected()) {
+                    channel.unbindSession(sessionId);
+                }
+            }
+        }
     }
 
     private void checkChannels() {
@@ -131,49 +376,99 @@ public class ProxyConnector {
 
     private void doCheckChannels() {
         // 关闭过期链接
-        Iterator<Map.Entry<Integer, ProxyConnectChannel>> iterator = channelMap.entrySet().iterator();
+        Iterator<Map.Entry<Integer, ProxyConnectChannel[]>> iterator = channelMap.entrySet().iterator();
         while (iterator.hasNext()) {
-            Map.Entry<Integer, ProxyConnectChannel> entry = iterator.next();
+            Map.Entry<Integer, ProxyConnectChannel[]> entry = iterator.next();
+            ServerDefine remoteServer = entry.getValue()[0].getRemoteServer();
 
             boolean find = false;
             for (ServerDefine server : servers) {
-                if (server.equals(entry.getValue().getRemoteServer())) {
+                if (server.equals(remoteServer)) {
                     find = true;
                     break;
                 }
             }
             if (!find) {
-                entry.getValue().close();
+                for (ProxyConnectChannel channel : entry.getValue()) {
+                    channel.close();
+                    if (channel.getReplayBuffer() != null) {
+                        channel.getReplayBuffer().clear();
+                    }
+                }
                 iterator.remove();
-                log.info("remove obsolete channel {}", entry.getValue());
+                log.info("remove obsolete server {}", remoteServer);
             }
         }
 
         //为新加入的server建立连接
         for (ServerDefine server : servers) {
-            final ProxyConnectChannel serverChannel = channelMap.get(server.getServerId());
-            if (serverChannel != null) {
-                if (!serverChannel.isConnected() && serverChannel.tryLockConnectingStatus()) {
-                    scheduledExecutorService.execute(() -> connect(serverChannel));
-                }
-            } else {
-                ProxyConnectChannel newChannel = new ProxyConnectChannel(server, config);
-                if (channelMap.putIfAbsent(server.getServerId(), newChannel) == null) {
-                    if (newChannel.tryLockConnectingStatus()) {
-                        scheduledExecutorService.execute(() -> connect(newChannel));
+            ProxyConnectChannel[] pool = channelMap.get(server.getServerId());
+            if (pool == null) {
+                ProxyConnectChannel[] newPool = new ProxyConnectChannel[poolSize];
+                for (int i = 0; i < poolSize; i++) {
+                    newPool[i] = new ProxyConnectChannel(server, config, i);
+                    if (replayMaxBytes > 0) {
+                        newPool[i].setReplayBuffer(newReplayBuffer());
                     }
                 }
+                pool = channelMap.putIfAbsent(server.getServerId(), newPool);
+                if (pool == null) {
+                    pool = newPool;
+                }
+            }
+            for (ProxyConnectChannel serverChannel : pool) {
+                tryConnect(serverChannel);
             }
         }
     }
 
+    @SuppressWarnings("unchecked")
+    private ProxyReplayBuffer newReplayBuffer() {
+        MessageBodyCodec<Object> bodyCodec = (MessageBodyCodec<Object>) codecConfig.bodyCodec().get();
+        return new ProxyReplayBuffer(replayMaxBytes, replayMaxAgeMillis, replayOverflowPolicy, message -> {
+            ClientMessage<?> clientMessage = message.clientMessage();
+            ByteBuf content = clientMessage.content();
+            return content != null ? content.readableBytes() : bodyCodec.bodyEncodeSize(clientMessage.getHead(), clientMessage.getBody());
+        });
+    }
+
+    private void tryConnect(ProxyConnectChannel serverChannel) {
+        if (started.get() && !serverChannel.isConnected() && isActive(serverChannel) && serverChannel.tryLockConnectingStatus()) {
+            connect(serverChannel);
+        }
+    }
+
+    /**
+     * @return whether the channel is still in pool, a channel of removed server is not reconnected
+     */
+    private boolean isActive(ProxyConnectChannel serverChannel) {
+        ProxyConnectChannel[] pool = channelMap.get(serverChannel.getRemoteServer().getServerId());
+        return pool != null && serverChannel.getPoolIndex() < pool.length && pool[serverChannel.getPoolIndex()] == serverChannel;
+    }
+
+    private void scheduleReconnect(ProxyConnectChannel serverChannel) {
+        if (!started.get() || !isActive(serverChannel)) {
+            return;
+        }
+        long delay = serverChannel.getBackoff().nextDelayMillis();
+        loopOf(serverChannel).schedule(() -> tryConnect(serverChannel), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private EventLoop loopOf(ProxyConnectChannel serverChannel) {
+        return loops[serverChannel.getPoolIndex() % loops.length];
+    }
+
+    /**
+     * start an asynchronous connect, the connecting status must be locked by caller
+     */
     private void connect(ProxyConnectChannel serverChannel) {
         ServerDefine server = serverChannel.getRemoteServer();
         try {
             delegate.onChannelStatusEvent(serverChannel, ChannelEvent.CHANNEL_CONNECT);
 
             Bootstrap b = new Bootstrap();
-            b.group(workerGroup).channel(GameNettyEnv.DEFAULT.clientChannelClass()).handler(new ChannelInitializer<SocketChannel>() {
+            EventLoop loop = loopOf(serverChannel);
+            b.group(loop).channel(GameNettyEnv.DEFAULT.clientChannelClass()).handler(new ChannelInitializer<SocketChannel>() {
                 @Override
                 public void initChannel(SocketChannel ch) {
                     int idleTime = config.getChannelIdleSecond();
@@ -186,25 +481,72 @@ public class ProxyConnector {
                     if (GameNettyUtil.getLogLevel() != null) {
                         ch.pipeline().addLast(new LoggingHandler(GameNettyUtil.getLogLevel()));
                     }
-                    ch.pipeline().addLast(sharedEncoder);
-                    ch.pipeline().addLast(new ProxyMessageDecoder<>(codecConfig.headCodec().get(), codecConfig.bodyCodec().get(), codecConfig.getClientMessageHeadSize(), codecConfig.isDecoderKeepMessageBuf()));
+                    ProxyMessageEncoder<?, ?> encoder = new ProxyMessageEncoder<>(codecConfig.headCodec().get(), codecConfig.bodyCodec().get(), codecConfig.getClientMessageHeadSize());
+                    encoder.setBatch(codecConfig.getMaxBatchBytes());
+                    ch.pipeline().addLast(encoder);
+                    ProxyMessageDecoder<?, ?> decoder = new ProxyMessageDecoder<>(codecConfig.headCodec().get(), codecConfig.bodyCodec().get(), codecConfig.getClientMessageHeadSize(), codecConfig.isDecoderKeepMessageBuf());
+                    decoder.setPooledMessage(codecConfig.isPooledMessage());
+                    ch.pipeline().addLast(decoder);
+                    ch.pipeline().addLast(new ProxyHeartbeatHandler(config.getHeartbeatIntervalMillis(), config.getHeartbeatTimeoutMillis()));
                     ch.pipeline().addLast(new PrivateHandler(serverChannel));
                 }
             });
 
+            b.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, config.getConnectTimeoutMillis());
             config.getChannelOptions().forEach(b::option);
             SocketAddress address = new InetSocketAddress(server.getIp(), server.getPort());
-            ChannelFuture f = b.connect(address).sync();
-            if (f.isSuccess()) {
-                log.info("connected to {}", server);
-            } else {
-                log.warn("connect fail to {}", server);
-                delegate.onChannelStatusEvent(serverChannel, ChannelEvent.CHANNEL_CONNECT_FAIL);
-            }
+            b.connect(address).addListener((ChannelFutureListener) f -> {
+                if (f.isSuccess()) {
+                    //the connecting status is released in channelActive, after the channel is published
+                    log.info("connected to {}", server);
+                } else {
+                    log.warn("connect fail to {} {}", server, f.cause());
+                    serverChannel.unLockConnectingStatus();
+                    delegate.onChannelStatusEvent(serverChannel, ChannelEvent.CHANNEL_CONNECT_FAIL);
+                    scheduleReconnect(serverChannel);
+                }
+            });
         } catch (Exception e) {
             log.warn("connect fail to {} {}", server, e);
-        } finally {
             serverChannel.unLockConnectingStatus();
+            scheduleReconnect(serverChannel);
+        }
+    }
+
+    /**
+     * called on channel eventLoop, message is released by caller;
+     * a client both in the group and in the session list receives the message once
+     */
+    private void fanOut(ProxyMulticastMessage<?> message) {
+        AbstractClientAcceptor acceptor = this.clientAcceptor;
+        if (acceptor == null) {
+            log.warn("multicast not enabled, drop {}", message);
+            return;
+        }
+        Set<ClientAcceptedChannel> targets = Collections.newSetFromMap(new IdentityHashMap<>());
+        SessionManagerInterface<?> sessionManager = acceptor.getSessionManager();
+        if (sessionManager != null) {
+            for (String sessionId : message.sessionIds()) {
+                SessionInterface session = sessionManager.getSession(sessionId);
+                if (session != null && session.channel() != null) {
+                    targets.add(session.channel());
+                }
+            }
+        }
+        if (message.groupId() != null) {
+            Iterable<? extends ClientAcceptedChannel> group = groupResolver != null ? groupResolver.apply(message.groupId()) : null;
+            ClientGroup clientGroup;
+            if (group != null) {
+                group.forEach(targets::add);
+            } else if (groupResolver == null && (clientGroup = acceptor.getGroupManager().get(message.groupId())) != null) {
+                //members are only visible on their own eventLoops, the group skips the session targets written below
+                clientGroup.writeAndFlushExcept(message.clientMessage().retain(), targets);
+            } else {
+                log.warn("unknown multicast group {}", message.groupId());
+            }
+        }
+        if (!targets.isEmpty()) {
+            acceptor.multicast(message.clientMessage().retain(), targets);
         }
     }
 
@@ -218,14 +560,43 @@ public class ProxyConnector {
 
         @Override
         public void channelActive(ChannelHandlerContext ctx) {
+            if (!isActive(serverChannel)) {
+                //the server was removed while connecting, the channel would never be used nor closed
+                log.info("backendChannel active but obsolete, close it {}", serverChannel);
+                ctx.pipeline().remove(this);
+                ctx.channel().close();
+                serverChannel.unLockConnectingStatus();
+                return;
+            }
             log.info("backendChannel active {}", serverChannel);
+            serverChannel.getBackoff().reset();
             serverChannel.onConnected(ctx.channel());
+            serverChannel.unLockConnectingStatus();
+            serverChannel.replay();
             delegate.onChannelStatusEvent(serverChannel, ChannelEvent.CHANNEL_CONNECTED);
         }
 
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (msg instanceof ProxyMulticastMessage) {
+                ProxyMulticastMessage<?> message = (ProxyMulticastMessage<?>) msg;
+                try {
+                    fanOut(message);
+                } finally {
+                    message.release();
+                }
+            } else {
+                super.channelRead(ctx, msg);
+            }
+        }
+
         //we don't need to release msg here, as ProxyMessage extends ReferenceCounted
         @Override
         protected void channelRead0(ChannelHandlerContext ctx, ProxyMessage msg) {
+            if (msg.isResponse()) {
+                serverChannel.completeRequest(msg.retain());
+                return;
+            }
             delegate.onChannelMessage(serverChannel, msg);
         }
 
@@ -233,7 +604,9 @@ public class ProxyConnector {
         public void channelInactive(ChannelHandlerContext ctx) {
             log.info("backendChannel inactive {}", serverChannel);
             serverChannel.close();
+            serverChannel.onDisconnected();
             delegate.onChannelStatusEvent(serverChannel, ChannelEvent.CHANNEL_INACTIVE);
+            scheduleReconnect(serverChannel);
         }
 
         @Override
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.proxy.connector;
+
+import com.game.netty.proxy.ProxyMessage;
+import io.netty.channel.Channel;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+/**
+ * A bounded buffer of outbound ProxyMessages written while a ProxyConnectChannel is reconnecting,
+ * replayed in order when the channel is connected again.
+ * <p>
+ * The buffer is bounded by bytes and by age: an expired message is dropped when the buffer is trimmed or replayed,
+ * an overflow drops the oldest or the newest message, see {@link OverflowPolicy}.
+ * Messages are kept as ProxyMessage, not encoded bytes, as the encoding may depend on connection state
+ * of a stateful ProxyHeaderCodec.
+ * <p>
+ * All methods are thread safe.
+ */
+public final class ProxyReplayBuffer {
+
+    public enum OverflowPolicy {
+        /**
+         * drop the oldest messages to make room for the new one
+         */
+        DROP_OLDEST,
+        /**
+         * drop the new message
+         */
+        DROP_NEWEST
+    }
+
+    private static final class Entry {
+        private final ProxyMessage<?, ?> message;
+        private final int size;
+        private final long enqueueNanos;
+
+        private Entry(ProxyMessage<?, ?> message, int size, long enqueueNanos) {
+            this.message = message;
+            this.size = size;
+            this.enqueueNanos = enqueueNanos;
+        }
+    }
+
+    private final int maxBytes;
+    private final long maxAgeNanos;
+    private final OverflowPolicy overflowPolicy;
+    private final ToIntFunction<ProxyMessage<?, ?>> sizeEstimator;
+
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private long bufferedBytes;
+
+    /**
+     * set by clear, no message is buffered after that
+     */
+    private boolean closed;
+
+    private long overflowCount;
+    private long expiredCount;
+    private long replayedCount;
+
+    /**
+     * @param maxBytes       max buffered bytes
+     * @param maxAgeMillis   max buffered time of a message
+     * @param overflowPolicy what to drop on overflow
+     * @param sizeEstimator  estimate encoded size of a message
+     */
+    public ProxyReplayBuffer(int maxBytes, long maxAgeMillis, OverflowPolicy overflowPolicy, ToIntFunction<ProxyMessage<?, ?>> sizeEstimator) {
+        if (maxBytes <= 0 || maxAgeMillis <= 0) {
+            throw new IllegalArgumentException("maxBytes: " + maxBytes + ", maxAgeMillis: " + maxAgeMillis);
+        }
+        this.maxBytes = maxBytes;
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMillis);
+        this.overflowPolicy = overflowPolicy;
+        this.sizeEstimator = sizeEstimator;
+    }
+
+    /**
+     * @param message message to buffer, Attention: ownership transfer happened here
+     * @return whether buffered, the message is released if not, or if the buffer is cleared
+     */
+    public boolean offer(ProxyMessage<?, ?> message) {
+        int size = sizeEstimator.applyAsInt(message);
+        long now = System.nanoTime();
+        synchronized (this) {
+            if (closed) {
+                message.release();
+                return false;
+            }
+            trimExpired(now);
+            if (size > maxBytes || (bufferedBytes + size > maxBytes && overflowPolicy == OverflowPolicy.DROP_NEWEST)) {
+                overflowCount++;
+                message.release();
+                return false;
+            }
+            while (bufferedBytes + size > maxBytes) {
+                Entry oldest = entries.poll();
+                bufferedBytes -= oldest.size;
+                overflowCount++;
+                oldest.message.release();
+            }
+            entries.add(new Entry(message, size, now));
+            bufferedBytes += size;
+            return true;
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * write all unexpired messages to the channel in order and flush, called on channel eventLoop
+     *
+     * @param channel connected channel
+     * @return replayed message count
+     */
+    public int replay(Channel channel) {
+        int count = 0;
+        long now = System.nanoTime();
+        for (; ; ) {
+            Entry entry;
+            synchronized (this) {
+                trimExpired(now);
+                entry = entries.poll();
+                if (entry == null) {
+                    break;
+                }
+                bufferedBytes -= entry.size;
+                replayedCount++;
+            }
+            channel.write(entry.message);
+            count++;
+        }
+        if (count > 0) {
+            channel.flush();
+        }
+        return count;
+    }
+
+    /**
+     * release all buffered messages and close the buffer, e.g. the server is removed or the connector shut down;
+     * a message offered later is released, as nobody will replay it
+     */
+    public void clear() {
+        ArrayDeque<Entry> dropped;
+        synchronized (this) {
+            closed = true;
+            dropped = new ArrayDeque<>(entries);
+            entries.clear();
+            bufferedBytes = 0;
+        }
+        for (Entry entry : dropped) {
+            entry.message.release();
+        }
+    }
+
+    private void trimExpired(long now) {
+        Entry oldest;
+        while ((oldest = entries.peek()) != null && now - oldest.enqueueNanos > maxAgeNanos) {
+            entries.poll();
+            bufferedBytes -= oldest.size;
+            expiredCount++;
+            oldest.message.release();
+        }
+    }
+
+    public synchronized int getBufferedMessages() {
+        return entries.size();
+    }
+
+    public synchronized long getBufferedBytes() {
+        return bufferedBytes;
+    }
+
+    /**
+     * @return messages dropped by overflow
+     */
+    public synchronized long getOverflowCount() {
+        return overflowCount;
+    }
+
+    /**
+     * @return messages dropped by age
+     */
+    public synchronized long getExpiredCount() {
+        return expiredCount;
+    }
+
+    public synchronized long getReplayedCount() {
+        return replayedCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ProxyReplayBuffer{" +
+                "bufferedMessages=" + entries.size() +
+                ", bufferedBytes=" + bufferedBytes +
+                ", overflow=" + overflowCount +
+                ", expired=" + expiredCount +
+                ", replayed=" + replayedCount +
+                '}';
+    }
+}
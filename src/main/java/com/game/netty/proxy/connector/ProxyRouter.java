@@ -0,0 +1,168 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.proxy.connector;
+
+import com.game.netty.ServerDefine;
+import io.netty.channel.EventLoop;
+import io.netty.util.internal.MathUtil;
+
+import java.util.List;
+
+/**
+ * Route a session or user key to a logic server of a ProxyConnector, the same key always goes to the same server.
+ * <p>
+ * Keys are hashed into a fixed number of slots, each slot is assigned by weighted rendezvous hashing, so
+ * when servers change, only slots won by the removed server or by the new one move, that's the minimal fraction.
+ * The slot table is rebuilt on ProxyConnector.updateRemoteServers, routing is one array lookup, no allocation.
+ * <p>
+ * A server with weight less than 1 gets no key.
+ */
+public class ProxyRouter {
+
+    public static final int DEFAULT_SLOT_COUNT = 4096;
+
+    private final ProxyConnector connector;
+
+    private final int slotCount;
+
+    private volatile Table table;
+
+    public ProxyRouter(ProxyConnector connector) {
+        this(connector, DEFAULT_SLOT_COUNT);
+    }
+
+    /**
+     * @param connector connector to route
+     * @param slotCount slot count, rounded up to power of 2, should be much more than server count
+     */
+    public ProxyRouter(ProxyConnector connector, int slotCount) {
+        this.connector = connector;
+        this.slotCount = MathUtil.findNextPositivePowerOfTwo(slotCount);
+        this.table = buildTable(connector.getRemoteServers());
+        connector.addServerUpdateListener(servers -> table = buildTable(servers));
+    }
+
+    /**
+     * @param key routing key, like user id
+     * @return target server, null if no server
+     */
+    public ServerDefine route(long key) {
+        Table table = this.table;
+        if (table.servers.length == 0) {
+            return null;
+        }
+        return table.servers[table.slots[slotOf(key)]];
+    }
+
+    /**
+     * @param key routing key, like session id, its hashCode is used
+     * @return target server, null if no server
+     */
+    public ServerDefine route(Object key) {
+        return route(key.hashCode());
+    }
+
+    /**
+     * @param key routing key
+     * @return a pooled channel to target server chosen by the key, null if no server
+     */
+    public ProxyConnectChannel routeChannel(long key) {
+        ServerDefine server = route(key);
+        return server == null ? null : connector.getChannel(server.getServerId(), (int) mix(key));
+    }
+
+    /**
+     * @param key       routing key
+     * @param eventLoop event loop of the client channel
+     * @return the pooled channel on the event loop to target server, null if no server
+     * @see ProxyConnector#getChannel(int, EventLoop)
+     */
+    public ProxyConnectChannel routeChannel(long key, EventLoop eventLoop) {
+        ServerDefine server = route(key);
+        return server == null ? null : connector.getChannel(server.getServerId(), eventLoop);
+    }
+
+    /**
+     * @param server target server
+     * @return count of slots owned by the server, for monitor
+     */
+    public int slotsOf(ServerDefine server) {
+        Table table = this.table;
+        if (table.servers.length == 0) {
+            return 0;
+        }
+        int count = 0;
+        for (int index : table.slots) {
+            if (table.servers[index].equals(server)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int slotOf(long key) {
+        return (int) mix(key) & (slotCount - 1);
+    }
+
+    private Table buildTable(List<ServerDefine> serverList) {
+        ServerDefine[] servers = serverList.stream().filter(s -> s.getWeight() > 0).toArray(ServerDefine[]::new);
+        int[] slots = new int[slotCount];
+        if (servers.length > 1) {
+            for (int slot = 0; slot < slotCount; slot++) {
+                int best = 0;
+                double bestScore = Double.NEGATIVE_INFINITY;
+                for (int i = 0; i < servers.length; i++) {
+                    double score = score(slot, servers[i]);
+                    if (score > bestScore) {
+                        bestScore = score;
+                        best = i;
+                    }
+                }
+                slots[slot] = best;
+            }
+        }
+        return new Table(servers, slots);
+    }
+
+    /**
+     * weighted rendezvous score: -weight / ln(u), u is a uniform (0,1) hash of slot and server
+     */
+    private static double score(int slot, ServerDefine server) {
+        long hash = mix(((long) server.getServerId() << 32) ^ (slot & 0xFFFFFFFFL) ^ server.identifier().hashCode() * 0x9E3779B97F4A7C15L);
+        double u = ((hash >>> 11) + 0.5) * 0x1.0p-53;
+        return -server.getWeight() / Math.log(u);
+    }
+
+    /**
+     * splitmix64 finalizer
+     */
+    private static long mix(long key) {
+        key = (key ^ (key >>> 30)) * 0xBF58476D1CE4E5B9L;
+        key = (key ^ (key >>> 27)) * 0x94D049BB133111EBL;
+        return key ^ (key >>> 31);
+    }
+
+    private static final class Table {
+        private final ServerDefine[] servers;
+        private final int[] slots;
+
+        private Table(ServerDefine[] servers, int[] slots) {
+            this.servers = servers;
+            this.slots = slots;
+        }
+    }
+}
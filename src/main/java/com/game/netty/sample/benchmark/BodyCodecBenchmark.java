@@ -0,0 +1,85 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.sample.benchmark;
+
+import com.alibaba.fastjson.JSONObject;
+import com.game.netty.client.codec.MessageBodyCodec;
+import com.game.netty.client.codec.binary.BinaryRecord;
+import com.game.netty.client.codec.binary.BinarySchema;
+import com.game.netty.client.codec.binary.BinarySchemaCodec;
+import com.game.netty.client.codec.binary.FieldType;
+import com.game.netty.sample.common.JSONBodyCodec;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * compare BinarySchemaCodec with JSONBodyCodec on a small movement message, encode + decode per round.
+ * this is a rough benchmark with warm up, use JMH for serious numbers.
+ */
+public class BodyCodecBenchmark {
+
+    private static final int WARM_UP_ROUNDS = 200_000;
+    private static final int ROUNDS = 1_000_000;
+
+    public static void main(String[] args) {
+        BinarySchema schema = new BinarySchema("Move")
+                .addField(1, FieldType.INT64)
+                .addField(2, FieldType.SINT32)
+                .addField(3, FieldType.SINT32)
+                .addField(4, FieldType.FLOAT)
+                .addField(5, FieldType.BOOL, true)
+                .addField(6, FieldType.STRING, true);
+        BinaryRecord record = new BinaryRecord(schema)
+                .setLong(1, 10086L)
+                .setInt(2, -325)
+                .setInt(3, 1208)
+                .setFloat(4, 1.5f)
+                .setBool(5, true)
+                .setString(6, "run");
+
+        JSONObject json = new JSONObject();
+        json.put("entityId", 10086L);
+        json.put("x", -325);
+        json.put("y", 1208);
+        json.put("speed", 1.5f);
+        json.put("running", true);
+        json.put("action", "run");
+
+        run("binary", new BinarySchemaCodec(schema), record);
+        run("json", new JSONBodyCodec(), json);
+    }
+
+    private static <B> void run(String name, MessageBodyCodec<B> codec, B body) {
+        ByteBuf buf = Unpooled.buffer(256);
+        round(codec, body, buf, WARM_UP_ROUNDS);
+        long start = System.nanoTime();
+        Object result = round(codec, body, buf, ROUNDS);
+        long cost = System.nanoTime() - start;
+        System.out.println(String.format("%-8s size:%3d bytes  %6.1f ns/op  %s", name, codec.bodyEncodeSize(body), cost * 1.0 / ROUNDS, result));
+    }
+
+    private static <B> Object round(MessageBodyCodec<B> codec, B body, ByteBuf buf, int rounds) {
+        Object decoded = null;
+        for (int i = 0; i < rounds; i++) {
+            buf.clear();
+            codec.bodyEncodeSize(0, body);
+            codec.encodeBody(0, body, buf);
+            decoded = codec.decodeMessageBody(0, buf, buf.readableBytes());
+        }
+        return decoded;
+    }
+}
@@ -21,10 +21,11 @@ import com.game.netty.ChannelEvent;
 import com.game.netty.client.acceptor.ClientAcceptedChannel;
 import com.game.netty.client.acceptor.ClientAcceptorDelegate;
 import com.game.netty.client.acceptor.ClientSocketAcceptor;
-import com.game.netty.client.acceptor.session.AbstractSessionManager;
-import com.game.netty.client.acceptor.session.DefaultSession;
+import com.game.netty.client.acceptor.session.NumericSession;
+import com.game.netty.client.acceptor.session.SessionIdGenerator;
 import com.game.netty.client.acceptor.session.SessionInterface;
 import com.game.netty.client.acceptor.session.SessionManagerInterface;
+import com.game.netty.client.acceptor.session.ShardedSessionManager;
 import com.game.netty.config.ClientChannelConfig;
 import com.game.netty.config.ProxyChannelConfig;
 import com.game.netty.config.codec.ClientCodecConfig;
@@ -35,12 +36,11 @@ import com.game.netty.ServerDefine;
 import com.game.netty.proxy.connector.ProxyConnectChannel;
 import com.game.netty.proxy.connector.ProxyConnectorDelegate;
 import com.game.netty.proxy.connector.ProxyConnector;
+import com.game.netty.proxy.connector.ProxyRouter;
 import com.game.netty.transform.compress.GzipBodyUncompressor;
 import com.game.netty.transform.encrypt.RC4BodyEnDecryptor;
 
 import java.util.List;
-import java.util.Random;
-import java.util.UUID;
 
 /**
  * represent proxy server, communicate with client via socket, hide logic server from outer network
@@ -48,11 +48,11 @@ import java.util.UUID;
 public class SampleProxy {
 
     private  ClientSocketAcceptor clientSocketAcceptor;
-    private  SessionManagerInterface<DefaultSession> sessionManager;
+    private  SessionManagerInterface<NumericSession> sessionManager;
 
     private  ProxyConnector proxyConnector;
 
-    private  final Random random = new Random();
+    private  ProxyRouter proxyRouter;
     private final String proxyName;
 
     public SampleProxy(String proxyName) {
@@ -76,6 +76,10 @@ public class SampleProxy {
             @Override
             public void onChannelStatusEvent(ClientAcceptedChannel channel, ChannelEvent event) {
                 LogUtil.print(proxyName,"channel from " + channel + " event:" + event);
+                if (event == ChannelEvent.CHANNEL_INACTIVE && channel.getSession() != null) {
+                    //the session is closed, let logic servers drop its state
+                    proxyConnector.unbindSession(channel.getSession().sessionId());
+                }
             }
 
             @Override
@@ -90,25 +94,23 @@ public class SampleProxy {
                 String proxyHeader = channel.getSession().sessionId();
                 ProxyMessage<String, JSONObject> proxyMessage = new ProxyMessage<>(proxyHeader, message.retain());
 
-                //randomly forward message to a logic server
-                int index = random.nextInt(logicServers.size());
-                ServerDefine serverDefine = logicServers.get(index);
+                //forward message to the logic server chosen by session, a session always goes to the same server
+                ServerDefine serverDefine = proxyRouter.route(proxyHeader);
+                if (serverDefine == null) {
+                    LogUtil.print(proxyName, "no logic server available, drop message from " + channel);
+                    proxyMessage.release();
+                    return;
+                }
                 proxyConnector.getChannel(serverDefine.getServerId()).write(proxyMessage);
                 LogUtil.print(proxyName,"receive client message, forward  to server" + serverDefine.getServerId());
                 LogUtil.print();
             }
         };
 
-        sessionManager = new AbstractSessionManager<DefaultSession>() {
-            @Override
-            public DefaultSession createSessionForNewChannel(ClientAcceptedChannel channel) {
-                String session = UUID.randomUUID().toString();
-                return new DefaultSession(session, channel);
-            }
-
+        sessionManager = new ShardedSessionManager<NumericSession>(0, SessionIdGenerator.MAX_SHARDS) {
             @Override
-            protected void onSessionRemoved(DefaultSession defaultSession) {
-                //do nothing
+            protected NumericSession newSession(long sessionId, ClientAcceptedChannel channel) {
+                return new NumericSession(sessionId, channel);
             }
         };
 
@@ -168,6 +170,7 @@ public class SampleProxy {
         };
 
         proxyConnector = new ProxyConnector(channelEventDelegate);
+        proxyRouter = new ProxyRouter(proxyConnector);
 
 
         ProxyChannelConfig config = new ProxyChannelConfig();
@@ -6,22 +6,22 @@ import com.game.netty.client.ClientMessage;
 import com.game.netty.client.acceptor.ClientAcceptedChannel;
 import com.game.netty.client.acceptor.ClientAcceptorDelegate;
 import com.game.netty.client.acceptor.ClientSocketAcceptor;
-import com.game.netty.client.acceptor.session.AbstractSessionManager;
-import com.game.netty.client.acceptor.session.DefaultSession;
+import com.game.netty.client.acceptor.session.NumericSession;
+import com.game.netty.client.acceptor.session.SessionIdGenerator;
 import com.game.netty.client.acceptor.session.SessionManagerInterface;
+import com.game.netty.client.acceptor.session.ShardedSessionManager;
 import com.game.netty.config.ClientChannelConfig;
 import com.game.netty.config.codec.ClientCodecConfig;
 import com.game.netty.transform.compress.GzipBodyUncompressor;
 import com.game.netty.transform.encrypt.RC4BodyEnDecryptor;
 
-import java.util.UUID;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 public class SampleServer {
 
     private ClientSocketAcceptor clientSocketAcceptor;
-    private SessionManagerInterface<DefaultSession> sessionManager;
+    private SessionManagerInterface<NumericSession> sessionManager;
 
     private final String serverName;
 
@@ -69,16 +69,10 @@ public class SampleServer {
             }
         };
 
-        sessionManager = new AbstractSessionManager<DefaultSession>() {
+        sessionManager = new ShardedSessionManager<NumericSession>(0, SessionIdGenerator.MAX_SHARDS) {
             @Override
-            public DefaultSession createSessionForNewChannel(ClientAcceptedChannel channel) {
-                String session = UUID.randomUUID().toString();
-                return new DefaultSession(session, channel);
-            }
-
-            @Override
-            protected void onSessionRemoved(DefaultSession defaultSession) {
-                //do nothing
+            protected NumericSession newSession(long sessionId, ClientAcceptedChannel channel) {
+                return new NumericSession(sessionId, channel);
             }
         };
 
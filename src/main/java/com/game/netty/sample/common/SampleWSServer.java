@@ -5,21 +5,21 @@ import com.game.netty.client.ClientMessage;
 import com.game.netty.client.acceptor.ClientAcceptedChannel;
 import com.game.netty.client.acceptor.ClientAcceptorDelegate;
 import com.game.netty.client.websocket.ClientWebSocketAcceptor;
-import com.game.netty.client.acceptor.session.AbstractSessionManager;
-import com.game.netty.client.acceptor.session.DefaultSession;
+import com.game.netty.client.acceptor.session.NumericSession;
+import com.game.netty.client.acceptor.session.SessionIdGenerator;
 import com.game.netty.client.acceptor.session.SessionManagerInterface;
+import com.game.netty.client.acceptor.session.ShardedSessionManager;
 import com.game.netty.config.ClientChannelConfig;
 import com.game.netty.config.codec.ClientCodecConfig;
 
 import javax.net.ssl.SSLContext;
-import java.util.UUID;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 public class SampleWSServer {
 
     private ClientWebSocketAcceptor webSocketAcceptor;
-    private SessionManagerInterface<DefaultSession> sessionManager;
+    private SessionManagerInterface<NumericSession> sessionManager;
 
     private final String serverName;
 
@@ -68,16 +68,10 @@ public class SampleWSServer {
             }
         };
 
-        sessionManager = new AbstractSessionManager<DefaultSession>() {
+        sessionManager = new ShardedSessionManager<NumericSession>(0, SessionIdGenerator.MAX_SHARDS) {
             @Override
-            public DefaultSession createSessionForNewChannel(ClientAcceptedChannel channel) {
-                String session = UUID.randomUUID().toString();
-                return new DefaultSession(session, channel);
-            }
-
-            @Override
-            protected void onSessionRemoved(DefaultSession defaultSession) {
-                //do nothing
+            protected NumericSession newSession(long sessionId, ClientAcceptedChannel channel) {
+                return new NumericSession(sessionId, channel);
             }
         };
 
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * User state indexed by {@link SlotKey}, a typed replacement of string keyed attributes.
+ * <p>
+ * The slot array is allocated on first set with room for all keys created so far, then get and set are
+ * one volatile array access; it grows only if a key is created later. Slots can be read and written on any thread.
+ * <p>
+ * Growing marks every old slot MOVED while copying it, a writer or reader hitting MOVED waits for the new array,
+ * so no write to the old array is lost.
+ */
+public final class AttributeSlots {
+
+    private static final Object MOVED = new Object();
+
+    private volatile AtomicReferenceArray<Object> slots;
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(SlotKey<T> key) {
+        int index = key.index();
+        for (; ; ) {
+            AtomicReferenceArray<Object> slots = this.slots;
+            if (slots == null || index >= slots.length()) {
+                return null;
+            }
+            Object value = slots.get(index);
+            if (value != MOVED) {
+                return (T) value;
+            }
+            awaitGrow();
+        }
+    }
+
+    public <T> void set(SlotKey<T> key, T value) {
+        getAndSet(key, value);
+    }
+
+    /**
+     * @return the old value
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getAndSet(SlotKey<T> key, T value) {
+        int index = key.index();
+        for (; ; ) {
+            AtomicReferenceArray<Object> slots = slotsFor(index);
+            Object old = slots.get(index);
+            if (old == MOVED) {
+                awaitGrow();
+            } else if (slots.compareAndSet(index, old, value)) {
+                return (T) old;
+            }
+        }
+    }
+
+    /**
+     * @return the removed value
+     */
+    public <T> T remove(SlotKey<T> key) {
+        return get(key) == null ? null : getAndSet(key, null);
+    }
+
+    private AtomicReferenceArray<Object> slotsFor(int index) {
+        AtomicReferenceArray<Object> slots = this.slots;
+        if (slots != null && index < slots.length()) {
+            return slots;
+        }
+        synchronized (this) {
+            slots = this.slots;
+            if (slots == null || index >= slots.length()) {
+                AtomicReferenceArray<Object> newSlots = new AtomicReferenceArray<>(Math.max(SlotKey.count(), index + 1));
+                for (int i = 0; slots != null && i < slots.length(); i++) {
+                    newSlots.set(i, slots.getAndSet(i, MOVED));
+                }
+                this.slots = slots = newSlots;
+            }
+            return slots;
+        }
+    }
+
+    /**
+     * the new array is published before the monitor is released
+     */
+    private void awaitGrow() {
+        synchronized (this) {
+            //nothing, only wait for the growing thread
+        }
+    }
+}
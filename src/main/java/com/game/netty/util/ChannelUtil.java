@@ -22,6 +22,9 @@ import io.netty.util.AttributeKey;
 
 public class ChannelUtil {
 
+    /**
+     * the key is resolved from Netty constant pool on every call, prefer {@link #setAttribute(Channel, AttributeKey, Object)} on hot path
+     */
     public static void setAttribute(Channel channel, String key, Object value) {
         channel.attr(AttributeKey.valueOf(key)).set(value);
     }
@@ -31,6 +34,14 @@ public class ChannelUtil {
         return session.get();
     }
 
+    public static <T> void setAttribute(Channel channel, AttributeKey<T> key, T value) {
+        channel.attr(key).set(value);
+    }
+
+    public static <T> T getAttribute(Channel channel, AttributeKey<T> key) {
+        return channel.attr(key).get();
+    }
+
     private ChannelUtil() {
     }
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.util;
+
+import io.netty.util.collection.LongObjectHashMap;
+
+/**
+ * A table keyed by client message head, lookup is allocation free.
+ * <p>
+ * Heads in [0, denseSize) are stored in a plain array, others in a primitive open addressing map.
+ * The table is not thread safe, fill it before use, then share it read only.
+ *
+ * @param <V> value type
+ */
+public final class HeadIndexedTable<V> {
+
+    private final Object[] dense;
+
+    private final LongObjectHashMap<V> sparse = new LongObjectHashMap<>();
+
+    private int size;
+
+    /**
+     * @param denseSize heads less than denseSize are indexed by array, 0 to disable
+     */
+    public HeadIndexedTable(int denseSize) {
+        if (denseSize < 0) {
+            throw new IllegalArgumentException("denseSize must >= 0");
+        }
+        this.dense = new Object[denseSize];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long head) {
+        if (head >= 0 && head < dense.length) {
+            return (V) dense[(int) head];
+        }
+        return sparse.isEmpty() ? null : sparse.get(head);
+    }
+
+    /**
+     * @return previous value of the head, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long head, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value can not be null");
+        }
+        V old;
+        if (head >= 0 && head < dense.length) {
+            old = (V) dense[(int) head];
+            dense[(int) head] = value;
+        } else {
+            old = sparse.put(head, value);
+        }
+        if (old == null) {
+            size++;
+        }
+        return old;
+    }
+
+    /**
+     * @return removed value of the head, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long head) {
+        V old;
+        if (head >= 0 && head < dense.length) {
+            old = (V) dense[(int) head];
+            dense[(int) head] = null;
+        } else {
+            old = sparse.remove(head);
+        }
+        if (old != null) {
+            size--;
+        }
+        return old;
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A bounded multi-producer single-consumer ring of preallocated events, in the style of Disruptor.
+ * <p>
+ * A producer claims a sequence with {@link #tryClaim()}, fills the event of the sequence, then {@link #publish(long)}s it;
+ * claiming is one CAS, nothing is allocated. The consumer handles published events in sequence order by {@link #drain},
+ * an event is reused after the handler returns, the handler must not keep it.
+ * <p>
+ * A claimed sequence must be published, the consumer stops at an unpublished one.
+ *
+ * @param <E> event type
+ */
+public final class MpscEventRing<E> {
+
+    /**
+     * how the consumer waits for events
+     */
+    public enum WaitStrategy {
+        /**
+         * keep spinning, lowest latency, burns a core
+         */
+        BUSY_SPIN,
+        /**
+         * spin a while, then yield the cpu
+         */
+        YIELD,
+        /**
+         * spin, yield, then park 100 micros each time, low cpu, adds latency
+         */
+        PARK;
+
+        private static final int SPIN_TRIES = 100;
+        private static final int YIELD_TRIES = 200;
+        private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+        void idle(int tries) {
+            if (this == BUSY_SPIN || tries < SPIN_TRIES) {
+                return;
+            }
+            if (this == YIELD || tries < YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    }
+
+    private final Object[] events;
+    private final int mask;
+
+    /**
+     * published sequence of each slot, -1 if never published
+     */
+    private final AtomicLongArray published;
+
+    /**
+     * next sequence to claim
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * next sequence to consume, only written by the consumer
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity     event count, rounded up to power of 2
+     * @param eventFactory create the preallocated events
+     */
+    public MpscEventRing(int capacity, Supplier<E> eventFactory) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        if (capacity == 1) {
+            size = 1;
+        }
+        this.events = new Object[size];
+        this.mask = size - 1;
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            events[i] = eventFactory.get();
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * @return claimed sequence, -1 if the ring is full
+     */
+    public long tryClaim() {
+        for (; ; ) {
+            long seq = tail.get();
+            if (seq - head.get() >= events.length) {
+                return -1;
+            }
+            if (tail.compareAndSet(seq, seq + 1)) {
+                return seq;
+            }
+        }
+    }
+
+    /**
+     * @param sequence claimed sequence
+     * @return event of the sequence
+     */
+    @SuppressWarnings("unchecked")
+    public E get(long sequence) {
+        return (E) events[(int) sequence & mask];
+    }
+
+    /**
+     * make the event of a claimed sequence visible to the consumer
+     *
+     * @param sequence claimed sequence
+     */
+    public void publish(long sequence) {
+        published.lazySet((int) sequence & mask, sequence);
+    }
+
+    /**
+     * handle published events, only called by the consumer thread
+     *
+     * @param handler event handler
+     * @param limit   max events to handle
+     * @return events handled
+     */
+    public int drain(Consumer<? super E> handler, int limit) {
+        long seq = head.get();
+        int count = 0;
+        while (count < limit) {
+            int index = (int) seq & mask;
+            if (published.get(index) != seq) {
+                break;
+            }
+            try {
+                handler.accept(get(seq));
+            } finally {
+                //free the slot even if the handler throws
+                seq++;
+                count++;
+                head.lazySet(seq);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * handle published events, wait with the strategy if there is none, only called by the consumer thread
+     *
+     * @param handler      event handler
+     * @param limit        max events to handle
+     * @param waitStrategy how to wait
+     * @param timeoutNanos max wait time
+     * @return events handled, 0 if timeout
+     */
+    public int drain(Consumer<? super E> handler, int limit, WaitStrategy waitStrategy, long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        for (int tries = 0; ; tries++) {
+            int count = drain(handler, limit);
+            if (count > 0 || System.nanoTime() - deadline >= 0) {
+                return count;
+            }
+            waitStrategy.idle(tries);
+        }
+    }
+
+    /**
+     * @return claimed but not consumed events, a snapshot
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    public int capacity() {
+        return events.length;
+    }
+}
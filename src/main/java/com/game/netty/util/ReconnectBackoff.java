@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with jitter for reconnecting a channel.
+ * <p>
+ * The n-th delay is a random value in [cap / 2, cap], cap = min(maxDelay, minDelay * 2^n),
+ * the jitter spreads reconnects of many proxies after a server restart.
+ */
+public final class ReconnectBackoff {
+
+    private final long minDelayMillis;
+    private final long maxDelayMillis;
+
+    private volatile int attempts;
+
+    /**
+     * @param minDelayMillis delay cap of the first attempt
+     * @param maxDelayMillis max delay cap
+     */
+    public ReconnectBackoff(long minDelayMillis, long maxDelayMillis) {
+        if (minDelayMillis <= 0 || maxDelayMillis < minDelayMillis) {
+            throw new IllegalArgumentException("minDelayMillis: " + minDelayMillis + ", maxDelayMillis: " + maxDelayMillis);
+        }
+        this.minDelayMillis = minDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * @return delay before next attempt, the attempt count increases
+     */
+    public long nextDelayMillis() {
+        int n = attempts;
+        attempts = n + 1;
+        long cap = n >= Long.numberOfLeadingZeros(minDelayMillis) - 1 ? maxDelayMillis : Math.min(maxDelayMillis, minDelayMillis << n);
+        return cap / 2 + ThreadLocalRandom.current().nextLong(cap - cap / 2 + 1);
+    }
+
+    /**
+     * connected, next delay starts from minDelay again
+     */
+    public void reset() {
+        attempts = 0;
+    }
+
+    /**
+     * @return failed attempts since last reset
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+}
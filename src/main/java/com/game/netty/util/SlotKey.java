@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A typed key of {@link AttributeSlots}, each key owns a fixed index, so a lookup is an array access.
+ * <p>
+ * Create keys once, in static final fields, every key created takes a slot in every AttributeSlots.
+ *
+ * @param <T> value type
+ */
+public final class SlotKey<T> {
+
+    private static final AtomicInteger NEXT_INDEX = new AtomicInteger();
+
+    private final int index;
+    private final String name;
+
+    private SlotKey(int index, String name) {
+        this.index = index;
+        this.name = name;
+    }
+
+    /**
+     * @param name key name, for debug only, names are not unique
+     * @param <T>  value type
+     * @return a new key with a new index
+     */
+    public static <T> SlotKey<T> newKey(String name) {
+        return new SlotKey<>(NEXT_INDEX.getAndIncrement(), name);
+    }
+
+    /**
+     * @return keys created so far
+     */
+    public static int count() {
+        return NEXT_INDEX.get();
+    }
+
+    public int index() {
+        return index;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "SlotKey{" + name + '#' + index + '}';
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 Long Huihu
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.game.netty.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.CorruptedFrameException;
+
+/**
+ * tool for base 128 varint and zigzag encoding, the same format as protobuf
+ */
+public class VarIntUtil {
+
+    /**
+     * @param value unsigned int value
+     * @return encoded byte size of value
+     */
+    public static int varInt32Size(int value) {
+        if ((value & (~0 << 7)) == 0) return 1;
+        if ((value & (~0 << 14)) == 0) return 2;
+        if ((value & (~0 << 21)) == 0) return 3;
+        if ((value & (~0 << 28)) == 0) return 4;
+        return 5;
+    }
+
+    /**
+     * @param value unsigned long value
+     * @return encoded byte size of value
+     */
+    public static int varInt64Size(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    public static void writeVarInt32(ByteBuf out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    public static void writeVarInt64(ByteBuf out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte(((int) value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public static int readVarInt32(ByteBuf in) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new CorruptedFrameException("malformed varint32");
+    }
+
+    public static long readVarInt64(ByteBuf in) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new CorruptedFrameException("malformed varint64");
+    }
+
+    public static int encodeZigZag32(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    public static long encodeZigZag64(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static int decodeZigZag32(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static long decodeZigZag64(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private VarIntUtil() {
+    }
+}